@@ -1,24 +1,35 @@
 package controller;
 
+import engine.*;
+import export.BoardFile;
 import model.*;
 import view.GUITiling;
 
 import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
-public class TilingController implements TilingNotificar {
+public class TilingController {
     private final GUITiling gui;
-    private ScheduledExecutorService animationExecutor;
-    private ExecutorService computeExecutor;
-    private volatile boolean isRunning = false;
+    private volatile Run currentRun;
     private boolean animationEnabled = true;
+    private boolean progressiveEnabled = true;
+    private volatile List<Point2D.Double> shownLevel;
+    private boolean completed;
+    private Timeline timeline;
     private TilingAlgorithm currentAlgorithm;
+    private TilingRequest currentRequest;
     private int currentBoardSize;
+    private int[][] displayedBoard;
+    private volatile BoardSnapshotPublisher loadingSnapshots;
+    private final TilingEngine engine = new TilingEngine();
 
     /**
      * Crea una nova instància de TilingController i inicialitza la interfície gràfica.
@@ -48,45 +59,110 @@ public class TilingController implements TilingNotificar {
      * @param missingCol La columna de la peça absent.
      */
     public synchronized void startTiling(int boardSize, int maxDepth, String algorithmName, int missingRow, int missingCol) {
-        if (isRunning) return;
-        isRunning = true;
-        currentBoardSize = boardSize;
+        startTiling(boardSize, boardSize, maxDepth, algorithmName, missingRow, missingCol);
+    }
 
-        if (animationEnabled) {
-            animationExecutor = Executors.newSingleThreadScheduledExecutor();
-            computeExecutor = null;
-        } else {
-            computeExecutor = new ForkJoinPool();
-            animationExecutor = null;
+    /**
+     * Inicia el procés de tiling sobre un tauler rectangular (només per a Tromino).
+     *
+     * @param boardRows El nombre de files del tauler.
+     * @param boardCols El nombre de columnes del tauler.
+     * @param maxDepth La profunditat màxima del càlcul.
+     * @param algorithmName El nom de l'algoritme.
+     * @param missingRow La fila de la peça absent, o -1 si no n'hi ha.
+     * @param missingCol La columna de la peça absent, o -1 si no n'hi ha.
+     * @throws IllegalArgumentException Si l'algoritme no admet el tauler demanat.
+     * @throws IllegalStateException Si ja hi ha un càlcul en marxa: la interfície només en mostra un.
+     */
+    public synchronized void startTiling(int boardRows, int boardCols, int maxDepth, String algorithmName,
+                                         int missingRow, int missingCol) {
+        if (isRunning()) {
+            throw new IllegalStateException("A tiling is already running. Stop it before starting another one.");
         }
-        switch (algorithmName) {
-            case "Tromino":
-                currentAlgorithm = new TrominoTiling(boardSize, missingRow, missingCol);
-                break;
-            case "Domino":
-                currentAlgorithm = new DominoTiling(boardSize);
-                break;
-            case "Hilbert":
-                currentAlgorithm = new HilbertCurve(boardSize);
-                break;
-            case "Sierpinski":
-                currentAlgorithm = new SierpinskiTriangle(boardSize);
-                break;
-            case "Koch":
-                currentAlgorithm = new KochCurve(boardSize);
-                break;
-            case "Square":
-                currentAlgorithm = new SquareModel(boardSize, maxDepth);
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown algorithm: " + algorithmName);
+        TilingRequest request = new TilingRequest(algorithmName, boardRows, boardCols, maxDepth, missingRow, missingCol);
+        if (!animationEnabled) {
+            TilingResult cached = engine.getCache().get(request);
+            if (cached != null) {
+                showCachedResult(cached);
+                return;
+            }
         }
-        gui.resetBoard(boardSize);
+        // L'algoritme es crea abans de marcar el càlcul com a iniciat: si el tauler no és vàlid,
+        // l'excepció no deixa el controlador bloquejat.
+        TilingAlgorithm previous = animationEnabled ? null : refinableCurve(request);
+        TilingAlgorithm algorithm = previous != null ? previous : engine.getRegistry().create(request);
+        Run run = new Run(request, algorithm, animationEnabled, progressiveEnabled);
+        currentRun = run;
+        currentBoardSize = Math.max(boardRows, boardCols);
+        loadingSnapshots = null;
+        displayedBoard = null;
+        shownLevel = null;
+        completed = false;
+        timeline = null;
+        currentRequest = request;
+        currentAlgorithm = algorithm;
+        gui.resetBoard(boardRows, boardCols);
+        // Els models creen el publicador d'instantànies quan es demana: s'ha de fer abans de
+        // començar perquè la vista no perdi cap canvi.
+        snapshotsOf(algorithm);
+        run.start(maxDepth);
+    }
 
-        if (animationEnabled) {
-            animationExecutor.execute(() -> currentAlgorithm.calculateTiling(this, maxDepth));
+    /**
+     * Retorna el model de corba actual si es pot refinar fins a la petició: mateix algorisme i
+     * mida, i una corba d'un càlcul acabat de profunditat menor o igual. Així, pujar la
+     * profunditat d'un en un només calcula el nivell nou.
+     *
+     * @param request La nova petició.
+     * @return El model a reutilitzar, o null si s'ha de crear un model nou.
+     */
+    private TilingAlgorithm refinableCurve(TilingRequest request) {
+        // Un càlcul aturat pot tenir encara tasques sobre el model: només es reutilitza si ha acabat.
+        if (!completed || currentRequest == null
+                || !currentRequest.getAlgorithmName().equals(request.getAlgorithmName())
+                || currentRequest.getBoardSize() != request.getBoardSize()) {
+            return null;
+        }
+        int depth = request.getMaxDepth();
+        if (currentAlgorithm instanceof HilbertCurve) {
+            int computed = ((HilbertCurve) currentAlgorithm).getComputedDepth();
+            return computed >= 0 && computed <= depth ? currentAlgorithm : null;
+        } else if (currentAlgorithm instanceof KochCurve) {
+            int computed = ((KochCurve) currentAlgorithm).getComputedDepth();
+            return computed >= 0 && computed <= depth ? currentAlgorithm : null;
+        } else if (currentAlgorithm instanceof SierpinskiTriangle) {
+            int computed = ((SierpinskiTriangle) currentAlgorithm).getComputedDepth();
+            return computed >= 0 && computed <= depth ? currentAlgorithm : null;
+        } else if (currentAlgorithm instanceof SquareModel) {
+            SquareModel square = (SquareModel) currentAlgorithm;
+            int computed = square.getComputedDepth();
+            if (computed >= 0 && computed <= depth) {
+                square.setDepth(depth);
+                return square;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mostra un resultat de la memòria cau del motor sense tornar a calcular-lo.
+     *
+     * @param result El resultat guardat.
+     */
+    private void showCachedResult(TilingResult result) {
+        TilingRequest request = result.getRequest();
+        currentRequest = request;
+        currentAlgorithm = null;
+        currentBoardSize = Math.max(request.getBoardSize(), request.getBoardCols());
+        loadingSnapshots = null;
+        displayedBoard = result.getBoard();
+        completed = true;
+        timeline = null;
+        gui.resetBoard(request.getBoardSize(), request.getBoardCols());
+        if (result.isBoard()) {
+            gui.updateBoard(result.getBoard(), 0);
         } else {
-            computeExecutor.execute(() -> currentAlgorithm.calculateTiling(this, maxDepth));
+            gui.showCurve(result.getPoints(), result.isInvertY());
         }
     }
 
@@ -95,7 +171,6 @@ public class TilingController implements TilingNotificar {
      *
      * @return Cert si l'animació està activada, fals en cas contrari.
      */
-
     public boolean isAnimationEnabled() {
         return animationEnabled;
     }
@@ -111,127 +186,232 @@ public class TilingController implements TilingNotificar {
     }
 
     /**
-     * Retorna l'executor de tasques per a l'animació.
+     * Retorna si les corbes es calculen en mode progressiu quan l'animació està desactivada.
      *
-     * @return L'executor de tasques per a l'animació.
+     * @return Cert si el mode progressiu està activat.
      */
-    public ScheduledExecutorService getAnimationExecutor() {
-        return animationExecutor;
+    public boolean isProgressiveEnabled() {
+        return progressiveEnabled;
     }
 
     /**
-     * Retorna l'executor per a càlculs en paral·lel.
+     * Estableix si les corbes es calculen en mode progressiu quan l'animació està desactivada:
+     * la vista mostra cada nivell de profunditat tan aviat com està acabat.
      *
-     * @return L'executor per a càlculs.
+     * @param enabled Cert per activar el mode progressiu.
      */
-    public ExecutorService getComputeExecutor() {
-        return computeExecutor;
+    public void setProgressiveEnabled(boolean enabled) {
+        this.progressiveEnabled = enabled;
     }
 
     /**
-     * Notifica que el procés de tiling ha començat.
+     * Retorna el motor de càlcul, que permet executar diversos càlculs concurrents
+     * sense animació a més del de la interfície.
      *
-     * @param boardSize La mida del tauler.
-     * @param maxDepth La profunditat màxima.
+     * @return El motor de càlcul.
+     */
+    public TilingEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Context d'execució d'un càlcul. Cada càlcul en té un de propi, de manera que quan s'atura
+     * o un altre el substitueix, les tasques que encara li queden al pool compartit veuen que
+     * ja no està en marxa i s'aturen, i les notificacions que envien després s'ignoren en lloc
+     * d'actuar sobre el càlcul nou.
      */
-    @Override
-    public void onTilingStarted(int boardSize, int maxDepth) {
-        // Optionally update GUI for start (not used in this design)
+    private final class Run implements TilingNotificar, ExecutionContext {
+        private final TilingRequest request;
+        private final TilingAlgorithm algorithm;
+        private final boolean animation;
+        private final boolean progressive;
+        private final ScheduledExecutorService animationExecutor;
+        private final ExecutorService computeExecutor;
+        private final long startNanos = System.nanoTime();
+        private volatile boolean running = true;
+
+        Run(TilingRequest request, TilingAlgorithm algorithm, boolean animation, boolean progressive) {
+            this.request = request;
+            this.algorithm = algorithm;
+            this.animation = animation;
+            this.progressive = progressive;
+            this.animationExecutor = animation ? Executors.newSingleThreadScheduledExecutor() : null;
+            this.computeExecutor = animation ? null : engine.getComputePool();
+        }
+
+        /**
+         * Llança el càlcul a l'executor d'animació o al pool de càlcul.
+         */
+        void start(int maxDepth) {
+            ExecutorService executor = animation ? animationExecutor : computeExecutor;
+            executor.execute(() -> algorithm.calculateTiling(this, maxDepth));
+        }
+
+        /**
+         * Atura el càlcul: les tasques pendents de l'animació es descarten i les de càlcul
+         * s'aturen al pròxim punt on comproven isRunning.
+         */
+        void stop() {
+            running = false;
+            if (animationExecutor != null) {
+                animationExecutor.shutdownNow();
+            }
+        }
+
+        @Override
+        public boolean isAnimationEnabled() {
+            return animation;
+        }
+
+        @Override
+        public boolean isProgressiveEnabled() {
+            return progressive;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public ScheduledExecutorService getAnimationExecutor() {
+            return animationExecutor;
+        }
+
+        @Override
+        public ExecutorService getComputeExecutor() {
+            return computeExecutor;
+        }
+
+        @Override
+        public void onTilingStarted(int boardSize, int maxDepth) {
+            // Optionally update GUI for start (not used in this design)
+        }
+
+        @Override
+        public void onTilingStep(int step, int[][] boardState) {
+            if (running) showStep(this, step, boardState);
+        }
+
+        @Override
+        public void onTilingLevel(int depth, List<Point2D.Double> points) {
+            if (running) showLevel(this, points);
+        }
+
+        @Override
+        public void onTilingCompleted() {
+            completeRun(this);
+        }
+
+        @Override
+        public void onTilingError(String errorMessage) {
+            failRun(this, errorMessage);
+        }
     }
 
     /**
-     * Notifica un pas en el procés de tiling.
+     * Mostra un pas del càlcul en curs.
      *
+     * @param run El càlcul que notifica el pas.
      * @param step El número del pas actual.
      * @param boardState L'estat actual del tauler.
      */
-    @Override
-    public void onTilingStep(int step, int[][] boardState) {
-        if (!isRunning) return;
+    private void showStep(Run run, int step, int[][] boardState) {
         if (boardState != null) {
-
-            gui.updateBoard(boardState, step);
-        } else {
-            List<Point2D.Double> points = null;
-            boolean invertY = false;
-            if (currentAlgorithm instanceof HilbertCurve) {
-                points = ((HilbertCurve) currentAlgorithm).getPoints();
-                invertY = true;
-            } else if (currentAlgorithm instanceof KochCurve) {
-                points = ((KochCurve) currentAlgorithm).getPoints();
-            } else if (currentAlgorithm instanceof SierpinskiTriangle) {
-                points = ((SierpinskiTriangle) currentAlgorithm).getPoints();
-            } else if (currentAlgorithm instanceof SquareModel) {
-                points = ((SquareModel) currentAlgorithm).getPoints();
+            BoardSnapshotPublisher snapshots = snapshotsOf(run.algorithm);
+            if (snapshots != null) {
+                gui.updateBoard(snapshots, step);
+            } else {
+                gui.updateBoard(boardState, step);
             }
-            if (points != null) {
-                gui.showCurve(points, invertY);
+        } else {
+            TilingResult result = TilingResult.of(run.request, run.algorithm, 0);
+            if (!result.isBoard()) {
+                gui.appendCurve(result.getPoints(), result.isInvertY());
             }
         }
     }
 
     /**
-     * Notifica que el procés de tiling s'ha completat.
+     * Mostra un nivell de la corba que s'està calculant en mode progressiu, en lloc del nivell
+     * anterior. La vista dibuixa només l'últim nivell que rep per fotograma.
+     *
+     * @param run El càlcul que notifica el nivell.
+     * @param points Els punts de la corba a aquest nivell.
      */
-    @Override
-    public void onTilingCompleted() {
-        isRunning = false;
+    private void showLevel(Run run, List<Point2D.Double> points) {
+        shownLevel = points;
+        gui.showCurve(points, TilingResult.of(run.request, run.algorithm, 0).isInvertY());
+    }
 
-        if (currentAlgorithm instanceof HilbertCurve) {
-            List<Point2D.Double> curve = ((HilbertCurve) currentAlgorithm).getPoints();
-            gui.showCurve(curve, true);
-        } else if (currentAlgorithm instanceof KochCurve) {
-            List<Point2D.Double> curve = ((KochCurve) currentAlgorithm).getPoints();
-            gui.showCurve(curve, false);
-        } else if (currentAlgorithm instanceof SierpinskiTriangle) {
-            List<Point2D.Double> curve = ((SierpinskiTriangle) currentAlgorithm).getPoints();
-            gui.showCurve(curve, false);
-        } else if (currentAlgorithm instanceof SquareModel) {
-            List<Point2D.Double> curve = ((SquareModel) currentAlgorithm).getPoints();
-            gui.showCurve(curve, false);
+    /**
+     * Retorna el publicador d'instantànies d'un algorisme, si treballa sobre un tauler.
+     *
+     * @param algorithm L'algorisme.
+     * @return El publicador d'instantànies, o null si l'algorisme genera una corba.
+     */
+    private static BoardSnapshotPublisher snapshotsOf(TilingAlgorithm algorithm) {
+        if (algorithm instanceof TrominoTiling) {
+            return ((TrominoTiling) algorithm).getSnapshots();
+        } else if (algorithm instanceof GeneralTrominoTiling) {
+            return ((GeneralTrominoTiling) algorithm).getSnapshots();
+        } else if (algorithm instanceof DominoTiling) {
+            return ((DominoTiling) algorithm).getSnapshots();
         }
+        return null;
+    }
 
-        if (animationExecutor != null) {
-            animationExecutor.shutdown();
-            animationExecutor = null;
+    /**
+     * Tanca un càlcul que ha acabat o que s'ha aturat. Si un altre càlcul ja l'ha substituït,
+     * no es mostra res.
+     *
+     * @param run El càlcul que ha acabat.
+     */
+    private synchronized void completeRun(Run run) {
+        if (run.animationExecutor != null) {
+            run.animationExecutor.shutdown();
         }
-        if (computeExecutor != null) {
-            computeExecutor.shutdown();
-            computeExecutor = null;
+        if (run != currentRun) return;
+        boolean finished = run.running;
+        run.running = false;
+        completed = finished;
+
+        BoardSnapshotPublisher snapshots = snapshotsOf(run.algorithm);
+        if (snapshots != null) {
+            snapshots.publish();
+            gui.updateBoard(snapshots, (int) snapshots.getVersion());
+        }
+
+        // El resultat es construeix a partir del càlcul que l'ha produït, i només es guarda si
+        // aquest càlcul ha acabat sense aturar-se.
+        TilingResult result = TilingResult.of(run.request, run.algorithm, System.nanoTime() - run.startNanos);
+        if (!result.isBoard() && result.getPoints() != shownLevel) {
+            gui.showCurve(result.getPoints(), result.isInvertY());
+        }
+        if (finished) {
+            engine.getCache().put(result);
         }
     }
 
     /**
-     * Notifica que s'ha produït un error durant el procés de tiling.
+     * Tanca un càlcul que ha fallat i mostra l'error, si encara és el càlcul en curs.
      *
+     * @param run El càlcul que ha fallat.
      * @param errorMessage El missatge d'error.
      */
-    @Override
-    public void onTilingError(String errorMessage) {
-        isRunning = false;
+    private void failRun(Run run, String errorMessage) {
+        run.stop();
+        if (run != currentRun) return;
         gui.showError(errorMessage);
-
-        if (animationExecutor != null) {
-            animationExecutor.shutdownNow();
-            animationExecutor = null;
-        }
-        if (computeExecutor != null) {
-            computeExecutor.shutdownNow();
-            computeExecutor = null;
-        }
     }
 
     /**
      * Atura el procés de tiling en curs.
      */
     public void stopTiling() {
-
-        isRunning = false;
-        if (animationExecutor != null) {
-            animationExecutor.shutdownNow();
-        }
-        if (computeExecutor != null) {
-            computeExecutor.shutdownNow();
+        Run run = currentRun;
+        if (run != null) {
+            run.stop();
         }
     }
 
@@ -245,6 +425,183 @@ public class TilingController implements TilingNotificar {
             gui.resetBoard(currentBoardSize);
         }
         currentAlgorithm = null;
+        loadingSnapshots = null;
+        displayedBoard = null;
+        timeline = null;
+    }
+
+    /**
+     * Indica si hi ha un tauler de Tromino d'un càlcul acabat (no aturat) de la mida indicada on
+     * es pot moure la cel·la absent amb {@link #moveMissingTile}.
+     *
+     * @param boardSize La mida del tauler.
+     * @return Cert si es pot moure la cel·la absent.
+     */
+    public synchronized boolean canMoveMissingTile(int boardSize) {
+        return !isRunning() && completed && currentAlgorithm instanceof TrominoTiling
+                && currentBoardSize == boardSize;
+    }
+
+    /**
+     * Mou la cel·la absent del tauler de Tromino acabat i n'actualitza només les peces que
+     * canvien, sense tornar a calcular el tauler.
+     *
+     * @param row La fila de la nova cel·la absent.
+     * @param col La columna de la nova cel·la absent.
+     * @return Les peces que han canviat, o null si no hi ha cap tauler de Tromino acabat.
+     */
+    public synchronized List<TilePlacement> moveMissingTile(int row, int col) {
+        // Un tauler d'un càlcul aturat està a mig omplir: no s'hi pot moure el forat.
+        if (isRunning() || !completed || !(currentAlgorithm instanceof TrominoTiling)) {
+            return null;
+        }
+        TrominoTiling tromino = (TrominoTiling) currentAlgorithm;
+        // El resultat guardat comparteix el tauler que es modificarà.
+        engine.getCache().remove(currentRequest);
+        timeline = null;
+        gui.resetTimeline();
+        List<TilePlacement> changed = tromino.moveHole(row, col);
+        currentRequest = new TilingRequest(currentRequest.getAlgorithmName(), currentRequest.getBoardSize(),
+                currentRequest.getMaxDepth(), row, col);
+        engine.getCache().put(TilingResult.of(currentRequest, tromino, 0));
+        BoardSnapshotPublisher snapshots = tromino.getSnapshots();
+        snapshots.publish();
+        gui.updateBoard(snapshots, (int) snapshots.getVersion());
+        return changed;
+    }
+
+    /**
+     * Desa el tauler mostrat en format {@link BoardFile}.
+     *
+     * @param file El fitxer de sortida.
+     * @throws IOException Si no hi ha cap tauler per desar o no es pot escriure el fitxer.
+     */
+    public void saveBoard(Path file) throws IOException {
+        int[][] board;
+        synchronized (this) {
+            board = displayedBoard;
+            if (currentAlgorithm != null) {
+                TilingResult result = TilingResult.of(currentRequest, currentAlgorithm, 0);
+                board = result.isBoard() ? result.getBoard() : null;
+            }
+        }
+        if (board == null) {
+            throw new IOException("There is no board to save");
+        }
+        BoardFile.write(board, file);
+    }
+
+    /**
+     * Carrega un tauler desat en format {@link BoardFile} i el mostra. El tauler buit es
+     * mostra de seguida i cada bloc apareix a mesura que es descodifica, en paral·lel.
+     *
+     * @param file El fitxer del tauler.
+     * @throws IOException Si el fitxer no es pot obrir o no té el format esperat.
+     */
+    public synchronized void loadBoard(Path file) throws IOException {
+        BoardFile boardFile = BoardFile.open(file);
+        stopTiling();
+        currentAlgorithm = null;
+        timeline = null;
+        gui.resetTimeline();
+        int[][] board = new int[boardFile.getRows()][boardFile.getCols()];
+        BoardSnapshotPublisher snapshots = new BoardSnapshotPublisher(board);
+        displayedBoard = board;
+        loadingSnapshots = snapshots;
+        currentBoardSize = Math.max(boardFile.getRows(), boardFile.getCols());
+        gui.updateBoard(snapshots, 0);
+
+        int blockCols = boardFile.getBlockCols();
+        int blockSize = boardFile.getBlockSize();
+        engine.getComputePool().execute(() -> {
+            try (BoardFile source = boardFile) {
+                IntStream.range(0, boardFile.getBlockRows() * blockCols).parallel().forEach(i -> {
+                    if (loadingSnapshots != snapshots) return;
+                    try {
+                        source.readBlock(i / blockCols, i % blockCols, board);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    int r0 = (i / blockCols) * blockSize;
+                    int c0 = (i % blockCols) * blockSize;
+                    snapshots.markDirty(r0, c0, Math.min(blockSize, board.length - r0),
+                            Math.min(blockSize, board[0].length - c0));
+                    if (loadingSnapshots == snapshots) {
+                        gui.updateBoard(snapshots, i);
+                    }
+                });
+                snapshots.publish();
+                if (loadingSnapshots == snapshots) {
+                    gui.updateBoard(snapshots, (int) snapshots.getVersion());
+                }
+            } catch (IOException | UncheckedIOException e) {
+                gui.showError("Could not load " + file + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Enregistra en segon pla l'animació del resultat mostrat perquè es pugui recórrer amb
+     * {@link #seekTimeline} sense tornar a calcular-lo, i l'envia a la vista quan està a punt.
+     * Per al Tromino acabat, els passos segueixen l'ordre de l'animació; per als altres taulers,
+     * el dels identificadors de peça, i per a les corbes, el dels punts.
+     */
+    public synchronized void recordTimeline() {
+        if (isRunning()) return;
+        TilingAlgorithm algorithm = currentAlgorithm;
+        TilingRequest request = currentRequest;
+        int[][] board = displayedBoard;
+        boolean complete = completed;
+        engine.getComputePool().execute(() -> {
+            Timeline recorded = record(algorithm, request, board, complete);
+            if (recorded == null) return;
+            synchronized (this) {
+                if (isRunning() || currentAlgorithm != algorithm || currentRequest != request
+                        || displayedBoard != board) {
+                    return;
+                }
+                timeline = recorded;
+            }
+            gui.showTimeline(recorded.getStepCount());
+        });
+    }
+
+    /**
+     * Crea l'enregistrament d'un resultat.
+     *
+     * @return L'enregistrament, o null si no hi ha cap resultat per enregistrar.
+     */
+    private Timeline record(TilingAlgorithm algorithm, TilingRequest request, int[][] board, boolean complete) {
+        if (algorithm instanceof TrominoTiling && complete) {
+            return Timeline.ofBoard(((TrominoTiling) algorithm).stepOrderBoard(engine.getComputePool()));
+        }
+        TilingResult result = null;
+        if (algorithm != null) {
+            result = TilingResult.of(request, algorithm, 0);
+        } else if (board == null && request != null) {
+            result = engine.getCache().get(request);
+        }
+        if (result != null && !result.isBoard()) {
+            return Timeline.ofCurve(result.getPoints(), result.isInvertY());
+        }
+        int[][] steps = result != null ? result.getBoard() : board;
+        return steps != null ? Timeline.ofBoard(steps) : null;
+    }
+
+    /**
+     * Mostra el resultat enregistrat tal com era al pas indicat. El cost és proporcional al
+     * nombre de peces o punts entre el pas mostrat i el nou.
+     *
+     * @param step El pas que s'ha de mostrar.
+     */
+    public synchronized void seekTimeline(int step) {
+        if (isRunning() || timeline == null) return;
+        timeline.seek(step);
+        if (timeline.isBoard()) {
+            gui.updateBoard(timeline.getSnapshots(), timeline.getStep());
+        } else {
+            gui.appendCurve(timeline.getVisiblePoints(), timeline.isInvertY());
+        }
     }
 
     /**
@@ -256,35 +613,32 @@ public class TilingController implements TilingNotificar {
      * @return Una cadena amb la estimació del temps.
      */
     public String estimateTime(int boardSize, int maxDepth, String algorithm) {
-        double steps = 0;
-        double delayPerStep = 0;
+        return estimateTime(boardSize, boardSize, maxDepth, algorithm);
+    }
+
+    /**
+     * Estima el temps d'execució per a un tauler rectangular.
+     *
+     * @param boardRows El nombre de files del tauler.
+     * @param boardCols El nombre de columnes del tauler.
+     * @param maxDepth La profunditat màxima.
+     * @param algorithm L'algoritme utilitzat.
+     * @return Una cadena amb la estimació del temps.
+     */
+    public String estimateTime(int boardRows, int boardCols, int maxDepth, String algorithm) {
+        double steps = engine.getRegistry().estimateSteps(
+                new TilingRequest(algorithm, boardRows, boardCols, maxDepth, 0, 0));
+        double delayPerStep;
         switch (algorithm) {
             case "Tromino":
-                steps = (double)(boardSize * boardSize - 1) / 3.0;
+            case "Sierpinski":
                 delayPerStep = 0.1;
                 break;
-            case "Domino":
-                steps = (double)(boardSize * boardSize) / 2.0;
-                delayPerStep = 0.05;
-                break;
             case "Hilbert":
-                steps = Math.pow(4, maxDepth);
                 delayPerStep = 0.02;
                 break;
-            case "Koch":
-                steps = Math.pow(4, maxDepth);
-                delayPerStep = 0.05;
-                break;
-            case "Sierpinski":
-                steps = Math.pow(3, maxDepth);
-                delayPerStep = 0.1;
-                break;
-            case "Square":
-                steps = Math.pow(8, maxDepth);
-                delayPerStep = 0.05;
-                break;
             default:
-                steps = 0;
+                delayPerStep = 0.05;
         }
         double estimatedSeconds;
         if (animationEnabled) {
@@ -305,7 +659,8 @@ public class TilingController implements TilingNotificar {
      * @return Cert si està en execució, fals en cas contrari.
      */
     public boolean isRunning() {
-        return  isRunning;
+        Run run = currentRun;
+        return run != null && run.running;
     }
 
     /**
@@ -0,0 +1,137 @@
+package engine;
+
+import model.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AlgorithmRegistry {
+    public interface Factory {
+        /**
+         * Crea una instància de l'algoritme per a la petició.
+         *
+         * @param request La petició de càlcul.
+         * @return L'algoritme creat.
+         */
+        TilingAlgorithm create(TilingRequest request);
+    }
+
+    public interface CostEstimator {
+        /**
+         * Estima el nombre de passos que farà l'algoritme.
+         *
+         * @param request La petició de càlcul.
+         * @return El nombre estimat de passos.
+         */
+        double estimateSteps(TilingRequest request);
+    }
+
+    private static final AlgorithmRegistry DEFAULT = createDefault();
+
+    private final Map<String, Factory> factories = new LinkedHashMap<>();
+    private final Map<String, CostEstimator> estimators = new LinkedHashMap<>();
+
+    /**
+     * Retorna el registre amb els algorismes inclosos a l'aplicació.
+     *
+     * @return El registre per defecte.
+     */
+    public static AlgorithmRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Registra un algoritme. Si ja n'hi havia un amb el mateix nom, el reemplaça.
+     *
+     * @param name El nom de l'algoritme.
+     * @param factory La factoria que crea instàncies de l'algoritme.
+     * @param estimator L'estimador del nombre de passos.
+     */
+    public synchronized void register(String name, Factory factory, CostEstimator estimator) {
+        factories.put(name, factory);
+        estimators.put(name, estimator);
+    }
+
+    /**
+     * Crea la instància de l'algoritme de la petició.
+     *
+     * @param request La petició de càlcul.
+     * @return L'algoritme creat.
+     * @throws IllegalArgumentException Si l'algoritme no està registrat.
+     */
+    public TilingAlgorithm create(TilingRequest request) {
+        Factory factory;
+        synchronized (this) {
+            factory = factories.get(request.getAlgorithmName());
+        }
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown algorithm: " + request.getAlgorithmName());
+        }
+        return factory.create(request);
+    }
+
+    /**
+     * Estima el nombre de passos (i per tant el cost) d'una petició.
+     *
+     * @param request La petició de càlcul.
+     * @return El nombre estimat de passos, o 0 si l'algoritme no està registrat.
+     */
+    public double estimateSteps(TilingRequest request) {
+        CostEstimator estimator;
+        synchronized (this) {
+            estimator = estimators.get(request.getAlgorithmName());
+        }
+        return estimator != null ? estimator.estimateSteps(request) : 0;
+    }
+
+    /**
+     * Retorna els noms dels algorismes registrats, en ordre de registre.
+     *
+     * @return La llista de noms.
+     */
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(factories.keySet());
+    }
+
+    /**
+     * Crea el tiling amb trominós d'una petició: TrominoTiling per als quadrats de costat potència
+     * de dos, i GeneralTrominoTiling per a la resta. Si l'àrea és múltiple de 3, el tauler no té
+     * peça absent i la de la petició s'ignora.
+     */
+    private static TilingAlgorithm createTromino(TilingRequest r) {
+        int rows = r.getBoardSize();
+        int cols = r.getBoardCols();
+        if ((long) rows * cols % 3 == 0) {
+            return new GeneralTrominoTiling(rows, cols, -1, -1);
+        }
+        if (rows == cols && Integer.bitCount(rows) == 1) {
+            return new TrominoTiling(rows, r.getMissingRow(), r.getMissingCol());
+        }
+        return new GeneralTrominoTiling(rows, cols, r.getMissingRow(), r.getMissingCol());
+    }
+
+    private static AlgorithmRegistry createDefault() {
+        AlgorithmRegistry registry = new AlgorithmRegistry();
+        registry.register("Tromino",
+                AlgorithmRegistry::createTromino,
+                r -> (double) r.getBoardSize() * r.getBoardCols() / 3.0);
+        registry.register("Domino",
+                r -> new DominoTiling(r.getBoardSize()),
+                r -> (double) r.getBoardSize() * r.getBoardSize() / 2.0);
+        registry.register("Hilbert",
+                r -> new HilbertCurve(r.getBoardSize()),
+                r -> Math.pow(4, r.getMaxDepth()));
+        registry.register("Sierpinski",
+                r -> new SierpinskiTriangle(r.getBoardSize()),
+                r -> Math.pow(3, r.getMaxDepth()));
+        registry.register("Koch",
+                r -> new KochCurve(r.getBoardSize()),
+                r -> Math.pow(4, r.getMaxDepth()));
+        registry.register("Square",
+                r -> new SquareModel(r.getBoardSize(), r.getMaxDepth()),
+                r -> Math.pow(8, r.getMaxDepth()));
+        return registry;
+    }
+}
@@ -0,0 +1,45 @@
+package engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+public interface ExecutionContext {
+    /**
+     * Retorna si l'execució s'ha de fer pas a pas amb animació.
+     *
+     * @return Cert si l'animació està activada.
+     */
+    boolean isAnimationEnabled();
+
+    /**
+     * Retorna si les corbes s'han de calcular en mode progressiu sense animació: nivell a nivell,
+     * des de la profunditat 0, publicant cada nivell amb {@link TilingNotificar#onTilingLevel}.
+     *
+     * @return Cert si el mode progressiu està activat.
+     */
+    default boolean isProgressiveEnabled() {
+        return false;
+    }
+
+    /**
+     * Retorna si l'execució continua activa. Els algorismes l'han de consultar per aturar-se
+     * quan es cancel·la.
+     *
+     * @return Cert si l'execució no s'ha aturat.
+     */
+    boolean isRunning();
+
+    /**
+     * Retorna l'executor de tasques per a l'animació.
+     *
+     * @return L'executor per a l'animació, o null si no n'hi ha.
+     */
+    ScheduledExecutorService getAnimationExecutor();
+
+    /**
+     * Retorna l'executor per a càlculs en paral·lel.
+     *
+     * @return L'executor per a càlculs, o null si no n'hi ha.
+     */
+    ExecutorService getComputeExecutor();
+}
@@ -0,0 +1,384 @@
+package engine;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executa diverses feines de tiling alhora sobre un pool de càlcul compartit.
+ * <p>
+ * Les feines esperen en una cua de prioritat acotada, ordenada per termini virtual
+ * (instant d'arribada més el cost estimat), de manera que les feines petites passen
+ * davant de les grans però cap feina gran espera indefinidament. Només s'inicien feines
+ * mentre el cost de les que s'executen càpiga dins del pressupost, i com a molt s'executa
+ * una feina gran alhora, de manera que sempre queda pressupost per a les petites. Si la
+ * primera feina de la cua no hi cap, les que tenen darrere i sí que hi caben s'inicien
+ * abans, però només un nombre limitat de vegades: després, la cua espera que la primera
+ * feina pugui començar. El cost total de les feines en espera també és limitat.
+ * <p>
+ * Les feines de cost petit (taulers de fins a 64x64, corbes de poca profunditat) no passen
+ * per la cua: cadascuna s'executa en el seu propi fil virtual, i les parts paral·leles de
+ * l'algoritme es deleguen igualment al pool de càlcul.
+ */
+public class JobManager {
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    public static final double DEFAULT_COST_BUDGET = 1 << 24;
+    private static final double QUEUED_BUDGETS = 4;
+    public static final double DEFAULT_QUEUED_COST_LIMIT = DEFAULT_COST_BUDGET * QUEUED_BUDGETS;
+    private static final int MAX_HEAD_BYPASSES = 32;
+    private static final double LARGE_JOB_SHARE = 0.5;
+    public static final double SMALL_JOB_COST = 1 << 15;
+    public static final int MAX_SMALL_JOBS = 10_000;
+    private static final long NANOS_PER_STEP = 1_000;
+
+    private final AlgorithmRegistry registry;
+    private final ForkJoinPool computePool;
+    private final ExecutorService smallJobExecutor;
+    private final AtomicInteger runningSmall = new AtomicInteger(0);
+    private final int queueCapacity;
+    private final double costBudget;
+    private final double queuedCostLimit;
+    private final PriorityQueue<TilingJob> queue = new PriorityQueue<>(
+            Comparator.comparingLong(TilingJob::getDeadline).thenComparingLong(TilingJob::getId));
+    private final Map<TilingJob, Double> runningCharges = new HashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private double queuedCost;
+    private double runningCost;
+    private int admitting;
+    private double admittingCost;
+    private TilingJob runningLarge;
+    private TilingJob blockedHead;
+    private int headBypasses;
+    private boolean shutdown;
+
+    /**
+     * Crea un gestor amb el registre d'algorismes, la capacitat de cua i el pressupost per defecte.
+     */
+    public JobManager() {
+        this(AlgorithmRegistry.getDefault(), DEFAULT_QUEUE_CAPACITY, DEFAULT_COST_BUDGET);
+    }
+
+    /**
+     * Crea un gestor de feines que admet a la cua quatre vegades el pressupost d'execució.
+     *
+     * @param registry El registre d'on es creen els algorismes.
+     * @param queueCapacity El nombre màxim de feines en espera.
+     * @param costBudget El cost màxim (en passos estimats) de les feines en execució simultània.
+     */
+    public JobManager(AlgorithmRegistry registry, int queueCapacity, double costBudget) {
+        this(registry, queueCapacity, costBudget, costBudget * QUEUED_BUDGETS);
+    }
+
+    /**
+     * Crea un gestor de feines.
+     *
+     * @param registry El registre d'on es creen els algorismes.
+     * @param queueCapacity El nombre màxim de feines en espera.
+     * @param costBudget El cost màxim (en passos estimats) de les feines en execució simultània.
+     * @param queuedCostLimit El cost màxim (en passos estimats) de les feines en espera. Una feina
+     *                        sola sempre s'admet en una cua buida, encara que el superi.
+     */
+    public JobManager(AlgorithmRegistry registry, int queueCapacity, double costBudget, double queuedCostLimit) {
+        if (queueCapacity <= 0 || costBudget <= 0 || queuedCostLimit <= 0) {
+            throw new IllegalArgumentException("Queue capacity and cost limits must be positive");
+        }
+        this.registry = registry;
+        this.queueCapacity = queueCapacity;
+        this.costBudget = costBudget;
+        this.queuedCostLimit = queuedCostLimit;
+        this.computePool = new ForkJoinPool();
+        this.smallJobExecutor = newVirtualThreadExecutor();
+    }
+
+    /**
+     * Envia una feina de tiling sense peça absent.
+     *
+     * @param algorithmName El nom de l'algoritme.
+     * @param boardSize La mida del tauler.
+     * @param maxDepth La profunditat màxima del càlcul.
+     * @return El descriptor de la feina.
+     * @throws RejectedExecutionException Si la cua és plena o el gestor s'ha aturat.
+     */
+    public TilingJob submit(String algorithmName, int boardSize, int maxDepth) {
+        return submit(new TilingRequest(algorithmName, boardSize, maxDepth));
+    }
+
+    /**
+     * Envia una feina de tiling a la cua.
+     *
+     * @param algorithmName El nom de l'algoritme.
+     * @param boardSize La mida del tauler.
+     * @param maxDepth La profunditat màxima del càlcul.
+     * @param missingRow La fila de la peça absent (només per a Tromino).
+     * @param missingCol La columna de la peça absent (només per a Tromino).
+     * @return El descriptor de la feina.
+     * @throws RejectedExecutionException Si la cua és plena o el gestor s'ha aturat.
+     */
+    public TilingJob submit(String algorithmName, int boardSize, int maxDepth, int missingRow, int missingCol) {
+        return submit(new TilingRequest(algorithmName, boardSize, maxDepth, missingRow, missingCol));
+    }
+
+    /**
+     * Envia una petició de càlcul. Les feines petites s'inicien de seguida; la resta passen per la cua.
+     * L'algoritme només es crea un cop la feina ha estat admesa.
+     *
+     * @param request La petició de càlcul.
+     * @return El descriptor de la feina.
+     * @throws RejectedExecutionException Si la cua és plena o el gestor s'ha aturat.
+     * @throws IllegalArgumentException Si el cost estimat de la petició és negatiu o no és un nombre.
+     */
+    public TilingJob submit(TilingRequest request) {
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Job manager is shut down");
+            }
+        }
+        double cost = registry.estimateSteps(request);
+        if (!(cost >= 0)) {
+            throw new IllegalArgumentException("Invalid cost estimate " + cost + " for " + request);
+        }
+        long deadline = System.nanoTime() + (long) Math.min(cost * NANOS_PER_STEP, Long.MAX_VALUE / 4);
+        if (cost <= SMALL_JOB_COST) {
+            return submitSmall(request, cost, deadline);
+        }
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Job manager is shut down");
+            }
+            if (queue.size() + admitting >= queueCapacity) {
+                throw new RejectedExecutionException("Job queue is full");
+            }
+            if (queue.size() + admitting > 0 && queuedCost + admittingCost + cost > queuedCostLimit) {
+                throw new RejectedExecutionException("Queued cost exceeds the admission limit");
+            }
+            admitting++;
+            admittingCost += cost;
+        }
+        TilingJob job;
+        try {
+            job = new TilingJob(nextId.getAndIncrement(), request, registry.create(request),
+                    cost, deadline, TilingJob.ExecutionMode.COMPUTE_POOL, this);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                admitting--;
+                admittingCost -= cost;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            admitting--;
+            admittingCost -= cost;
+            if (shutdown) {
+                throw new RejectedExecutionException("Job manager is shut down");
+            }
+            queue.add(job);
+            queuedCost += cost;
+            dispatch();
+        }
+        return job;
+    }
+
+    /**
+     * Inicia immediatament una feina petita en un fil virtual propi, sense passar per la cua.
+     * La plaça es reserva abans de crear l'algoritme.
+     *
+     * @param request La petició de càlcul.
+     * @param cost El cost estimat en passos.
+     * @param deadline El termini virtual de la feina.
+     * @return El descriptor de la feina.
+     * @throws RejectedExecutionException Si hi ha massa feines petites en curs o el gestor s'ha aturat.
+     */
+    private TilingJob submitSmall(TilingRequest request, double cost, long deadline) {
+        if (runningSmall.incrementAndGet() > MAX_SMALL_JOBS) {
+            runningSmall.decrementAndGet();
+            throw new RejectedExecutionException("Too many small jobs in flight");
+        }
+        try {
+            TilingJob job = new TilingJob(nextId.getAndIncrement(), request, registry.create(request),
+                    cost, deadline, TilingJob.ExecutionMode.VIRTUAL_THREAD, this);
+            job.markRunning();
+            smallJobExecutor.execute(job::run);
+            return job;
+        } catch (RuntimeException e) {
+            runningSmall.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Retorna el pool de càlcul compartit per totes les feines.
+     *
+     * @return El pool de càlcul.
+     */
+    public ForkJoinPool getComputePool() {
+        return computePool;
+    }
+
+    /**
+     * Retorna el nombre de feines en espera.
+     *
+     * @return El nombre de feines a la cua.
+     */
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Retorna el nombre de feines en execució.
+     *
+     * @return El nombre de feines en execució.
+     */
+    public synchronized int getRunningCount() {
+        return runningCharges.size() + runningSmall.get();
+    }
+
+    /**
+     * Atura el gestor: cancel·la les feines en espera i no n'accepta de noves.
+     */
+    public void shutdown() {
+        TilingJob[] pending;
+        synchronized (this) {
+            shutdown = true;
+            pending = queue.toArray(new TilingJob[0]);
+        }
+        for (TilingJob job : pending) {
+            job.cancel();
+        }
+        smallJobExecutor.shutdown();
+        computePool.shutdown();
+    }
+
+    /**
+     * Retira una feina cancel·lada de la cua, si encara hi és.
+     *
+     * @param job La feina cancel·lada.
+     */
+    synchronized void remove(TilingJob job) {
+        if (queue.remove(job)) {
+            queuedCost -= job.getEstimatedCost();
+        }
+        if (blockedHead == job) {
+            blockedHead = null;
+        }
+    }
+
+    /**
+     * Allibera el pressupost d'una feina acabada i n'inicia de noves.
+     *
+     * @param job La feina acabada.
+     */
+    void release(TilingJob job) {
+        if (job.getExecutionMode() == TilingJob.ExecutionMode.VIRTUAL_THREAD) {
+            runningSmall.decrementAndGet();
+            return;
+        }
+        synchronized (this) {
+            releaseCharge(job);
+        }
+    }
+
+    /**
+     * Retorna el pressupost reservat per una feina del pool i n'inicia de noves.
+     *
+     * @param job La feina acabada.
+     */
+    private void releaseCharge(TilingJob job) {
+        Double charge = runningCharges.remove(job);
+        if (charge != null) {
+            runningCost -= charge;
+        }
+        if (runningLarge == job) {
+            runningLarge = null;
+        }
+        dispatch();
+    }
+
+    /**
+     * Inicia les feines de la cua, en ordre de prioritat, mentre càpiguen dins del pressupost.
+     * Si no s'executa res, la primera feina sempre s'inicia. Les feines grans que esperen perquè
+     * ja se n'executa una altra no bloquegen les que tenen darrere. Tampoc no les bloqueja la
+     * primera feina que no cap al pressupost, fins que se n'han iniciat MAX_HEAD_BYPASSES per
+     * davant seu; a partir d'aleshores no s'inicia cap altra feina fins que ella pugui començar,
+     * de manera que el flux de feines més barates no la deixa esperant indefinidament.
+     */
+    private void dispatch() {
+        List<TilingJob> deferred = new ArrayList<>();
+        double largeThreshold = costBudget * LARGE_JOB_SHARE;
+        TilingJob blocked = null;
+        while (!queue.isEmpty() && !shutdown) {
+            TilingJob job = queue.poll();
+            boolean large = job.getEstimatedCost() >= largeThreshold;
+            if (large && runningLarge != null) {
+                deferred.add(job);
+                continue;
+            }
+            double charge = Math.min(job.getEstimatedCost(), largeThreshold);
+            if (!runningCharges.isEmpty() && runningCost + charge > costBudget) {
+                deferred.add(job);
+                if (blocked == null) {
+                    blocked = job;
+                    if (blockedHead != job) {
+                        blockedHead = job;
+                        headBypasses = 0;
+                    }
+                    if (headBypasses >= MAX_HEAD_BYPASSES) {
+                        break;
+                    }
+                }
+                continue;
+            }
+            queuedCost -= job.getEstimatedCost();
+            if (!job.markRunning()) {
+                continue;
+            }
+            runningCharges.put(job, charge);
+            runningCost += charge;
+            if (large) {
+                runningLarge = job;
+            }
+            if (blockedHead == job) {
+                blockedHead = null;
+            } else if (blocked != null) {
+                headBypasses++;
+            }
+            computePool.execute(job::run);
+        }
+        queue.addAll(deferred);
+    }
+
+    /**
+     * Crea l'executor de feines petites: un fil virtual per feina si la JVM en disposa,
+     * o un pool acotat de fils de plataforma en versions anteriors a Java 21.
+     *
+     * @return L'executor de feines petites.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+            ThreadPoolExecutor fallback = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "tiling-small-job");
+                        t.setDaemon(true);
+                        return t;
+                    });
+            fallback.allowCoreThreadTimeOut(true);
+            return fallback;
+        }
+    }
+}
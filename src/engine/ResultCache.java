@@ -0,0 +1,253 @@
+package engine;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memòria cau de resultats de càlcul indexada per la petició normalitzada amb
+ * {@link TilingRequest#cacheKey()}.
+ * <p>
+ * Els resultats es guarden amb referències fortes en una llista LRU limitada pel pes estimat
+ * en bytes dels taulers i de les llistes de punts. Quan se supera el límit, els resultats
+ * menys usats no es descarten sinó que passen a referències febles (SoftReference), que el
+ * recol·lector només allibera si falta memòria; si es tornen a demanar mentre són vius,
+ * tornen a la llista forta. Els resultats compartits no s'han de modificar.
+ */
+public class ResultCache {
+    private static final long BOARD_ROW_BYTES = 16;
+    private static final long POINT_BYTES = 40;
+    private static final long RESULT_BYTES = 64;
+
+    private final long maxWeight;
+    private final LinkedHashMap<TilingRequest, TilingResult> strong = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<TilingRequest, SoftEntry> soft = new HashMap<>();
+    private final ReferenceQueue<TilingResult> collected = new ReferenceQueue<>();
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder softHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Referència feble a un resultat que recorda la seva clau per poder-la treure del mapa
+     * quan el recol·lector l'allibera.
+     */
+    private static final class SoftEntry extends SoftReference<TilingResult> {
+        final TilingRequest key;
+
+        SoftEntry(TilingRequest key, TilingResult result, ReferenceQueue<TilingResult> queue) {
+            super(result, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Crea una memòria cau que ocupa com a molt una quarta part de la memòria màxima de la JVM
+     * amb referències fortes.
+     */
+    public ResultCache() {
+        this(Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /**
+     * Crea una memòria cau.
+     *
+     * @param maxWeight El pes màxim, en bytes estimats, dels resultats amb referència forta.
+     */
+    public ResultCache(long maxWeight) {
+        this.maxWeight = Math.max(0, maxWeight);
+    }
+
+    /**
+     * Retorna el resultat guardat per a una petició.
+     *
+     * @param request La petició.
+     * @return El resultat, o null si no hi és.
+     */
+    public synchronized TilingResult get(TilingRequest request) {
+        request = request.cacheKey();
+        TilingResult result = strong.get(request);
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        expungeCollected();
+        SoftEntry entry = soft.get(request);
+        result = entry != null ? entry.get() : null;
+        if (result == null) {
+            misses.increment();
+            return null;
+        }
+        softHits.increment();
+        soft.remove(request);
+        insert(request, result);
+        return result;
+    }
+
+    /**
+     * Guarda el resultat d'una petició, substituint-ne l'anterior.
+     *
+     * @param result El resultat, amb la petició que l'ha produït.
+     */
+    public synchronized void put(TilingResult result) {
+        TilingRequest request = result.getRequest().cacheKey();
+        expungeCollected();
+        soft.remove(request);
+        TilingResult previous = strong.remove(request);
+        if (previous != null) {
+            weight -= weigh(previous);
+        }
+        insert(request, result);
+    }
+
+    /**
+     * Treu el resultat d'una petició, per exemple perquè se'n modificarà el tauler.
+     *
+     * @param request La petició.
+     */
+    public synchronized void remove(TilingRequest request) {
+        request = request.cacheKey();
+        soft.remove(request);
+        TilingResult previous = strong.remove(request);
+        if (previous != null) {
+            weight -= weigh(previous);
+        }
+    }
+
+    /**
+     * Buida la memòria cau. Les mètriques es conserven.
+     */
+    public synchronized void clear() {
+        strong.clear();
+        soft.clear();
+        weight = 0;
+        while (collected.poll() != null) {
+            // Les entrades ja no són al mapa.
+        }
+    }
+
+    /**
+     * Retorna el nombre de consultes servides des de la llista forta.
+     *
+     * @return El nombre d'encerts.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Retorna el nombre de consultes servides des d'un resultat desplaçat a referència feble
+     * que encara no s'havia alliberat.
+     *
+     * @return El nombre d'encerts febles.
+     */
+    public long getSoftHitCount() {
+        return softHits.sum();
+    }
+
+    /**
+     * Retorna el nombre de consultes que no han trobat cap resultat.
+     *
+     * @return El nombre de fallades.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Retorna el nombre de resultats desplaçats de la llista forta.
+     *
+     * @return El nombre de desallotjaments.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Retorna la proporció de consultes que han trobat resultat.
+     *
+     * @return La taxa d'encerts, entre 0 i 1.
+     */
+    public double getHitRate() {
+        long found = hits.sum() + softHits.sum();
+        long total = found + misses.sum();
+        return total == 0 ? 0 : (double) found / total;
+    }
+
+    /**
+     * Retorna el pes estimat, en bytes, dels resultats amb referència forta.
+     *
+     * @return El pes actual.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Retorna el nombre de resultats amb referència forta.
+     *
+     * @return El nombre de resultats.
+     */
+    public synchronized int size() {
+        return strong.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResultCache[hits=%d, softHits=%d, misses=%d, evictions=%d, weight=%d]",
+                getHitCount(), getSoftHitCount(), getMissCount(), getEvictionCount(), getWeight());
+    }
+
+    /**
+     * Afegeix un resultat a la llista forta i hi desplaça els menys usats fins que el pes torna
+     * a ser dins del límit. Un resultat més gran que el límit va directament a referència feble.
+     */
+    private void insert(TilingRequest request, TilingResult result) {
+        long size = weigh(result);
+        if (size > maxWeight) {
+            soft.put(request, new SoftEntry(request, result, collected));
+            evictions.increment();
+            return;
+        }
+        strong.put(request, result);
+        weight += size;
+        Iterator<Map.Entry<TilingRequest, TilingResult>> eldest = strong.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            Map.Entry<TilingRequest, TilingResult> entry = eldest.next();
+            eldest.remove();
+            weight -= weigh(entry.getValue());
+            soft.put(entry.getKey(), new SoftEntry(entry.getKey(), entry.getValue(), collected));
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Treu del mapa feble les entrades que el recol·lector ja ha alliberat.
+     */
+    private void expungeCollected() {
+        SoftEntry entry;
+        while ((entry = (SoftEntry) collected.poll()) != null) {
+            soft.remove(entry.key, entry);
+        }
+    }
+
+    /**
+     * Estima la memòria que ocupa un resultat.
+     */
+    private static long weigh(TilingResult result) {
+        long size = RESULT_BYTES;
+        int[][] board = result.getBoard();
+        if (board != null) {
+            for (int[] row : board) {
+                size += BOARD_ROW_BYTES + 4L * row.length;
+            }
+        }
+        return size + POINT_BYTES * result.getPoints().size();
+    }
+}
@@ -0,0 +1,407 @@
+package engine;
+
+import export.BoardFile;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Magatzem persistent de resultats en un directori local, adreçat pel contingut de la petició.
+ * <p>
+ * Cada resultat es guarda en un fitxer el nom del qual és el resum SHA-256 dels paràmetres de
+ * la petició: els taulers en format {@link BoardFile} i les corbes com a parelles de doubles,
+ * amb NaN com a separador entre trams. En llegir-los, els fitxers es projecten a memòria. El
+ * directori té una mida màxima: quan se supera, s'esborren els fitxers usats fa més temps,
+ * segons la data de modificació, que es renova a cada lectura.
+ * <p>
+ * Com que els fitxers s'escriuen a un temporal i es mouen al seu nom en acabar, diversos
+ * processos poden compartir el mateix directori.
+ */
+public class ResultStore {
+    public static final String DIR_PROPERTY = "tiling.store.dir";
+    public static final String MAX_BYTES_PROPERTY = "tiling.store.maxBytes";
+    public static final long DEFAULT_MAX_BYTES = 1L << 30;
+    public static final long DEFAULT_MIN_COMPUTE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int FORMAT_VERSION = 1;
+    private static final int POINTS_MAGIC = 0x54505453;
+    private static final int POINTS_HEADER_BYTES = 16;
+    private static final String BOARD_SUFFIX = ".board";
+    private static final String POINTS_SUFFIX = ".points";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final long minComputeNanos;
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Fitxer del magatzem amb la data d'últim ús i la mida.
+     */
+    private static final class StoredFile {
+        final Path file;
+        final FileTime lastUsed;
+        final long size;
+
+        StoredFile(Path file, FileTime lastUsed, long size) {
+            this.file = file;
+            this.lastUsed = lastUsed;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Crea un magatzem amb la mida màxima i el temps mínim de càlcul per defecte.
+     *
+     * @param dir El directori del magatzem, que es crea si no existeix.
+     * @throws IOException Si no es pot crear o llegir el directori.
+     */
+    public ResultStore(Path dir) throws IOException {
+        this(dir, DEFAULT_MAX_BYTES, DEFAULT_MIN_COMPUTE_NANOS);
+    }
+
+    /**
+     * Crea un magatzem.
+     *
+     * @param dir El directori del magatzem, que es crea si no existeix.
+     * @param maxBytes La mida màxima del directori, en bytes.
+     * @param minComputeNanos El temps de càlcul a partir del qual val la pena desar un resultat.
+     * @throws IOException Si no es pot crear o llegir el directori.
+     */
+    public ResultStore(Path dir, long maxBytes, long minComputeNanos) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.maxBytes = maxBytes;
+        this.minComputeNanos = minComputeNanos;
+        for (Path file : storedFiles()) {
+            totalBytes += sizeOf(file);
+        }
+    }
+
+    /**
+     * Crea el magatzem indicat per les propietats del sistema {@code tiling.store.dir} i
+     * {@code tiling.store.maxBytes}.
+     *
+     * @return El magatzem, o null si no s'ha indicat cap directori o no es pot fer servir.
+     */
+    public static ResultStore fromSystemProperties() {
+        String dir = System.getProperty(DIR_PROPERTY);
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        try {
+            return new ResultStore(Paths.get(dir), Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES),
+                    DEFAULT_MIN_COMPUTE_NANOS);
+        } catch (IOException e) {
+            System.err.println("Result store disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Retorna la clau d'una petició: el resum SHA-256, en hexadecimal, dels paràmetres de la
+     * petició normalitzada amb {@link TilingRequest#cacheKey()} i de la versió del format.
+     *
+     * @param request La petició.
+     * @return La clau.
+     */
+    public static String keyOf(TilingRequest request) {
+        request = request.cacheKey();
+        String params = FORMAT_VERSION + "|" + request.getAlgorithmName() + "|" + request.getBoardSize() + "|"
+                + request.getMaxDepth() + "|" + request.getMissingRow() + "|" + request.getMissingCol();
+        if (request.getBoardCols() != request.getBoardSize()) {
+            params += "|" + request.getBoardCols();
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(params.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Llegeix el resultat d'una petició, si és al magatzem.
+     *
+     * @param request La petició.
+     * @return El resultat, o null si no hi és.
+     * @throws IOException Si el fitxer existeix però no es pot llegir.
+     */
+    public TilingResult get(TilingRequest request) throws IOException {
+        String key = keyOf(request);
+        long start = System.nanoTime();
+        Path board = dir.resolve(key + BOARD_SUFFIX);
+        Path points = dir.resolve(key + POINTS_SUFFIX);
+        try {
+            if (Files.exists(board)) {
+                int[][] cells;
+                try (BoardFile file = BoardFile.open(board)) {
+                    cells = file.readBoard();
+                }
+                touch(board);
+                hits.increment();
+                return new TilingResult(request, cells, null, false, System.nanoTime() - start);
+            }
+            if (Files.exists(points)) {
+                TilingResult result = readPoints(request, points, start);
+                touch(points);
+                hits.increment();
+                return result;
+            }
+        } catch (NoSuchFileException e) {
+            // Un altre procés l'ha desallotjat entre la comprovació i la lectura.
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Desa un resultat si ha costat prou de calcular, encara no hi és i cap dins de la mida
+     * màxima.
+     *
+     * @param result El resultat.
+     * @return Cert si s'ha escrit el fitxer.
+     * @throws IOException Si no es pot escriure el fitxer.
+     */
+    public boolean put(TilingResult result) throws IOException {
+        if (result.getElapsedNanos() < minComputeNanos || (!result.isBoard() && result.getPoints().isEmpty())) {
+            return false;
+        }
+        String key = keyOf(result.getRequest());
+        Path target = dir.resolve(key + (result.isBoard() ? BOARD_SUFFIX : POINTS_SUFFIX));
+        if (Files.exists(target)) {
+            return false;
+        }
+        Path temp = Files.createTempFile(dir, key, ".tmp");
+        try {
+            if (result.isBoard()) {
+                BoardFile.write(result.getBoard(), temp);
+            } else {
+                writePoints(result, temp);
+            }
+            if (Files.size(temp) > maxBytes) {
+                return false;
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        writes.increment();
+        synchronized (this) {
+            totalBytes += sizeOf(target);
+            if (totalBytes > maxBytes) {
+                evict(target);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retorna el directori del magatzem.
+     *
+     * @return El directori.
+     */
+    public Path getDirectory() {
+        return dir;
+    }
+
+    /**
+     * Retorna la mida dels fitxers del magatzem que coneix aquest procés.
+     *
+     * @return La mida en bytes.
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Retorna el nombre de lectures que han trobat el resultat.
+     *
+     * @return El nombre d'encerts.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Retorna el nombre de lectures que no l'han trobat.
+     *
+     * @return El nombre de fallades.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Retorna el nombre de resultats escrits.
+     *
+     * @return El nombre d'escriptures.
+     */
+    public long getWriteCount() {
+        return writes.sum();
+    }
+
+    /**
+     * Retorna el nombre de fitxers esborrats per mantenir la mida màxima.
+     *
+     * @return El nombre de desallotjaments.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResultStore[%s, hits=%d, misses=%d, writes=%d, evictions=%d, bytes=%d]",
+                dir, getHitCount(), getMissCount(), getWriteCount(), getEvictionCount(), getTotalBytes());
+    }
+
+    /**
+     * Esborra els fitxers usats fa més temps fins que el directori torna a ser dins del límit.
+     * Es recompta el directori sencer perquè altres processos també hi poden escriure.
+     *
+     * @param keep El fitxer acabat d'escriure, que no s'esborra.
+     */
+    private void evict(Path keep) throws IOException {
+        List<Path> files = storedFiles();
+        long total = 0;
+        List<StoredFile> aged = new ArrayList<>(files.size());
+        for (Path file : files) {
+            try {
+                StoredFile stored = new StoredFile(file, Files.getLastModifiedTime(file), Files.size(file));
+                total += stored.size;
+                aged.add(stored);
+            } catch (NoSuchFileException e) {
+                // Ja s'ha esborrat.
+            }
+        }
+        aged.sort(Comparator.comparing(stored -> stored.lastUsed));
+        for (StoredFile stored : aged) {
+            if (total <= maxBytes) break;
+            if (stored.file.equals(keep)) continue;
+            if (Files.deleteIfExists(stored.file)) {
+                evictions.increment();
+            }
+            total -= stored.size;
+        }
+        totalBytes = total;
+    }
+
+    private List<Path> storedFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*{" + BOARD_SUFFIX + "," + POINTS_SUFFIX + "}")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Només afecta l'ordre de desallotjament.
+        }
+    }
+
+    /**
+     * Escriu una corba: capçalera (màgic, versió, invertY, nombre de punts) i les coordenades
+     * de cada punt, amb NaN, NaN per als separadors.
+     */
+    private static void writePoints(TilingResult result, Path file) throws IOException {
+        List<Point2D.Double> points = result.getPoints();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.putInt(POINTS_MAGIC).putInt(FORMAT_VERSION).putInt(result.isInvertY() ? 1 : 0).putInt(points.size());
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Point2D.Double p : points) {
+                if (buffer.remaining() < 16) {
+                    drain(out, buffer);
+                }
+                buffer.putDouble(p != null ? p.x : Double.NaN).putDouble(p != null ? p.y : Double.NaN);
+            }
+            drain(out, buffer);
+        }
+    }
+
+    /**
+     * Llegeix una corba projectant el fitxer a memòria, per trossos de com a molt 2 GB.
+     */
+    private static TilingResult readPoints(TilingRequest request, Path file, long start) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < POINTS_HEADER_BYTES) {
+                throw new IOException(file + " is truncated");
+            }
+            ByteBuffer header = in.map(FileChannel.MapMode.READ_ONLY, 0, POINTS_HEADER_BYTES);
+            if (header.getInt(0) != POINTS_MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException(file + " is not a stored curve");
+            }
+            boolean invertY = header.getInt(8) != 0;
+            int count = header.getInt(12);
+            if (count < 0 || POINTS_HEADER_BYTES + 16L * count > size) {
+                throw new IOException(file + " is truncated");
+            }
+            List<Point2D.Double> points = new ArrayList<>(count);
+            int chunk = Integer.MAX_VALUE / 16;
+            for (int first = 0; first < count; first += chunk) {
+                int n = Math.min(chunk, count - first);
+                DoubleBuffer coords = in.map(FileChannel.MapMode.READ_ONLY,
+                        POINTS_HEADER_BYTES + 16L * first, 16L * n).asDoubleBuffer();
+                for (int i = 0; i < n; i++) {
+                    double x = coords.get();
+                    double y = coords.get();
+                    points.add(Double.isNaN(x) ? null : new Point2D.Double(x, y));
+                }
+            }
+            return new TilingResult(request, null, points, invertY, System.nanoTime() - start);
+        }
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,241 @@
+package engine;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Punt d'entrada del motor de càlcul sense interfície gràfica.
+ * <p>
+ * Crea els algorismes a partir del registre i els executa al gestor de feines, sense carregar
+ * Swing ni inicialitzar AWT. El controlador gràfic en consumeix els resultats, i també es pot
+ * incrustar en un procés servidor.
+ * <p>
+ * Els resultats de {@link #run} i {@link #runAsync} es guarden en una {@link ResultCache}, i
+ * les peticions idèntiques que arriben mentre una altra es calcula comparteixen el mateix
+ * càlcul. Si el motor té un {@link ResultStore}, els resultats costosos també es desen a disc,
+ * i una petició que no és a la memòria cau es busca al magatzem abans de calcular-la.
+ */
+public class TilingEngine {
+    private final AlgorithmRegistry registry;
+    private final JobManager jobManager;
+    private final ResultCache cache = new ResultCache();
+    private final ResultStore store;
+    private final ConcurrentHashMap<TilingRequest, CompletableFuture<TilingResult>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Crea un motor amb el registre d'algorismes per defecte i el magatzem indicat per
+     * {@link ResultStore#fromSystemProperties()}, si n'hi ha.
+     */
+    public TilingEngine() {
+        this(AlgorithmRegistry.getDefault());
+    }
+
+    /**
+     * Crea un motor amb el registre d'algorismes especificat i el magatzem indicat per
+     * {@link ResultStore#fromSystemProperties()}, si n'hi ha.
+     *
+     * @param registry El registre d'algorismes.
+     */
+    public TilingEngine(AlgorithmRegistry registry) {
+        this(registry, ResultStore.fromSystemProperties());
+    }
+
+    /**
+     * Crea un motor.
+     *
+     * @param registry El registre d'algorismes.
+     * @param store El magatzem persistent de resultats, o null per no desar-los.
+     */
+    public TilingEngine(AlgorithmRegistry registry, ResultStore store) {
+        this.registry = registry;
+        this.store = store;
+        this.jobManager = new JobManager(registry, JobManager.DEFAULT_QUEUE_CAPACITY, JobManager.DEFAULT_COST_BUDGET,
+                JobManager.DEFAULT_QUEUED_COST_LIMIT);
+    }
+
+    /**
+     * Envia una petició de càlcul sense esperar-ne el resultat.
+     *
+     * @param request La petició de càlcul.
+     * @return El descriptor de la feina.
+     */
+    public TilingJob submit(TilingRequest request) {
+        return jobManager.submit(request);
+    }
+
+    /**
+     * Calcula una petició i n'espera el resultat, o el retorna de la memòria cau.
+     *
+     * @param request La petició de càlcul.
+     * @return El resultat del càlcul.
+     * @throws java.util.concurrent.CompletionException Si el càlcul falla.
+     */
+    public TilingResult run(TilingRequest request) {
+        return runAsync(request).join();
+    }
+
+    /**
+     * Calcula una petició de manera asíncrona. Si el resultat és a la memòria cau, el futur ja
+     * està completat; si la mateixa petició, o una d'equivalent segons
+     * {@link TilingRequest#cacheKey()}, ja s'està calculant, es retorna el futur d'aquell càlcul.
+     * Altrament, es llegeix del magatzem si hi és, o es calcula.
+     *
+     * @param request La petició de càlcul.
+     * @return El futur amb el resultat.
+     * @throws java.util.concurrent.RejectedExecutionException Si el gestor de feines no admet la petició.
+     */
+    public CompletableFuture<TilingResult> runAsync(TilingRequest request) {
+        TilingResult cached = cache.get(request);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        TilingRequest key = request.cacheKey();
+        CompletableFuture<TilingResult> future = new CompletableFuture<>();
+        CompletableFuture<TilingResult> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            return running;
+        }
+        if (store == null) {
+            compute(request, future);
+        } else {
+            getComputePool().execute(() -> {
+                TilingResult stored = null;
+                try {
+                    stored = store.get(request);
+                } catch (IOException e) {
+                    System.err.println("Could not read stored result for " + request + ": " + e.getMessage());
+                }
+                if (stored == null) {
+                    try {
+                        compute(request, future);
+                    } catch (RuntimeException e) {
+                        // compute ja ha completat el futur amb l'error.
+                    }
+                    return;
+                }
+                cache.put(stored);
+                inFlight.remove(key, future);
+                future.complete(stored);
+            });
+        }
+        return future;
+    }
+
+    /**
+     * Envia el càlcul d'una petició i, en acabar, en desa el resultat a la memòria cau i al
+     * magatzem i completa el futur compartit.
+     */
+    private void compute(TilingRequest request, CompletableFuture<TilingResult> future) {
+        TilingRequest key = request.cacheKey();
+        try {
+            submit(request).getFuture().whenComplete((result, error) -> {
+                if (error == null) {
+                    cache.put(result);
+                }
+                inFlight.remove(key, future);
+                if (error == null) {
+                    future.complete(result);
+                    if (store != null) {
+                        getComputePool().execute(() -> persist(result));
+                    }
+                } else {
+                    future.completeExceptionally(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Desa un resultat al magatzem. Un error d'escriptura no afecta el resultat.
+     */
+    private void persist(TilingResult result) {
+        try {
+            store.put(result);
+        } catch (IOException e) {
+            System.err.println("Could not store result for " + result.getRequest() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retorna la memòria cau de resultats del motor.
+     *
+     * @return La memòria cau.
+     */
+    public ResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Retorna el magatzem persistent de resultats del motor.
+     *
+     * @return El magatzem, o null si el motor no en té.
+     */
+    public ResultStore getStore() {
+        return store;
+    }
+
+    /**
+     * Retorna el registre d'algorismes del motor.
+     *
+     * @return El registre d'algorismes.
+     */
+    public AlgorithmRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Retorna el gestor de feines del motor.
+     *
+     * @return El gestor de feines.
+     */
+    public JobManager getJobManager() {
+        return jobManager;
+    }
+
+    /**
+     * Retorna el pool de càlcul compartit.
+     *
+     * @return El pool de càlcul.
+     */
+    public ForkJoinPool getComputePool() {
+        return jobManager.getComputePool();
+    }
+
+    /**
+     * Atura el motor i cancel·la les feines pendents.
+     */
+    public void shutdown() {
+        jobManager.shutdown();
+    }
+
+    /**
+     * Calcula una petició des de la línia d'ordres sense obrir cap finestra.
+     * Ús: {@code java engine.TilingEngine <algorisme> <mida> <profunditat> [fila columna]}
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: java engine.TilingEngine <algorithm> <boardSize> <maxDepth> [missingRow missingCol]");
+            System.exit(2);
+        }
+        TilingRequest request = args.length >= 5
+                ? new TilingRequest(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                        Integer.parseInt(args[3]), Integer.parseInt(args[4]))
+                : new TilingRequest(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        TilingEngine engine = new TilingEngine();
+        try {
+            TilingResult result = engine.run(request);
+            String size = result.isBoard()
+                    ? result.getBoard().length + "x" + result.getBoard()[0].length + " board"
+                    : result.getPoints().size() + " points";
+            System.out.printf("%s: %s in %.2f ms%n", request, size, result.getElapsedNanos() / 1e6);
+        } finally {
+            engine.shutdown();
+        }
+    }
+}
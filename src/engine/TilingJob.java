@@ -0,0 +1,221 @@
+package engine;
+
+import model.TilingAlgorithm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TilingJob implements TilingNotificar, ExecutionContext {
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    public enum ExecutionMode { VIRTUAL_THREAD, COMPUTE_POOL }
+
+    private final long id;
+    private final TilingRequest request;
+    private final TilingAlgorithm algorithm;
+    private final double estimatedCost;
+    private final long deadline;
+    private final ExecutionMode mode;
+    private final JobManager manager;
+    private final CompletableFuture<TilingResult> future = new CompletableFuture<>();
+    private final AtomicLong progressSteps = new AtomicLong(0);
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+    private volatile long startNanos;
+
+    /**
+     * Crea una nova feina de tiling. Només la crea el {@link JobManager}.
+     *
+     * @param id L'identificador de la feina.
+     * @param request La petició de càlcul.
+     * @param algorithm La instància de l'algoritme.
+     * @param estimatedCost El cost estimat en passos.
+     * @param deadline El termini virtual que determina la prioritat.
+     * @param mode El mode d'execució triat segons el cost.
+     * @param manager El gestor que executa la feina.
+     */
+    TilingJob(long id, TilingRequest request, TilingAlgorithm algorithm,
+              double estimatedCost, long deadline, ExecutionMode mode, JobManager manager) {
+        this.id = id;
+        this.request = request;
+        this.algorithm = algorithm;
+        this.estimatedCost = estimatedCost;
+        this.deadline = deadline;
+        this.mode = mode;
+        this.manager = manager;
+    }
+
+    /**
+     * Executa l'algoritme en el fil actual. El gestor la crida des del pool de càlcul.
+     */
+    void run() {
+        boolean returned = false;
+        startNanos = System.nanoTime();
+        try {
+            algorithm.calculateTiling(this, request.getMaxDepth());
+            returned = true;
+        } catch (RuntimeException e) {
+            onTilingError(e.getMessage() != null ? e.getMessage() : e.toString());
+        } finally {
+            if (returned) {
+                onTilingCompleted();
+            } else {
+                onTilingError("Job terminated abnormally");
+            }
+            manager.release(this);
+        }
+    }
+
+    /**
+     * Marca la feina com a en execució si encara no s'ha cancel·lat.
+     *
+     * @return Cert si la feina pot començar.
+     */
+    boolean markRunning() {
+        return state.compareAndSet(State.QUEUED, State.RUNNING);
+    }
+
+    /**
+     * Cancel·la la feina. Si encara és a la cua, se'n retira; si s'està executant,
+     * l'algoritme s'atura en la següent comprovació de {@link #isRunning()}.
+     *
+     * @return Cert si la feina s'ha cancel·lat, fals si ja havia acabat.
+     */
+    public boolean cancel() {
+        if (!finished.compareAndSet(false, true)) return false;
+        state.set(State.CANCELLED);
+        manager.remove(this);
+        future.cancel(false);
+        return true;
+    }
+
+    /**
+     * Retorna el futur que es completa amb el resultat del càlcul.
+     *
+     * @return El futur de la feina.
+     */
+    public CompletableFuture<TilingResult> getFuture() {
+        return future;
+    }
+
+    /**
+     * Retorna el progrés de la feina, entre 0 i 1.
+     *
+     * @return La fracció de passos completats.
+     */
+    public double getProgress() {
+        if (state.get() == State.COMPLETED) return 1.0;
+        if (estimatedCost <= 0) return 0.0;
+        return Math.min(1.0, progressSteps.get() / estimatedCost);
+    }
+
+    /**
+     * Retorna l'estat actual de la feina.
+     *
+     * @return L'estat de la feina.
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Retorna l'identificador de la feina.
+     *
+     * @return L'identificador.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Retorna la petició de càlcul de la feina.
+     *
+     * @return La petició.
+     */
+    public TilingRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Retorna la instància de l'algoritme, amb el resultat un cop completada la feina.
+     *
+     * @return L'algoritme.
+     */
+    public TilingAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Retorna el cost estimat de la feina en passos.
+     *
+     * @return El cost estimat.
+     */
+    public double getEstimatedCost() {
+        return estimatedCost;
+    }
+
+    /**
+     * Retorna el mode d'execució de la feina.
+     *
+     * @return VIRTUAL_THREAD per a feines petites, COMPUTE_POOL per a la resta.
+     */
+    public ExecutionMode getExecutionMode() {
+        return mode;
+    }
+
+    /**
+     * Retorna el termini virtual de la feina; com més aviat, més prioritat.
+     *
+     * @return El termini en nanosegons.
+     */
+    long getDeadline() {
+        return deadline;
+    }
+
+    @Override
+    public boolean isAnimationEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return state.get() == State.RUNNING;
+    }
+
+    @Override
+    public ScheduledExecutorService getAnimationExecutor() {
+        return null;
+    }
+
+    @Override
+    public ExecutorService getComputeExecutor() {
+        return manager.getComputePool();
+    }
+
+    @Override
+    public void onTilingStarted(int boardSize, int maxDepth) {
+    }
+
+    @Override
+    public void onTilingStep(int step, int[][] boardState) {
+        progressSteps.accumulateAndGet(step, Math::max);
+    }
+
+    @Override
+    public void onTilingCompleted() {
+        if (!finished.compareAndSet(false, true)) return;
+        state.set(State.COMPLETED);
+        future.complete(TilingResult.of(request, algorithm, System.nanoTime() - startNanos));
+    }
+
+    @Override
+    public void onTilingError(String errorMessage) {
+        if (!finished.compareAndSet(false, true)) return;
+        state.set(State.FAILED);
+        future.completeExceptionally(new RuntimeException(errorMessage));
+    }
+}
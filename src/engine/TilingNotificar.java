@@ -1,4 +1,7 @@
-package controller;
+package engine;
+
+import java.awt.geom.Point2D;
+import java.util.List;
 
 public interface TilingNotificar {
     /**
@@ -17,6 +20,17 @@ public interface TilingNotificar {
      */
     void onTilingStep(int step, int[][] boardState);
 
+    /**
+     * Notifica que una corba calculada en mode progressiu ja té acabat un nivell més fi. Els
+     * nivells arriben de menys a més profunditat, i cadascun substitueix l'anterior; l'últim és
+     * el resultat final. La llista no es modifica després de publicar-la.
+     *
+     * @param depth La profunditat del nivell.
+     * @param points Els punts de la corba a aquesta profunditat.
+     */
+    default void onTilingLevel(int depth, List<Point2D.Double> points) {
+    }
+
     /**
      * Notifica que el procés de tiling s'ha completat.
      */
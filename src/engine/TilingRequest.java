@@ -0,0 +1,168 @@
+package engine;
+
+import java.util.Objects;
+
+public class TilingRequest {
+    private final String algorithmName;
+    private final int boardSize;
+    private final int boardCols;
+    private final int maxDepth;
+    private final int missingRow;
+    private final int missingCol;
+
+    /**
+     * Crea una petició de càlcul sense peça absent.
+     *
+     * @param algorithmName El nom de l'algoritme.
+     * @param boardSize La mida del tauler.
+     * @param maxDepth La profunditat màxima del càlcul.
+     */
+    public TilingRequest(String algorithmName, int boardSize, int maxDepth) {
+        this(algorithmName, boardSize, maxDepth, 0, 0);
+    }
+
+    /**
+     * Crea una petició de càlcul.
+     *
+     * @param algorithmName El nom de l'algoritme.
+     * @param boardSize La mida del tauler.
+     * @param maxDepth La profunditat màxima del càlcul.
+     * @param missingRow La fila de la peça absent (només per a Tromino).
+     * @param missingCol La columna de la peça absent (només per a Tromino).
+     */
+    public TilingRequest(String algorithmName, int boardSize, int maxDepth, int missingRow, int missingCol) {
+        this(algorithmName, boardSize, boardSize, maxDepth, missingRow, missingCol);
+    }
+
+    /**
+     * Crea una petició de càlcul per a un tauler rectangular (només per a Tromino).
+     *
+     * @param algorithmName El nom de l'algoritme.
+     * @param boardRows El nombre de files del tauler.
+     * @param boardCols El nombre de columnes del tauler.
+     * @param maxDepth La profunditat màxima del càlcul.
+     * @param missingRow La fila de la peça absent, o -1 si no n'hi ha.
+     * @param missingCol La columna de la peça absent, o -1 si no n'hi ha.
+     */
+    public TilingRequest(String algorithmName, int boardRows, int boardCols, int maxDepth, int missingRow, int missingCol) {
+        this.algorithmName = Objects.requireNonNull(algorithmName, "algorithmName");
+        this.boardSize = boardRows;
+        this.boardCols = boardCols;
+        this.maxDepth = maxDepth;
+        this.missingRow = missingRow;
+        this.missingCol = missingCol;
+    }
+
+    /**
+     * Retorna el nom de l'algoritme.
+     *
+     * @return El nom de l'algoritme.
+     */
+    public String getAlgorithmName() {
+        return algorithmName;
+    }
+
+    /**
+     * Retorna la mida del tauler, o el nombre de files si el tauler és rectangular.
+     *
+     * @return La mida del tauler.
+     */
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * Retorna el nombre de columnes del tauler, que és la mida del tauler si és quadrat.
+     *
+     * @return El nombre de columnes.
+     */
+    public int getBoardCols() {
+        return boardCols;
+    }
+
+    /**
+     * Retorna la profunditat màxima del càlcul.
+     *
+     * @return La profunditat màxima.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Retorna la fila de la peça absent.
+     *
+     * @return La fila de la peça absent.
+     */
+    public int getMissingRow() {
+        return missingRow;
+    }
+
+    /**
+     * Retorna la columna de la peça absent.
+     *
+     * @return La columna de la peça absent.
+     */
+    public int getMissingCol() {
+        return missingCol;
+    }
+
+    /**
+     * Retorna la petició que identifica el resultat a la memòria cau i al magatzem. Els camps que
+     * l'algoritme no fa servir prenen un valor fix, de manera que les peticions que produeixen el
+     * mateix resultat comparteixen clau: la profunditat no compta per al Tromino ni per al Dòmino,
+     * la peça absent no compta per al Dòmino ni per a les corbes, ni per als taulers de Tromino
+     * d'àrea múltiple de 3, que no en tenen, i només el Tromino fa servir el nombre de columnes.
+     * Els algorismes que no són dels inclosos a l'aplicació es deixen tal com són.
+     *
+     * @return La petició normalitzada, o aquesta mateixa si ja ho és.
+     */
+    public TilingRequest cacheKey() {
+        int cols = boardSize, depth = maxDepth, row = 0, col = 0;
+        switch (algorithmName) {
+            case "Tromino":
+                cols = boardCols;
+                depth = 0;
+                boolean covered = (long) boardSize * boardCols % 3 == 0;
+                row = covered ? -1 : missingRow;
+                col = covered ? -1 : missingCol;
+                break;
+            case "Domino":
+                depth = 0;
+                break;
+            case "Hilbert":
+            case "Sierpinski":
+            case "Koch":
+            case "Square":
+                break;
+            default:
+                return this;
+        }
+        if (cols == boardCols && depth == maxDepth && row == missingRow && col == missingCol) {
+            return this;
+        }
+        return new TilingRequest(algorithmName, boardSize, cols, depth, row, col);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TilingRequest)) return false;
+        TilingRequest other = (TilingRequest) o;
+        return boardSize == other.boardSize && boardCols == other.boardCols && maxDepth == other.maxDepth
+                && missingRow == other.missingRow && missingCol == other.missingCol
+                && algorithmName.equals(other.algorithmName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(algorithmName, boardSize, boardCols, maxDepth, missingRow, missingCol);
+    }
+
+    @Override
+    public String toString() {
+        String size = boardCols == boardSize ? String.valueOf(boardSize) : boardSize + "x" + boardCols;
+        return algorithmName + "[size=" + size + ", depth=" + maxDepth
+                + ", missing=(" + missingRow + "," + missingCol + ")]";
+    }
+}
@@ -0,0 +1,114 @@
+package engine;
+
+import model.*;
+
+import java.awt.geom.Point2D;
+import java.util.Collections;
+import java.util.List;
+
+public class TilingResult {
+    private final TilingRequest request;
+    private final int[][] board;
+    private final List<Point2D.Double> points;
+    private final boolean invertY;
+    private final long elapsedNanos;
+
+    /**
+     * Crea un nou resultat.
+     *
+     * @param request La petició que l'ha produït.
+     * @param board El tauler calculat, o null si el resultat és una corba.
+     * @param points Els punts de la corba, buit si el resultat és un tauler.
+     * @param invertY Indica si la corba s'ha de dibuixar amb l'eix Y invertit.
+     * @param elapsedNanos El temps de càlcul en nanosegons.
+     */
+    public TilingResult(TilingRequest request, int[][] board, List<Point2D.Double> points,
+                        boolean invertY, long elapsedNanos) {
+        this.request = request;
+        this.board = board;
+        this.points = points != null ? points : Collections.emptyList();
+        this.invertY = invertY;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Construeix el resultat a partir d'un algoritme que ja ha acabat el càlcul.
+     *
+     * @param request La petició que l'ha produït.
+     * @param algorithm L'algoritme calculat.
+     * @param elapsedNanos El temps de càlcul en nanosegons.
+     * @return El resultat de l'algoritme.
+     */
+    public static TilingResult of(TilingRequest request, TilingAlgorithm algorithm, long elapsedNanos) {
+        if (algorithm instanceof TrominoTiling) {
+            return new TilingResult(request, ((TrominoTiling) algorithm).getBoard(), null, false, elapsedNanos);
+        } else if (algorithm instanceof GeneralTrominoTiling) {
+            return new TilingResult(request, ((GeneralTrominoTiling) algorithm).getBoard(), null, false, elapsedNanos);
+        } else if (algorithm instanceof DominoTiling) {
+            return new TilingResult(request, ((DominoTiling) algorithm).getBoard(), null, false, elapsedNanos);
+        } else if (algorithm instanceof HilbertCurve) {
+            return new TilingResult(request, null, ((HilbertCurve) algorithm).getPoints(), true, elapsedNanos);
+        } else if (algorithm instanceof KochCurve) {
+            return new TilingResult(request, null, ((KochCurve) algorithm).getPoints(), false, elapsedNanos);
+        } else if (algorithm instanceof SierpinskiTriangle) {
+            return new TilingResult(request, null, ((SierpinskiTriangle) algorithm).getPoints(), false, elapsedNanos);
+        } else if (algorithm instanceof SquareModel) {
+            return new TilingResult(request, null, ((SquareModel) algorithm).getPoints(), false, elapsedNanos);
+        }
+        return new TilingResult(request, null, null, false, elapsedNanos);
+    }
+
+    /**
+     * Retorna la petició que ha produït el resultat.
+     *
+     * @return La petició.
+     */
+    public TilingRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Indica si el resultat és un tauler (Tromino, Domino) en lloc d'una corba.
+     *
+     * @return Cert si el resultat és un tauler.
+     */
+    public boolean isBoard() {
+        return board != null;
+    }
+
+    /**
+     * Retorna el tauler calculat.
+     *
+     * @return El tauler, o null si el resultat és una corba.
+     */
+    public int[][] getBoard() {
+        return board;
+    }
+
+    /**
+     * Retorna els punts de la corba calculada. Un element null separa polilínies.
+     *
+     * @return La llista de punts, buida si el resultat és un tauler.
+     */
+    public List<Point2D.Double> getPoints() {
+        return points;
+    }
+
+    /**
+     * Indica si la corba s'ha de dibuixar amb l'eix Y invertit.
+     *
+     * @return Cert si cal invertir l'eix Y.
+     */
+    public boolean isInvertY() {
+        return invertY;
+    }
+
+    /**
+     * Retorna el temps de càlcul.
+     *
+     * @return El temps en nanosegons.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,442 @@
+package export;
+
+import engine.TilingEngine;
+import engine.TilingRequest;
+import engine.TilingResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Format binari compacte per a taulers de peces, amb blocs independents i un índex de blocs.
+ * <p>
+ * El fitxer comença amb una capçalera (màgic, versió, files, columnes i mida de bloc) seguida
+ * de l'índex, que guarda la posició de cada bloc. Cada bloc de 256 × 256 cel·les es codifica
+ * sol: per a cada cel·la, en ordre de files, un codi de 2 bits indica si és igual a la cel·la
+ * de l'esquerra, a la de dalt o a la de dalt a la dreta dins del bloc, o si és una peça nova;
+ * les peces noves guarden la diferència amb l'última peça nova com a varint en zig-zag. Els
+ * codis i les diferències es comprimeixen amb Deflater.
+ * <p>
+ * Com que una peça de tromino o de dòmino sempre té una cel·la veïna d'aquestes formes, gairebé
+ * totes les cel·les ocupen 2 bits abans de comprimir. El lector projecta el fitxer a memòria i
+ * només descomprimeix els blocs que se li demanen.
+ */
+public class BoardFile implements Closeable {
+    public static final int MAGIC = 0x54425244;
+    public static final int VERSION = 1;
+    public static final int BLOCK_SHIFT = 8;
+    private static final int HEADER_BYTES = 20;
+    private static final int LEFT = 0;
+    private static final int UP = 1;
+    private static final int UP_RIGHT = 2;
+    private static final int NEW = 3;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final long[] offsets;
+    private final int rows;
+    private final int cols;
+    private final int blockShift;
+    private final int blockRows;
+    private final int blockCols;
+
+    private BoardFile(FileChannel channel, MappedByteBuffer data, long[] offsets, int rows, int cols, int blockShift) {
+        this.channel = channel;
+        this.data = data;
+        this.offsets = offsets;
+        this.rows = rows;
+        this.cols = cols;
+        this.blockShift = blockShift;
+        this.blockRows = (rows + (1 << blockShift) - 1) >> blockShift;
+        this.blockCols = (cols + (1 << blockShift) - 1) >> blockShift;
+    }
+
+    /**
+     * Escriu un tauler amb la compressió per defecte.
+     *
+     * @param board El tauler.
+     * @param file El fitxer de sortida.
+     * @throws IOException Si no es pot escriure el fitxer.
+     */
+    public static void write(int[][] board, Path file) throws IOException {
+        write(board, file, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Escriu un tauler. Els blocs d'una mateixa fila de blocs es codifiquen en paral·lel i
+     * s'escriuen abans de passar a la següent, de manera que només hi ha una fila de blocs
+     * comprimits en memòria.
+     *
+     * @param board El tauler.
+     * @param file El fitxer de sortida.
+     * @param compressionLevel El nivell de compressió de Deflater.
+     * @throws IOException Si no es pot escriure el fitxer.
+     */
+    public static void write(int[][] board, Path file, int compressionLevel) throws IOException {
+        int rows = board.length;
+        int cols = rows == 0 ? 0 : board[0].length;
+        int blockRows = (rows + (1 << BLOCK_SHIFT) - 1) >> BLOCK_SHIFT;
+        int blockCols = (cols + (1 << BLOCK_SHIFT) - 1) >> BLOCK_SHIFT;
+        long[] offsets = new long[blockRows * blockCols + 1];
+        long position = HEADER_BYTES + 8L * offsets.length;
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.position(position);
+            for (int br = 0; br < blockRows; br++) {
+                int blockRow = br;
+                byte[][] encoded = IntStream.range(0, blockCols).parallel()
+                        .mapToObj(bc -> encodeBlock(board, blockRow, bc, compressionLevel))
+                        .toArray(byte[][]::new);
+                for (int bc = 0; bc < blockCols; bc++) {
+                    offsets[br * blockCols + bc] = position;
+                    writeFully(out, ByteBuffer.wrap(encoded[bc]));
+                    position += encoded[bc].length;
+                }
+            }
+            offsets[offsets.length - 1] = position;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + 8 * offsets.length).order(ByteOrder.BIG_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putInt(BLOCK_SHIFT);
+            for (long offset : offsets) {
+                header.putLong(offset);
+            }
+            header.flip();
+            out.position(0);
+            writeFully(out, header);
+        }
+    }
+
+    /**
+     * Obre un fitxer de tauler. El fitxer es projecta a memòria i no es llegeix cap bloc fins
+     * que es demana.
+     *
+     * @param file El fitxer.
+     * @return El tauler obert, que s'ha de tancar.
+     * @throws IOException Si no es pot llegir el fitxer o no té el format esperat.
+     */
+    public static BoardFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            MappedByteBuffer data = size <= Integer.MAX_VALUE
+                    ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+            ByteBuffer header = data != null ? data.duplicate()
+                    : channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+            if (size < HEADER_BYTES || header.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a board file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported board file version " + header.getInt(4));
+            }
+            int rows = header.getInt(8);
+            int cols = header.getInt(12);
+            int blockShift = header.getInt(16);
+            if (rows < 0 || cols < 0 || blockShift < 1 || blockShift > 15) {
+                throw new IOException(file + " has an invalid header");
+            }
+            int blockRows = (rows + (1 << blockShift) - 1) >> blockShift;
+            int blockCols = (cols + (1 << blockShift) - 1) >> blockShift;
+            long[] offsets = new long[blockRows * blockCols + 1];
+            if (HEADER_BYTES + 8L * offsets.length > size) {
+                throw new IOException(file + " is truncated");
+            }
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = header.getLong(HEADER_BYTES + 8 * i);
+            }
+            if (offsets[offsets.length - 1] > size) {
+                throw new IOException(file + " is truncated");
+            }
+            return new BoardFile(channel, data, offsets, rows, cols, blockShift);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Retorna el nombre de files del tauler.
+     *
+     * @return El nombre de files.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Retorna el nombre de columnes del tauler.
+     *
+     * @return El nombre de columnes.
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Retorna el costat dels blocs, en cel·les.
+     *
+     * @return La mida de bloc.
+     */
+    public int getBlockSize() {
+        return 1 << blockShift;
+    }
+
+    /**
+     * Retorna el nombre de files de blocs.
+     *
+     * @return El nombre de files de blocs.
+     */
+    public int getBlockRows() {
+        return blockRows;
+    }
+
+    /**
+     * Retorna el nombre de columnes de blocs.
+     *
+     * @return El nombre de columnes de blocs.
+     */
+    public int getBlockCols() {
+        return blockCols;
+    }
+
+    /**
+     * Descodifica un bloc i l'escriu a la seva posició del tauler de destinació. Es pot cridar
+     * des de diversos fils alhora.
+     *
+     * @param br La fila del bloc.
+     * @param bc La columna del bloc.
+     * @param board El tauler de destinació, com a mínim de la mida del fitxer.
+     * @throws IOException Si el bloc està malmès.
+     */
+    public void readBlock(int br, int bc, int[][] board) throws IOException {
+        int index = br * blockCols + bc;
+        long start = offsets[index];
+        int length = (int) (offsets[index + 1] - start);
+        ByteBuffer block;
+        if (data != null) {
+            block = data.duplicate();
+            block.position((int) start).limit((int) start + length);
+        } else {
+            block = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        }
+        int r0 = br << blockShift;
+        int c0 = bc << blockShift;
+        decodeBlock(block, board, r0, c0, Math.min(rows, r0 + (1 << blockShift)),
+                Math.min(cols, c0 + (1 << blockShift)));
+    }
+
+    /**
+     * Descodifica tot el tauler, amb els blocs en paral·lel.
+     *
+     * @return El tauler.
+     * @throws IOException Si algun bloc està malmès.
+     */
+    public int[][] readBoard() throws IOException {
+        int[][] board = new int[rows][cols];
+        try {
+            IntStream.range(0, blockRows * blockCols).parallel().forEach(i -> {
+                try {
+                    readBlock(i / blockCols, i % blockCols, board);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        return board;
+    }
+
+    /**
+     * Tanca el fitxer.
+     *
+     * @throws IOException Si no es pot tancar.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Codifica un bloc: la longitud sense comprimir, seguida dels codis i les diferències
+     * comprimits.
+     */
+    private static byte[] encodeBlock(int[][] board, int br, int bc, int compressionLevel) {
+        int r0 = br << BLOCK_SHIFT;
+        int c0 = bc << BLOCK_SHIFT;
+        int r1 = Math.min(board.length, r0 + (1 << BLOCK_SHIFT));
+        int c1 = Math.min(board[0].length, c0 + (1 << BLOCK_SHIFT));
+        int cells = (r1 - r0) * (c1 - c0);
+        int opBytes = (cells + 3) >> 2;
+        byte[] raw = new byte[opBytes + 64];
+        int length = opBytes;
+        int cell = 0;
+        int lastNew = 0;
+        for (int r = r0; r < r1; r++) {
+            int[] row = board[r];
+            int[] above = r > r0 ? board[r - 1] : null;
+            for (int c = c0; c < c1; c++, cell++) {
+                int id = row[c];
+                int op;
+                if (c > c0 && row[c - 1] == id) {
+                    op = LEFT;
+                } else if (above != null && above[c] == id) {
+                    op = UP;
+                } else if (above != null && c + 1 < c1 && above[c + 1] == id) {
+                    op = UP_RIGHT;
+                } else {
+                    op = NEW;
+                    if (length + 5 > raw.length) {
+                        raw = Arrays.copyOf(raw, raw.length * 2);
+                    }
+                    int delta = id - lastNew;
+                    int zigzag = (delta << 1) ^ (delta >> 31);
+                    while ((zigzag & ~0x7F) != 0) {
+                        raw[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+                        zigzag >>>= 7;
+                    }
+                    raw[length++] = (byte) zigzag;
+                    lastNew = id;
+                }
+                raw[cell >> 2] |= (byte) (op << ((cell & 3) << 1));
+            }
+        }
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(raw, 0, length);
+            deflater.finish();
+            byte[] out = new byte[4 + length / 4 + 64];
+            int size = 4;
+            while (!deflater.finished()) {
+                if (size == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                size += deflater.deflate(out, size, out.length - size);
+            }
+            ByteBuffer.wrap(out).putInt(0, length);
+            return Arrays.copyOf(out, size);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Descodifica un bloc sobre la regió [r0, r1) × [c0, c1) del tauler.
+     */
+    private static void decodeBlock(ByteBuffer block, int[][] board, int r0, int c0, int r1, int c1)
+            throws IOException {
+        int length = block.getInt(block.position());
+        block.position(block.position() + 4);
+        int cells = (r1 - r0) * (c1 - c0);
+        int opBytes = (cells + 3) >> 2;
+        if (length < opBytes) {
+            throw new IOException("Corrupt board block");
+        }
+        byte[] raw = new byte[length];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(block);
+            int size = 0;
+            while (size < length && !inflater.finished()) {
+                int n = inflater.inflate(raw, size, length - size);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+                size += n;
+            }
+            if (size != length) {
+                throw new IOException("Corrupt board block");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt board block", e);
+        } finally {
+            inflater.end();
+        }
+
+        int next = opBytes;
+        int cell = 0;
+        int lastNew = 0;
+        for (int r = r0; r < r1; r++) {
+            int[] row = board[r];
+            int[] above = r > r0 ? board[r - 1] : null;
+            for (int c = c0; c < c1; c++, cell++) {
+                int op = (raw[cell >> 2] >> ((cell & 3) << 1)) & 3;
+                if (op == LEFT && c > c0) {
+                    row[c] = row[c - 1];
+                } else if (op == UP && above != null) {
+                    row[c] = above[c];
+                } else if (op == UP_RIGHT && above != null && c + 1 < c1) {
+                    row[c] = above[c + 1];
+                } else if (op != NEW) {
+                    throw new IOException("Corrupt board block");
+                } else {
+                    int zigzag = 0;
+                    int shift = 0;
+                    int b;
+                    do {
+                        if (next >= length) {
+                            throw new IOException("Corrupt board block");
+                        }
+                        b = raw[next++];
+                        zigzag |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while ((b & 0x80) != 0);
+                    lastNew += (zigzag >>> 1) ^ -(zigzag & 1);
+                    row[c] = lastNew;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcula un tauler i el desa en aquest format sense obrir cap finestra.
+     * Ús: {@code java export.BoardFile <algorisme> <mida> <profunditat> <fitxer> [fila columna]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: java export.BoardFile <algorithm> <boardSize> <maxDepth> <output> [missingRow missingCol]");
+            System.exit(2);
+        }
+        TilingRequest request = args.length >= 6
+                ? new TilingRequest(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                        Integer.parseInt(args[4]), Integer.parseInt(args[5]))
+                : new TilingRequest(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        Path file = Paths.get(args[3]);
+        TilingEngine engine = new TilingEngine();
+        try {
+            TilingResult result = engine.run(request);
+            if (!result.isBoard()) {
+                System.err.println(request.getAlgorithmName() + " does not produce a board");
+                System.exit(2);
+            }
+            long start = System.nanoTime();
+            write(result.getBoard(), file);
+            System.out.printf("%s: wrote %d bytes to %s in %.2f ms%n", request, Files.size(file), file,
+                    (System.nanoTime() - start) / 1e6);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
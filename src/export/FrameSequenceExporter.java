@@ -0,0 +1,195 @@
+package export;
+
+import engine.TilingEngine;
+import engine.TilingRequest;
+import engine.TilingResult;
+import model.TrominoTiling;
+import view.CurveRenderer;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+
+/**
+ * Exporta l'animació d'un tauler o d'una corba com una seqüència numerada de fitxers PNG.
+ * <p>
+ * Cada fotograma es calcula directament a partir de l'ordre dels passos, sense reproduir
+ * l'animació ni esperar els retards dels models: el fotograma k d'un tauler conté les peces amb
+ * identificador com a molt k vegades els passos per fotograma, i el d'una corba, els primers
+ * punts. Els fotogrames són independents i es dibuixen i codifiquen en paral·lel, un per fil.
+ */
+public class FrameSequenceExporter {
+    private final int threads;
+    private final PngExporter encoder;
+
+    /**
+     * Crea un exportador amb un fil per processador.
+     */
+    public FrameSequenceExporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Crea un exportador.
+     *
+     * @param threads El nombre de fotogrames que es codifiquen alhora.
+     */
+    public FrameSequenceExporter(int threads) {
+        this.threads = Math.max(1, threads);
+        this.encoder = new PngExporter(Deflater.DEFAULT_COMPRESSION, 1, PngExporter.DEFAULT_STRIP_BYTES);
+    }
+
+    /**
+     * Exporta l'animació d'un tauler les peces del qual estan numerades en l'ordre en què es
+     * col·loquen, com el que retorna {@link TrominoTiling#stepOrderBoard()}.
+     *
+     * @param steps El tauler amb les peces numerades en ordre d'animació.
+     * @param stepsPerFrame El nombre de peces que s'afegeixen a cada fotograma.
+     * @param zoom El nivell de zoom, com a {@link PngExporter#exportBoard}.
+     * @param color Cert per pintar les peces amb la paleta.
+     * @param dir El directori on s'escriuen els fotogrames.
+     * @return El nombre de fotogrames escrits.
+     * @throws IOException Si no es pot escriure algun fotograma.
+     */
+    public int exportBoardFrames(int[][] steps, int stepsPerFrame, int zoom, boolean color, Path dir)
+            throws IOException {
+        int lastStep = IntStream.range(0, steps.length).parallel()
+                .map(i -> Arrays.stream(steps[i]).max().orElse(0)).max().orElse(0);
+        int perFrame = Math.max(1, stepsPerFrame);
+        int frames = (lastStep + perFrame - 1) / perFrame + 1;
+        return exportFrames(frames, dir, (k, file) -> {
+            long limit = (long) k * perFrame;
+            int[][] frame = new int[steps.length][];
+            for (int i = 0; i < steps.length; i++) {
+                int[] row = steps[i].clone();
+                for (int j = 0; j < row.length; j++) {
+                    if (row[j] > limit) row[j] = 0;
+                }
+                frame[i] = row;
+            }
+            encoder.exportBoard(frame, zoom, color, file);
+        });
+    }
+
+    /**
+     * Exporta l'animació d'una corba, en què els punts es dibuixen en l'ordre de la llista.
+     * Tots els fotogrames tenen la mida i l'escala de la corba sencera.
+     *
+     * @param points La llista de punts, amb null com a separador entre tram i tram.
+     * @param invertY Indica si s'ha d'invertir l'eix Y.
+     * @param pointsPerFrame El nombre de punts que s'afegeixen a cada fotograma.
+     * @param zoom El nivell de zoom, com a {@link PngExporter#exportCurve}.
+     * @param dir El directori on s'escriuen els fotogrames.
+     * @return El nombre de fotogrames escrits.
+     * @throws IOException Si no es pot escriure algun fotograma.
+     */
+    public int exportCurveFrames(List<Point2D.Double> points, boolean invertY, int pointsPerFrame, int zoom, Path dir)
+            throws IOException {
+        CurveRenderer curve = new CurveRenderer();
+        curve.reset(points, invertY, true);
+        curve.sync();
+        int count = points.size();
+        int perFrame = Math.max(1, pointsPerFrame);
+        int frames = (count + perFrame - 1) / perFrame + 1;
+        return exportFrames(frames, dir,
+                (k, file) -> encoder.exportCurve(curve, (int) Math.min(count, (long) k * perFrame), zoom, file));
+    }
+
+    /**
+     * Escriu un fotograma.
+     */
+    private interface FrameWriter {
+        void write(int frame, Path file) throws IOException;
+    }
+
+    /**
+     * Escriu els fotogrames [0, frames) en paral·lel i espera que acabin tots.
+     */
+    private int exportFrames(int frames, Path dir, FrameWriter writer) throws IOException {
+        Files.createDirectories(dir);
+        int digits = Math.max(5, String.valueOf(frames - 1).length());
+        String pattern = "frame_%0" + digits + "d.png";
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "frame-exporter");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Void>> pending = new ArrayList<>(frames);
+            for (int k = 0; k < frames; k++) {
+                int frame = k;
+                Path file = dir.resolve(String.format(pattern, frame));
+                Callable<Void> task = () -> {
+                    writer.write(frame, file);
+                    return null;
+                };
+                pending.add(workers.submit(task));
+            }
+            for (Future<Void> future : pending) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                    : new IOException("Frame export failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        return frames;
+    }
+
+    /**
+     * Exporta l'animació d'una petició com a seqüència de PNG sense obrir cap finestra. Per al
+     * Tromino de costat potència de dos, l'ordre dels passos és el de l'animació; per als altres
+     * taulers, el dels identificadors de peça.
+     * Ús: {@code java export.FrameSequenceExporter <algorisme> <mida> <profunditat> <zoom> <passos per fotograma> <directori> [fila columna]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.err.println("Usage: java export.FrameSequenceExporter <algorithm> <boardSize> <maxDepth> <zoom> <stepsPerFrame> <outputDir> [missingRow missingCol]");
+            System.exit(2);
+        }
+        System.setProperty("java.awt.headless", "true");
+        TilingRequest request = args.length >= 8
+                ? new TilingRequest(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                        Integer.parseInt(args[6]), Integer.parseInt(args[7]))
+                : new TilingRequest(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        int zoom = Integer.parseInt(args[3]);
+        int stepsPerFrame = Integer.parseInt(args[4]);
+        Path dir = Paths.get(args[5]);
+        FrameSequenceExporter exporter = new FrameSequenceExporter();
+        long start = System.nanoTime();
+        int frames;
+        if ("Tromino".equals(request.getAlgorithmName()) && Integer.bitCount(request.getBoardSize()) == 1) {
+            int[][] steps = new TrominoTiling(request.getBoardSize(), request.getMissingRow(), request.getMissingCol())
+                    .stepOrderBoard();
+            frames = exporter.exportBoardFrames(steps, stepsPerFrame, zoom, true, dir);
+        } else {
+            TilingEngine engine = new TilingEngine();
+            try {
+                TilingResult result = engine.run(request);
+                frames = result.isBoard()
+                        ? exporter.exportBoardFrames(result.getBoard(), stepsPerFrame, zoom, true, dir)
+                        : exporter.exportCurveFrames(result.getPoints(), result.isInvertY(), stepsPerFrame, zoom, dir);
+            } finally {
+                engine.shutdown();
+            }
+        }
+        System.out.printf("%s: wrote %d frames to %s in %.2f ms%n", request, frames, dir,
+                (System.nanoTime() - start) / 1e6);
+    }
+}
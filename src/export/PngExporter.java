@@ -0,0 +1,477 @@
+package export;
+
+import engine.TilingEngine;
+import engine.TilingRequest;
+import engine.TilingResult;
+import view.BoardMipmap;
+import view.BoardRasterizer;
+import view.CurveRenderer;
+import view.TileCache;
+import view.TilePalette;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Exporta taulers i corbes a imatges PNG grans sense necessitat de pantalla.
+ * <p>
+ * La imatge es divideix en franges horitzontals que es dibuixen i es comprimeixen en paral·lel,
+ * cadascuna amb el seu propi Deflater. Cada franja acaba amb un buidatge síncron, de manera
+ * que les sortides comprimides es poden concatenar en un únic flux zlib, i el seu Adler-32 es
+ * combina amb el de les anteriors. Les franges s'escriuen en ordre a mesura que acaben, i com
+ * a molt n'hi ha unes quantes més que fils a memòria, sigui quina sigui la mida de la imatge.
+ */
+public class PngExporter {
+    public static final int DEFAULT_STRIP_BYTES = 4 << 20;
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9C};
+    private static final int ADLER_BASE = 65521;
+    private static final int BYTES_PER_PIXEL = 3;
+
+    private final int compressionLevel;
+    private final int threads;
+    private final int stripBytes;
+
+    /**
+     * Crea un exportador amb la compressió per defecte i un fil per processador.
+     */
+    public PngExporter() {
+        this(Deflater.DEFAULT_COMPRESSION, Runtime.getRuntime().availableProcessors(), DEFAULT_STRIP_BYTES);
+    }
+
+    /**
+     * Crea un exportador.
+     *
+     * @param compressionLevel El nivell de compressió del Deflater, de 0 a 9 o -1 per defecte.
+     * @param threads El nombre de fils que dibuixen i comprimeixen franges.
+     * @param stripBytes La mida aproximada d'una franja en bytes; determina quantes files té.
+     */
+    public PngExporter(int compressionLevel, int threads, int stripBytes) {
+        this.compressionLevel = compressionLevel;
+        this.threads = Math.max(1, threads);
+        this.stripBytes = Math.max(1, stripBytes);
+    }
+
+    /**
+     * Exporta un tauler de peces. Amb zoom positiu cada cel·la ocupa 2^zoom píxels i, a partir
+     * de zoom 2, es dibuixen les vores entre peces; amb zoom negatiu, cada píxel mostra la peça
+     * dominant d'un bloc de 2^-zoom cel·les.
+     *
+     * @param board El tauler amb els identificadors de peça.
+     * @param zoom El nivell de zoom.
+     * @param color Cert per pintar les peces amb la paleta; fals per deixar-les en blanc.
+     * @param file El fitxer de sortida.
+     * @throws IOException Si no es pot escriure el fitxer.
+     */
+    public void exportBoard(int[][] board, int zoom, boolean color, Path file) throws IOException {
+        int[][] source = board;
+        int level = 0;
+        if (zoom < 0) {
+            BoardMipmap mipmap = new BoardMipmap(board);
+            level = Math.min(-zoom, mipmap.getLevelCount() - 1);
+            source = mipmap.getLevel(level);
+            zoom = 0;
+        }
+        int[][] cells = source;
+        int tileZoom = zoom;
+        TilePalette palette = new TilePalette();
+        int white = Color.WHITE.getRGB();
+        BoardRasterizer.CellColor cellColor = color ? (r, c, id) -> palette.argbForTile(id) : (r, c, id) -> white;
+        int border = zoom >= 2 ? 1 : 0;
+        long width = ((long) cells[0].length << zoom) + border;
+        long height = ((long) cells.length << zoom) + border;
+        checkSize(width, height);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            export((tile, z, tx, ty) -> BoardRasterizer.renderTile(cells, tile, tileZoom, tx, ty, cellColor),
+                    zoom, (int) width, (int) height, out);
+        }
+    }
+
+    /**
+     * Exporta una corba. El costat més llarg de la corba mesura CurveRenderer.WORLD_SIZE * 2^zoom
+     * píxels.
+     *
+     * @param points La llista de punts, amb null com a separador entre tram i tram.
+     * @param invertY Indica si s'ha d'invertir l'eix Y.
+     * @param zoom El nivell de zoom.
+     * @param file El fitxer de sortida.
+     * @throws IOException Si no es pot escriure el fitxer.
+     */
+    public void exportCurve(List<Point2D.Double> points, boolean invertY, int zoom, Path file) throws IOException {
+        CurveRenderer curve = new CurveRenderer();
+        curve.reset(points, invertY, true);
+        curve.sync();
+        exportCurve(curve, points.size(), zoom, file);
+    }
+
+    /**
+     * Exporta els primers punts d'una corba ja sincronitzada. La mida de la imatge depèn dels
+     * límits de la corba sencera, de manera que tots els prefixos surten a la mateixa escala.
+     *
+     * @param curve El dibuixant de la corba, ja sincronitzat.
+     * @param pointCount El nombre de punts a dibuixar.
+     * @param zoom El nivell de zoom.
+     * @param file El fitxer de sortida.
+     * @throws IOException Si no es pot escriure el fitxer.
+     */
+    public void exportCurve(CurveRenderer curve, int pointCount, int zoom, Path file) throws IOException {
+        double scale = Math.scalb(1.0, zoom);
+        long width = (long) Math.ceil(curve.getWorldWidth() * scale) + 2;
+        long height = (long) Math.ceil(curve.getWorldHeight() * scale) + 2;
+        checkSize(width, height);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            export(curve.tileRenderer(pointCount), zoom, (int) width, (int) height, out);
+        }
+    }
+
+    /**
+     * Dibuixa i codifica una imatge PNG en franges paral·leles. Cada franja és una rajola de tota
+     * l'amplada de la imatge: la franja i és la rajola (0, i) del dibuixant. Amb un sol fil, les
+     * franges es codifiquen al fil que crida.
+     *
+     * @param renderer El dibuixant de les franges.
+     * @param zoom El nivell de zoom que es passa al dibuixant.
+     * @param width L'amplada de la imatge en píxels.
+     * @param height L'alçada de la imatge en píxels.
+     * @param out El flux on s'escriu el PNG.
+     * @throws IOException Si no es pot escriure el flux o falla el dibuix d'una franja.
+     */
+    public void export(TileCache.TileRenderer renderer, int zoom, int width, int height, OutputStream out)
+            throws IOException {
+        checkSize(width, height);
+        int stripRows = (int) Math.max(1, Math.min(height, stripBytes / (4L * width)));
+        int strips = (height + stripRows - 1) / stripRows;
+
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;
+        header[9] = 2;
+        writeChunk(out, "IHDR", header, null);
+
+        if (threads == 1) {
+            long adler = 1;
+            for (int i = 0; i < strips; i++) {
+                adler = writeStrip(out, encodeStrip(renderer, zoom, width, height, stripRows, i, i == strips - 1), adler);
+            }
+            writeChunk(out, "IEND", new byte[0], null);
+            out.flush();
+            return;
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "png-encoder");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            ArrayDeque<Future<Strip>> inFlight = new ArrayDeque<>();
+            long adler = 1;
+            for (int i = 0; i < strips; i++) {
+                if (inFlight.size() > threads) {
+                    adler = writeStrip(out, await(inFlight.poll()), adler);
+                }
+                int index = i;
+                boolean last = i == strips - 1;
+                inFlight.add(workers.submit(() -> encodeStrip(renderer, zoom, width, height, stripRows, index, last)));
+            }
+            while (!inFlight.isEmpty()) {
+                adler = writeStrip(out, await(inFlight.poll()), adler);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        writeChunk(out, "IEND", new byte[0], null);
+        out.flush();
+    }
+
+    private static void checkSize(long width, long height) {
+        if (width <= 0 || height <= 0 || width > (1 << 24) || height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Unsupported image size " + width + "x" + height);
+        }
+    }
+
+    /**
+     * Espera una franja, propagant els errors del fil que l'ha codificada.
+     */
+    private static Strip await(Future<Strip> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Strip encoding failed", e.getCause());
+        }
+    }
+
+    /**
+     * Escriu una franja comprimida com un fragment IDAT. La primera porta la capçalera zlib i
+     * l'última, l'Adler-32 de tot el flux.
+     *
+     * @return L'Adler-32 acumulat fins a aquesta franja.
+     */
+    private static long writeStrip(OutputStream out, Strip strip, long adler) throws IOException {
+        adler = strip.index == 0 ? strip.adler : adler32Combine(adler, strip.adler, strip.rawLength);
+        byte[] prefix = strip.index == 0 ? ZLIB_HEADER : null;
+        byte[] data = Arrays.copyOf(strip.data, strip.length + (strip.last ? 4 : 0));
+        if (strip.last) {
+            putInt(data, strip.length, (int) adler);
+        }
+        writeChunk(out, "IDAT", data, prefix);
+        return adler;
+    }
+
+    /**
+     * Dibuixa, filtra i comprimeix una franja.
+     */
+    private Strip encodeStrip(TileCache.TileRenderer renderer, int zoom, int width, int height,
+                              int stripRows, int index, boolean last) {
+        BufferedImage image = new BufferedImage(width, stripRows, BufferedImage.TYPE_INT_ARGB);
+        renderer.renderTile(image, zoom, 0, index);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int rows = Math.min(stripRows, height - index * stripRows);
+        int rowBytes = width * BYTES_PER_PIXEL;
+
+        byte[] raw = new byte[rows * (rowBytes + 1)];
+        byte[] prior = new byte[rowBytes];
+        byte[] current = new byte[rowBytes];
+        byte[][] candidates = new byte[5][rowBytes];
+        for (int y = 0; y < rows; y++) {
+            toRgb(pixels, y * width, width, current);
+            int offset = y * (rowBytes + 1);
+            int filter = chooseFilter(current, y == 0 ? null : prior, candidates);
+            raw[offset] = (byte) filter;
+            System.arraycopy(filter == 0 ? current : candidates[filter], 0, raw, offset + 1, rowBytes);
+            byte[] swap = prior;
+            prior = current;
+            current = swap;
+        }
+        image = null;
+
+        Adler32 checksum = new Adler32();
+        checksum.update(raw, 0, raw.length);
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(raw);
+            if (last) {
+                deflater.finish();
+            }
+            byte[] data = new byte[Math.max(64, raw.length / 4)];
+            int length = 0;
+            while (true) {
+                if (length == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                int space = data.length - length;
+                int n = last ? deflater.deflate(data, length, space)
+                        : deflater.deflate(data, length, space, Deflater.SYNC_FLUSH);
+                length += n;
+                if (last ? deflater.finished() : n < space) {
+                    break;
+                }
+            }
+            return new Strip(index, last, data, length, (int) checksum.getValue(), raw.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Converteix una fila de píxels ARGB en RGB sobre fons blanc.
+     */
+    private static void toRgb(int[] pixels, int offset, int width, byte[] rgb) {
+        for (int x = 0, o = 0; x < width; x++, o += BYTES_PER_PIXEL) {
+            int argb = pixels[offset + x];
+            int a = argb >>> 24;
+            int r = (argb >> 16) & 0xFF, g = (argb >> 8) & 0xFF, b = argb & 0xFF;
+            if (a != 0xFF) {
+                int inv = 255 - a;
+                r = (r * a + 255 * inv + 127) / 255;
+                g = (g * a + 255 * inv + 127) / 255;
+                b = (b * a + 255 * inv + 127) / 255;
+            }
+            rgb[o] = (byte) r;
+            rgb[o + 1] = (byte) g;
+            rgb[o + 2] = (byte) b;
+        }
+    }
+
+    /**
+     * Tria el filtre PNG de la fila amb la menor suma de valors absoluts. La primera fila d'una
+     * franja no fa servir la fila anterior, que pertany a una altra franja.
+     *
+     * @return El tipus de filtre; si no és 0, la fila filtrada queda a candidates[tipus].
+     */
+    private static int chooseFilter(byte[] row, byte[] prior, byte[][] candidates) {
+        int n = row.length;
+        byte[] sub = candidates[1];
+        for (int i = 0; i < n; i++) {
+            sub[i] = (byte) (row[i] - (i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] : 0));
+        }
+        int best = 0;
+        long bestSum = absSum(row);
+        long sum = absSum(sub);
+        if (sum < bestSum) {
+            best = 1;
+            bestSum = sum;
+        }
+        if (prior == null) {
+            return best;
+        }
+        byte[] up = candidates[2];
+        byte[] paeth = candidates[4];
+        for (int i = 0; i < n; i++) {
+            int a = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            int b = prior[i] & 0xFF;
+            int c = i >= BYTES_PER_PIXEL ? prior[i - BYTES_PER_PIXEL] & 0xFF : 0;
+            up[i] = (byte) (row[i] - b);
+            paeth[i] = (byte) (row[i] - paethPredictor(a, b, c));
+        }
+        sum = absSum(up);
+        if (sum < bestSum) {
+            best = 2;
+            bestSum = sum;
+        }
+        if (absSum(paeth) < bestSum) {
+            best = 4;
+        }
+        return best;
+    }
+
+    private static int paethPredictor(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        return pb <= pc ? b : c;
+    }
+
+    private static long absSum(byte[] row) {
+        long sum = 0;
+        for (byte v : row) {
+            sum += Math.abs((int) v);
+        }
+        return sum;
+    }
+
+    /**
+     * Combina l'Adler-32 d'un flux amb el d'un segon flux de longitud len2 que el segueix.
+     */
+    static long adler32Combine(long adler1, long adler2, long len2) {
+        long rem = len2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (rem * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum2 >= (2L * ADLER_BASE)) sum2 -= 2L * ADLER_BASE;
+        if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * Escriu un fragment PNG amb la seva longitud i CRC. El prefix opcional va just abans de les
+     * dades, dins del mateix fragment.
+     */
+    private static void writeChunk(OutputStream out, String type, byte[] data, byte[] prefix) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        int length = data.length + (prefix == null ? 0 : prefix.length);
+        byte[] word = new byte[4];
+        putInt(word, 0, length);
+        out.write(word);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        out.write(typeBytes);
+        if (prefix != null) {
+            crc.update(prefix);
+            out.write(prefix);
+        }
+        crc.update(data);
+        out.write(data);
+        putInt(word, 0, (int) crc.getValue());
+        out.write(word);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Una franja comprimida, a punt per escriure's.
+     */
+    private static class Strip {
+        private final int index;
+        private final boolean last;
+        private final byte[] data;
+        private final int length;
+        private final int adler;
+        private final long rawLength;
+
+        Strip(int index, boolean last, byte[] data, int length, int adler, long rawLength) {
+            this.index = index;
+            this.last = last;
+            this.data = data;
+            this.length = length;
+            this.adler = adler;
+            this.rawLength = rawLength;
+        }
+    }
+
+    /**
+     * Calcula una petició i n'exporta el resultat a PNG sense obrir cap finestra.
+     * Ús: {@code java export.PngExporter <algorisme> <mida> <profunditat> <zoom> <fitxer.png> [fila columna]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("Usage: java export.PngExporter <algorithm> <boardSize> <maxDepth> <zoom> <output.png> [missingRow missingCol]");
+            System.exit(2);
+        }
+        System.setProperty("java.awt.headless", "true");
+        TilingRequest request = args.length >= 7
+                ? new TilingRequest(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                        Integer.parseInt(args[5]), Integer.parseInt(args[6]))
+                : new TilingRequest(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        int zoom = Integer.parseInt(args[3]);
+        Path file = Paths.get(args[4]);
+        TilingEngine engine = new TilingEngine();
+        try {
+            TilingResult result = engine.run(request);
+            long start = System.nanoTime();
+            PngExporter exporter = new PngExporter();
+            if (result.isBoard()) {
+                exporter.exportBoard(result.getBoard(), zoom, true, file);
+            } else {
+                exporter.exportCurve(result.getPoints(), result.isInvertY(), zoom, file);
+            }
+            System.out.printf("%s: wrote %s (%d bytes) in %.2f ms%n", request, file, Files.size(file),
+                    (System.nanoTime() - start) / 1e6);
+        } finally {
+            engine.shutdown();
+        }
+    }
+}
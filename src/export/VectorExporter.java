@@ -0,0 +1,304 @@
+package export;
+
+import engine.AlgorithmRegistry;
+import engine.TilingRequest;
+import model.HilbertCurve;
+import model.KochCurve;
+import model.SierpinskiTriangle;
+import model.SquareModel;
+import model.TilingAlgorithm;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * Exporta corbes a SVG o PostScript llegint els punts directament dels iteradors dels models.
+ * <p>
+ * Els punts no es guarden mai en una llista: una primera passada per l'iterador en calcula els
+ * límits, i una segona escriu les ordres del traç a un buffer que es buida a un FileChannel
+ * cada cop que s'omple. La memòria és constant sigui quina sigui la profunditat.
+ */
+public class VectorExporter {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int SEGMENTS_PER_PATH = 4096;
+    private static final double SIZE = 1024;
+    private static final double MARGIN = 2;
+
+    /**
+     * Format del fitxer de sortida.
+     */
+    public enum Format {
+        SVG, POSTSCRIPT;
+
+        /**
+         * Dedueix el format de l'extensió d'un fitxer: .ps i .eps són PostScript, i la resta, SVG.
+         *
+         * @param file El fitxer.
+         * @return El format.
+         */
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            return name.endsWith(".ps") || name.endsWith(".eps") ? POSTSCRIPT : SVG;
+        }
+    }
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private FileChannel channel;
+
+    /**
+     * Retorna una font de punts per a un model de corba: cada crida crea un iterador nou.
+     *
+     * @param algorithm El model.
+     * @param maxDepth La profunditat màxima.
+     * @return La font de punts, o null si el model no és una corba.
+     */
+    public static Supplier<Iterator<Point2D.Double>> pointSource(TilingAlgorithm algorithm, int maxDepth) {
+        if (algorithm instanceof HilbertCurve) {
+            return () -> ((HilbertCurve) algorithm).pointIterator(maxDepth);
+        } else if (algorithm instanceof KochCurve) {
+            return () -> ((KochCurve) algorithm).pointIterator(maxDepth);
+        } else if (algorithm instanceof SierpinskiTriangle) {
+            return () -> ((SierpinskiTriangle) algorithm).pointIterator(maxDepth);
+        } else if (algorithm instanceof SquareModel) {
+            return ((SquareModel) algorithm)::pointIterator;
+        }
+        return null;
+    }
+
+    /**
+     * Exporta una corba. El costat més llarg de la corba mesura 1024 unitats, amb un marge de 2.
+     *
+     * @param points La font de punts, amb null com a separador entre tram i tram. Es recorre
+     *               dues vegades.
+     * @param invertY Indica si s'ha d'invertir l'eix Y, com a la vista.
+     * @param format El format de sortida.
+     * @param file El fitxer de sortida.
+     * @return El nombre de segments escrits.
+     * @throws IOException Si no es pot escriure el fitxer.
+     */
+    public long export(Supplier<Iterator<Point2D.Double>> points, boolean invertY, Format format, Path file)
+            throws IOException {
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Iterator<Point2D.Double> it = points.get(); it.hasNext(); ) {
+            Point2D.Double p = it.next();
+            if (p == null) continue;
+            if (p.x < minX) minX = p.x;
+            if (p.x > maxX) maxX = p.x;
+            if (p.y < minY) minY = p.y;
+            if (p.y > maxY) maxY = p.y;
+        }
+        if (minX > maxX) {
+            minX = maxX = minY = maxY = 0;
+        }
+        double span = Math.max(maxX - minX, maxY - minY);
+        double scale = span > 0 ? SIZE / span : 1;
+        double width = (maxX - minX) * scale + 2 * MARGIN;
+        double height = (maxY - minY) * scale + 2 * MARGIN;
+        // SVG té l'eix Y cap avall i PostScript cap amunt: la vista inverteix la Y quan invertY.
+        boolean flip = (format == Format.POSTSCRIPT) != invertY;
+
+        buffer.clear();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel = out;
+            writeHeader(format, width, height);
+            long segments = 0;
+            int inPath = 0;
+            boolean penDown = false;
+            double lastX = 0, lastY = 0;
+            for (Iterator<Point2D.Double> it = points.get(); it.hasNext(); ) {
+                Point2D.Double p = it.next();
+                if (p == null) {
+                    penDown = false;
+                    continue;
+                }
+                double x = (p.x - minX) * scale + MARGIN;
+                double y = (p.y - minY) * scale + MARGIN;
+                if (flip) {
+                    y = height - y;
+                }
+                if (penDown && x == lastX && y == lastY) {
+                    continue;
+                }
+                if (!penDown || inPath == SEGMENTS_PER_PATH) {
+                    if (inPath == SEGMENTS_PER_PATH) {
+                        breakPath(format);
+                        inPath = 0;
+                        if (penDown) {
+                            moveTo(format, lastX, lastY);
+                        }
+                    }
+                    if (!penDown) {
+                        moveTo(format, x, y);
+                        penDown = true;
+                        lastX = x;
+                        lastY = y;
+                        continue;
+                    }
+                }
+                lineTo(format, x, y);
+                lastX = x;
+                lastY = y;
+                inPath++;
+                segments++;
+            }
+            writeFooter(format);
+            flush();
+            return segments;
+        } finally {
+            channel = null;
+        }
+    }
+
+    private void writeHeader(Format format, double width, double height) throws IOException {
+        if (format == Format.SVG) {
+            put("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+            put(width);
+            put("\" height=\"");
+            put(height);
+            put("\" viewBox=\"0 0 ");
+            put(width);
+            put(' ');
+            put(height);
+            put("\">\n<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n"
+                    + "<g fill=\"none\" stroke=\"black\" stroke-width=\"1\" stroke-linejoin=\"round\" stroke-linecap=\"round\">\n"
+                    + "<path d=\"");
+        } else {
+            put("%!PS-Adobe-3.0 EPSF-3.0\n%%BoundingBox: 0 0 ");
+            put((long) Math.ceil(width));
+            put(' ');
+            put((long) Math.ceil(height));
+            put("\n%%EndComments\n/m {moveto} bind def\n/l {lineto} bind def\n"
+                    + "1 setlinewidth 1 setlinejoin 1 setlinecap\nnewpath\n");
+        }
+    }
+
+    private void writeFooter(Format format) throws IOException {
+        if (format == Format.SVG) {
+            put("\"/>\n</g>\n</svg>\n");
+        } else {
+            put("stroke\nshowpage\n%%EOF\n");
+        }
+    }
+
+    /**
+     * Tanca el traç actual i en comença un altre, perquè cap camí no sigui massa llarg per als
+     * visors.
+     */
+    private void breakPath(Format format) throws IOException {
+        put(format == Format.SVG ? "\"/>\n<path d=\"" : "stroke\nnewpath\n");
+    }
+
+    private void moveTo(Format format, double x, double y) throws IOException {
+        if (format == Format.SVG) {
+            put('M');
+            put(x);
+            put(' ');
+            put(y);
+        } else {
+            put(x);
+            put(' ');
+            put(y);
+            put(" m\n");
+        }
+    }
+
+    private void lineTo(Format format, double x, double y) throws IOException {
+        if (format == Format.SVG) {
+            put('L');
+            put(x);
+            put(' ');
+            put(y);
+        } else {
+            put(x);
+            put(' ');
+            put(y);
+            put(" l\n");
+        }
+    }
+
+    /**
+     * Escriu un nombre amb com a molt tres decimals, sense zeros sobrers.
+     */
+    private void put(double value) throws IOException {
+        long fixed = Math.round(value * 1000);
+        if (fixed < 0) {
+            put('-');
+            fixed = -fixed;
+        }
+        put(fixed / 1000);
+        int fraction = (int) (fixed % 1000);
+        if (fraction != 0) {
+            put('.');
+            int digit = 100;
+            while (fraction != 0) {
+                put((char) ('0' + fraction / digit));
+                fraction %= digit;
+                digit /= 10;
+            }
+        }
+    }
+
+    private void put(long value) throws IOException {
+        if (value >= 10) {
+            put(value / 10);
+        }
+        put((char) ('0' + value % 10));
+    }
+
+    private void put(char c) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put((byte) c);
+    }
+
+    private void put(String text) throws IOException {
+        for (byte b : text.getBytes(StandardCharsets.US_ASCII)) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(b);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Exporta una corba a SVG o PostScript sense calcular-ne la llista de punts.
+     * Ús: {@code java export.VectorExporter <algorisme> <mida> <profunditat> <fitxer.svg|.ps|.eps>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: java export.VectorExporter <algorithm> <boardSize> <maxDepth> <output.svg|output.ps|output.eps>");
+            System.exit(2);
+        }
+        TilingRequest request = new TilingRequest(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        TilingAlgorithm algorithm = AlgorithmRegistry.getDefault().create(request);
+        Supplier<Iterator<Point2D.Double>> source = pointSource(algorithm, request.getMaxDepth());
+        if (source == null) {
+            System.err.println(request.getAlgorithmName() + " does not produce a curve");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[3]);
+        long start = System.nanoTime();
+        long segments = new VectorExporter().export(source, algorithm instanceof HilbertCurve, Format.forFile(file), file);
+        System.out.printf("%s: wrote %d segments to %s in %.2f ms%n", request, segments, file,
+                (System.nanoTime() - start) / 1e6);
+    }
+}
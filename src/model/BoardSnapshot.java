@@ -0,0 +1,45 @@
+package model;
+
+public class BoardSnapshot {
+    private final int[][] cells;
+    private volatile long version;
+
+    /**
+     * Crea una nova instantània buida amb les dimensions especificades.
+     *
+     * @param rows El nombre de files.
+     * @param cols El nombre de columnes.
+     */
+    BoardSnapshot(int rows, int cols) {
+        this.cells = new int[rows][cols];
+        this.version = 0;
+    }
+
+    /**
+     * Retorna les cel·les de la instantània. El contingut és consistent mentre el lector
+     * no torni a demanar una nova instantània al publicador.
+     *
+     * @return La matriu de cel·les.
+     */
+    public int[][] getCells() {
+        return cells;
+    }
+
+    /**
+     * Retorna la versió de la instantània.
+     *
+     * @return El número de versió (0 si encara no s'ha publicat res).
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Estableix la versió de la instantània.
+     *
+     * @param version El nou número de versió.
+     */
+    void setVersion(long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,235 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Publica instantànies consistents d'un tauler que s'està escrivint des de diversos fils.
+ * <p>
+ * Els algorismes escriuen directament sobre el tauler viu i marquen els blocs modificats.
+ * En publicar, només els blocs bruts es copien a un buffer intern, i el buffer s'intercanvia
+ * atòmicament (triple buffer) amb el que llegeix el renderitzador. Ni els escriptors ni el
+ * lector es bloquegen mai.
+ * <p>
+ * Cada publicació també acumula els blocs que ha copiat en un mapa de canvis, que el lector
+ * buida per redibuixar només les regions que han canviat des del seu darrer fotograma.
+ */
+public class BoardSnapshotPublisher {
+    public static final int BLOCK_SHIFT = 5;
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final int[][] board;
+    private final int rows;
+    private final int cols;
+    private final int blockRows;
+    private final int blockCols;
+    private final BoardSnapshot[] buffers = new BoardSnapshot[3];
+    private final AtomicLongArray[] staleBlocks = new AtomicLongArray[3];
+    private final AtomicLongArray changedBlocks;
+    private final long[] copiedBlocks;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private final AtomicBoolean publishing = new AtomicBoolean(false);
+    private final AtomicLong version = new AtomicLong(0);
+    private int writerIndex = 0;
+    private int readerIndex = 2;
+
+    /**
+     * Crea un publicador per al tauler especificat. Totes les cel·les es consideren brutes
+     * fins a la primera publicació.
+     *
+     * @param board El tauler viu que escriuen els algorismes.
+     */
+    public BoardSnapshotPublisher(int[][] board) {
+        this.board = board;
+        this.rows = board.length;
+        this.cols = rows == 0 ? 0 : board[0].length;
+        this.blockRows = (rows + (1 << BLOCK_SHIFT) - 1) >> BLOCK_SHIFT;
+        this.blockCols = (cols + (1 << BLOCK_SHIFT) - 1) >> BLOCK_SHIFT;
+        int words = (blockRows * blockCols + 63) >> 6;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new BoardSnapshot(rows, cols);
+            staleBlocks[i] = new AtomicLongArray(words);
+        }
+        this.changedBlocks = new AtomicLongArray(words);
+        this.copiedBlocks = new long[words];
+        markAllDirty();
+    }
+
+    /**
+     * Marca com a bruta la cel·la especificada. S'ha de cridar després d'escriure-la.
+     * <p>
+     * El bit es torna a escriure encara que ja hi sigui: l'escriptura atòmica és la que ordena
+     * l'escriptura de la cel·la abans del getAndSet del publicador. Si el bit ja marcat es
+     * llegís sense escriure'l, el publicador el podria buidar i copiar el bloc sense veure la
+     * cel·la, i cap publicació posterior no el tornaria a copiar.
+     *
+     * @param r La fila.
+     * @param c La columna.
+     */
+    public void markDirty(int r, int c) {
+        int block = (r >> BLOCK_SHIFT) * blockCols + (c >> BLOCK_SHIFT);
+        int word = block >> 6;
+        long bit = 1L << (block & 63);
+        for (AtomicLongArray stale : staleBlocks) {
+            stale.getAndAccumulate(word, bit, (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * Marca com a bruta una regió rectangular del tauler.
+     *
+     * @param r La fila superior.
+     * @param c La columna esquerra.
+     * @param height El nombre de files.
+     * @param width El nombre de columnes.
+     */
+    public void markDirty(int r, int c, int height, int width) {
+        int br1 = (r + height - 1) >> BLOCK_SHIFT;
+        int bc1 = (c + width - 1) >> BLOCK_SHIFT;
+        for (int br = r >> BLOCK_SHIFT; br <= br1; br++) {
+            for (int bc = c >> BLOCK_SHIFT; bc <= bc1; bc++) {
+                markDirty(br << BLOCK_SHIFT, bc << BLOCK_SHIFT);
+            }
+        }
+    }
+
+    /**
+     * Marca com a brut tot el tauler.
+     */
+    public void markAllDirty() {
+        int blocks = blockRows * blockCols;
+        for (AtomicLongArray stale : staleBlocks) {
+            for (int w = 0; w < stale.length(); w++) {
+                int remaining = blocks - (w << 6);
+                stale.set(w, remaining >= 64 ? -1L : (1L << remaining) - 1);
+            }
+        }
+    }
+
+    /**
+     * Intenta publicar una nova instantània. Si un altre fil ja està publicant, no espera
+     * i retorna immediatament. El crida el fil de dibuix en compondre cada fotograma, de
+     * manera que els fils de càlcul només marquen cel·les brutes.
+     *
+     * @return Cert si s'ha publicat una nova versió, fals en cas contrari.
+     */
+    public boolean tryPublish() {
+        if (!publishing.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            publishBack();
+            return true;
+        } finally {
+            publishing.set(false);
+        }
+    }
+
+    /**
+     * Publica una nova instantània, esperant que acabi qualsevol publicació concurrent.
+     * Es fa servir en acabar el càlcul per garantir que l'últim estat es publica.
+     */
+    public void publish() {
+        while (!publishing.compareAndSet(false, true)) {
+            Thread.onSpinWait();
+        }
+        try {
+            publishBack();
+        } finally {
+            publishing.set(false);
+        }
+    }
+
+    /**
+     * Retorna la instantània més recent. Només l'ha de cridar un únic fil lector, i la
+     * instantània retornada roman consistent fins a la següent crida.
+     *
+     * @return La instantània frontal.
+     */
+    public BoardSnapshot acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            readerIndex = middle.getAndSet(readerIndex) & INDEX_MASK;
+        }
+        return buffers[readerIndex];
+    }
+
+    /**
+     * Retorna i buida el mapa de blocs publicats des de l'última crida. Els bits segueixen
+     * l'ordre de fila de blocs de {@link #getBlockCols()} columnes.
+     * <p>
+     * S'ha de cridar abans de {@link #acquire()}: un bloc només s'afegeix al mapa quan la seva
+     * instantània ja és visible per al lector, de manera que cap canvi es perd.
+     *
+     * @return El mapa de bits dels blocs canviats.
+     */
+    public long[] drainChangedBlocks() {
+        long[] changed = new long[changedBlocks.length()];
+        for (int w = 0; w < changed.length; w++) {
+            changed[w] = changedBlocks.get(w) == 0 ? 0 : changedBlocks.getAndSet(w, 0);
+        }
+        return changed;
+    }
+
+    /**
+     * Retorna el nombre de columnes de blocs del tauler.
+     *
+     * @return El nombre de columnes de blocs.
+     */
+    public int getBlockCols() {
+        return blockCols;
+    }
+
+    /**
+     * Retorna la versió de l'última instantània publicada.
+     *
+     * @return El número de versió.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Copia els blocs bruts al buffer posterior i l'intercanvia amb el buffer intermedi.
+     */
+    private void publishBack() {
+        BoardSnapshot target = buffers[writerIndex];
+        AtomicLongArray stale = staleBlocks[writerIndex];
+        int[][] dst = target.getCells();
+        for (int w = 0; w < stale.length(); w++) {
+            long bits = stale.get(w) == 0 ? 0 : stale.getAndSet(w, 0);
+            copiedBlocks[w] = bits;
+            while (bits != 0) {
+                int block = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                copyBlock(block / blockCols, block % blockCols, dst);
+            }
+        }
+        target.setVersion(version.incrementAndGet());
+        writerIndex = middle.getAndSet(writerIndex | FRESH) & INDEX_MASK;
+        for (int w = 0; w < copiedBlocks.length; w++) {
+            if (copiedBlocks[w] != 0) {
+                changedBlocks.getAndAccumulate(w, copiedBlocks[w], (a, b) -> a | b);
+            }
+        }
+    }
+
+    /**
+     * Copia un bloc del tauler viu a la matriu de destinació.
+     *
+     * @param br La fila del bloc.
+     * @param bc La columna del bloc.
+     * @param dst La matriu de destinació.
+     */
+    private void copyBlock(int br, int bc, int[][] dst) {
+        int r0 = br << BLOCK_SHIFT;
+        int c0 = bc << BLOCK_SHIFT;
+        int r1 = Math.min(rows, r0 + (1 << BLOCK_SHIFT));
+        int len = Math.min(cols, c0 + (1 << BLOCK_SHIFT)) - c0;
+        for (int r = r0; r < r1; r++) {
+            System.arraycopy(board[r], c0, dst[r], c0, len);
+        }
+    }
+}
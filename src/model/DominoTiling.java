@@ -1,8 +1,12 @@
 package model;
 
-import controller.TilingController;
-import controller.TilingNotificar;
+import engine.ExecutionContext;
+import engine.TilingNotificar;
 
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -11,6 +15,7 @@ public class DominoTiling implements TilingAlgorithm {
     private int boardSize;
     private int[][] board;
     private AtomicInteger dominoId;
+    private volatile BoardSnapshotPublisher snapshots;
 
     /**
      * Crea una nova instància de DominoTiling amb la mida especificada.
@@ -32,20 +37,22 @@ public class DominoTiling implements TilingAlgorithm {
     @Override
     public void calculateTiling(TilingNotificar notifier, int maxDepth) {
         notifier.onTilingStarted(boardSize, maxDepth);
-        boolean animate = (notifier instanceof TilingController) && ((TilingController) notifier).isAnimationEnabled();
+        boolean animate = (notifier instanceof ExecutionContext) && ((ExecutionContext) notifier).isAnimationEnabled();
         if (animate) {
-            if (notifier instanceof TilingController) {
-                ScheduledExecutorService scheduler = ((TilingController) notifier).getAnimationExecutor();
+            if (notifier instanceof ExecutionContext) {
+                ScheduledExecutorService scheduler = ((ExecutionContext) notifier).getAnimationExecutor();
                 AtomicInteger activeTasks = new AtomicInteger(0);
                 activeTasks.incrementAndGet();
                 scheduler.execute(() -> scheduleTiling(notifier, activeTasks));
             } else {
                 tileSequential();
+                markAllDirty();
                 notifier.onTilingStep(dominoId.get(), board);
                 notifier.onTilingCompleted();
             }
         } else {
             tileSequential();
+            markAllDirty();
             notifier.onTilingStep(dominoId.get(), board);
             notifier.onTilingCompleted();
         }
@@ -58,7 +65,7 @@ public class DominoTiling implements TilingAlgorithm {
      * @param activeTasks Un comptador d'operacions actives.
      */
     private void scheduleTiling(TilingNotificar notifier, AtomicInteger activeTasks) {
-        if (!(notifier instanceof TilingController) || !((TilingController) notifier).isRunning()) {
+        if (!(notifier instanceof ExecutionContext) || !((ExecutionContext) notifier).isRunning()) {
             return;
         }
         activeTasks.incrementAndGet();
@@ -80,11 +87,12 @@ public class DominoTiling implements TilingAlgorithm {
             return;
         }
         board[r][c] = -1;
-        ScheduledExecutorService scheduler = ((TilingController) notifier).getAnimationExecutor();
+        ScheduledExecutorService scheduler = ((ExecutionContext) notifier).getAnimationExecutor();
         if (c + 1 < boardSize && board[r][c + 1] == 0) {
             int id = dominoId.getAndIncrement();
             board[r][c] = id;
             board[r][c + 1] = id;
+            markDirty(r, c, 1, 2);
             notifier.onTilingStep(id, board);
             scheduler.schedule(() -> scheduleTiling(notifier, activeTasks), 50, TimeUnit.MILLISECONDS);
             if (activeTasks.decrementAndGet() == 0) {
@@ -96,6 +104,7 @@ public class DominoTiling implements TilingAlgorithm {
             int id = dominoId.getAndIncrement();
             board[r][c] = id;
             board[r + 1][c] = id;
+            markDirty(r, c, 2, 1);
             notifier.onTilingStep(id, board);
             scheduler.schedule(() -> scheduleTiling(notifier, activeTasks), 50, TimeUnit.MILLISECONDS);
             if (activeTasks.decrementAndGet() == 0) {
@@ -104,6 +113,7 @@ public class DominoTiling implements TilingAlgorithm {
             return;
         }
         board[r][c] = dominoId.getAndIncrement();
+        markDirty(r, c, 1, 1);
         notifier.onTilingStep(dominoId.get(), board);
         if (activeTasks.decrementAndGet() == 0) {
             notifier.onTilingCompleted();
@@ -144,6 +154,93 @@ public class DominoTiling implements TilingAlgorithm {
         return true;
     }
 
+    /**
+     * Publica les peces de dòmino en blocs, generant-les a mesura que es demanen.
+     *
+     * @param maxDepth La profunditat màxima (no s'utilitza per a DominoTiling).
+     * @param chunkSize El nombre màxim de peces per bloc.
+     * @param executor L'executor on es generen les peces.
+     * @return El publicador de blocs de peces.
+     */
+    @Override
+    public Flow.Publisher<GeometryChunk> stream(int maxDepth, int chunkSize, Executor executor) {
+        return new GeometryPublisher<>(this::tileIterator, GeometryChunk::ofTiles, chunkSize, executor);
+    }
+
+    /**
+     * Retorna un iterador mandrós sobre les peces del tiling, en el mateix ordre i amb els mateixos
+     * identificadors que tileSequential. Un tauler de costat parell es cobreix fila a fila amb dòminos
+     * horitzontals; un de costat senar no té cap tiling.
+     *
+     * @return L'iterador de peces.
+     * @throws IllegalStateException Si el tauler no es pot cobrir amb dòminos.
+     */
+    public Iterator<TilePlacement> tileIterator() {
+        if (boardSize % 2 != 0) {
+            throw new IllegalStateException("A " + boardSize + "x" + boardSize + " board has no domino tiling");
+        }
+        return new Iterator<TilePlacement>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < boardSize * boardSize / 2;
+            }
+
+            @Override
+            public TilePlacement next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int r = next / (boardSize / 2);
+                int c = (next % (boardSize / 2)) * 2;
+                next++;
+                return new TilePlacement(next, new int[]{r, r}, new int[]{c, c + 1});
+            }
+        };
+    }
+
+    /**
+     * Retorna el publicador d'instantànies del tauler, per renderitzar-lo mentre es calcula. Es
+     * crea la primera vegada que es demana, de manera que els càlculs sense vista no en paguen
+     * els buffers; s'ha de demanar abans de començar el càlcul perquè no es perdi cap canvi.
+     *
+     * @return El publicador d'instantànies.
+     */
+    public BoardSnapshotPublisher getSnapshots() {
+        BoardSnapshotPublisher publisher = snapshots;
+        if (publisher == null) {
+            synchronized (this) {
+                publisher = snapshots;
+                if (publisher == null) {
+                    publisher = new BoardSnapshotPublisher(board);
+                    snapshots = publisher;
+                }
+            }
+        }
+        return publisher;
+    }
+
+    /**
+     * Marca com a bruta una regió del tauler, si hi ha algun publicador d'instantànies.
+     */
+    private void markDirty(int r, int c, int height, int width) {
+        BoardSnapshotPublisher publisher = snapshots;
+        if (publisher != null) {
+            publisher.markDirty(r, c, height, width);
+        }
+    }
+
+    /**
+     * Marca com a brut tot el tauler, si hi ha algun publicador d'instantànies.
+     */
+    private void markAllDirty() {
+        BoardSnapshotPublisher publisher = snapshots;
+        if (publisher != null) {
+            publisher.markAllDirty();
+        }
+    }
+
     /**
      * Retorna la matriu del tauler amb el tiling calculat.
      *
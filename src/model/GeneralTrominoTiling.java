@@ -0,0 +1,601 @@
+package model;
+
+import engine.ExecutionContext;
+import engine.TilingNotificar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Tiling amb trominós en L de taulers de qualsevol mida: quadrats n×n amb una cel·la absent quan n
+ * no és múltiple de 3, i rectangles sense cel·la absent quan l'àrea és múltiple de 3.
+ * <p>
+ * El tauler es descompon en blocs independents. Mentre el quadrat amb la cel·la absent no és una
+ * potència de dos, se'n treu una franja en L de 6 cel·les d'amplada pel costat on no hi ha la cel·la
+ * absent; quan la resta es pot partir en un quadrat de costat potència de dos amb la cel·la absent
+ * a una cantonada i una franja en L que admet tiling, el quadrat es resol amb {@link TrominoTiling}.
+ * Les franges es cobreixen amb parelles de trominós formant blocs de 2×3 o 3×2, llevat de les
+ * cantonades de 9×5 dels rectangles de costats senars, i els quadrats de costat 5, 7, 10 i 11 que
+ * queden al final tenen un patró fix trobat per cerca exhaustiva. Cada bloc rep en descompondre
+ * el tauler un rang d'identificadors propi, de manera que tots s'omplen alhora al pool de Fork/Join
+ * sense coordinar-se.
+ */
+public class GeneralTrominoTiling implements TilingAlgorithm {
+    private static final int CORE = 0;
+    private static final int PATTERN = 1;
+    private static final int BLOCKS = 2;
+    /** Els quadrats amb cel·la absent més petits que aquest costat es resolen amb un patró fix. */
+    private static final int MIN_BAND_SIZE = 12;
+    private static final int BAND_WIDTH = 6;
+    /** Les quatre maneres de col·locar un trominó amb la primera cel·la, en ordre de files, a (0, 0). */
+    private static final int[][] SHAPES = {{0, 1, 1, 0}, {0, 1, 1, 1}, {1, 0, 1, 1}, {1, 0, 1, -1}};
+    private static final int[][] NO_TILING = new int[0][];
+    private static final Map<Long, int[][]> PATTERNS = new ConcurrentHashMap<>();
+
+    private final int rows;
+    private final int cols;
+    private final int missingRow;
+    private final int missingCol;
+    private final int[][] board;
+    private volatile BoardSnapshotPublisher snapshots;
+    private final List<Piece> pieces = new ArrayList<>();
+    private final int tileCount;
+
+    /**
+     * Bloc de la descomposició, amb el primer identificador de les seves peces.
+     */
+    private static final class Piece {
+        final int kind;
+        final int row, col, height, width;
+        final int holeRow, holeCol;
+        final int[][] pattern;
+        final int tiles;
+        int firstId;
+
+        Piece(int kind, int row, int col, int height, int width, int holeRow, int holeCol, int[][] pattern) {
+            this.kind = kind;
+            this.row = row;
+            this.col = col;
+            this.height = height;
+            this.width = width;
+            this.holeRow = holeRow;
+            this.holeCol = holeCol;
+            this.pattern = pattern;
+            this.tiles = (height * width - (holeRow >= 0 ? 1 : 0)) / 3;
+        }
+    }
+
+    /**
+     * Crea un tiling d'un tauler rectangular.
+     *
+     * @param rows El nombre de files.
+     * @param cols El nombre de columnes.
+     * @param missingRow La fila de la cel·la absent, o -1 si no n'hi ha.
+     * @param missingCol La columna de la cel·la absent, o -1 si no n'hi ha.
+     * @throws IllegalArgumentException Si el tauler no es pot cobrir amb trominós.
+     */
+    public GeneralTrominoTiling(int rows, int cols, int missingRow, int missingCol) {
+        if (rows < 1 || cols < 1) {
+            throw new IllegalArgumentException("Board size must be positive: " + rows + "x" + cols);
+        }
+        boolean deficient = missingRow >= 0;
+        if (deficient) {
+            if (rows != cols) {
+                throw new IllegalArgumentException("A missing cell is only supported on square boards");
+            }
+            if (missingRow >= rows || missingCol < 0 || missingCol >= cols) {
+                throw new IllegalArgumentException("Missing cell (" + missingRow + "," + missingCol
+                        + ") is outside the " + rows + "x" + cols + " board");
+            }
+            if (rows % 3 == 0) {
+                throw new IllegalArgumentException("A " + rows + "x" + cols
+                        + " board with a missing cell has no tromino tiling");
+            }
+        } else if (!isTileable(rows, cols)) {
+            throw new IllegalArgumentException("A " + rows + "x" + cols + " board has no tromino tiling");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.missingRow = missingRow;
+        this.missingCol = missingCol;
+        board = new int[rows][cols];
+        if (deficient) {
+            board[missingRow][missingCol] = -1;
+            decomposeDeficient(0, 0, rows, missingRow, missingCol);
+        } else {
+            decomposeRect(0, 0, rows, cols);
+        }
+        // Els blocs s'han afegit de fora cap a dins: el quadrat de la cel·la absent va primer.
+        Collections.reverse(pieces);
+        int next = 1;
+        for (Piece piece : pieces) {
+            piece.firstId = next;
+            next += piece.tiles;
+        }
+        tileCount = next - 1;
+    }
+
+    /**
+     * Indica si un rectangle sense cel·la absent es pot cobrir amb trominós en L: l'àrea ha de ser
+     * múltiple de 3, els dos costats com a mínim 2, i no pot ser de 3 per un nombre senar.
+     *
+     * @param rows El nombre de files.
+     * @param cols El nombre de columnes.
+     * @return Cert si el rectangle admet un tiling.
+     */
+    public static boolean isTileable(int rows, int cols) {
+        return rows >= 2 && cols >= 2 && (long) rows * cols % 3 == 0
+                && !(rows == 3 && cols % 2 == 1) && !(cols == 3 && rows % 2 == 1);
+    }
+
+    /**
+     * Descompon un quadrat amb una cel·la absent treient-ne franges en L fins que queda un quadrat
+     * de costat potència de dos o un quadrat prou petit per tenir un patró fix.
+     */
+    private void decomposeDeficient(int r, int c, int n, int holeRow, int holeCol) {
+        while (n > 1) {
+            int p = Integer.highestOneBit(n);
+            if (p % 3 != n % 3) {
+                p >>= 1;
+            }
+            int d = n - p;
+            boolean top = holeRow - r < p;
+            boolean left = holeCol - c < p;
+            if (d == 0 || (p >= 2 && (top || holeRow - r >= d) && (left || holeCol - c >= d)
+                    && isTileable(d, n) && isTileable(p, d))) {
+                addBand(r, c, n, d, top, left);
+                int sr = top ? r : r + d;
+                int sc = left ? c : c + d;
+                pieces.add(new Piece(CORE, sr, sc, p, p, holeRow - sr, holeCol - sc, null));
+                return;
+            }
+            if (n < MIN_BAND_SIZE) {
+                int[][] pattern = solve(n, n, holeRow - r, holeCol - c);
+                if (pattern == null) {
+                    throw new IllegalArgumentException("A " + rows + "x" + cols + " board with the missing cell at ("
+                            + missingRow + "," + missingCol + ") has no tromino tiling");
+                }
+                pieces.add(new Piece(PATTERN, r, c, n, n, holeRow - r, holeCol - c, pattern));
+                return;
+            }
+            top = holeRow - r < n - BAND_WIDTH;
+            left = holeCol - c < n - BAND_WIDTH;
+            addBand(r, c, n, BAND_WIDTH, top, left);
+            r += top ? 0 : BAND_WIDTH;
+            c += left ? 0 : BAND_WIDTH;
+            n -= BAND_WIDTH;
+        }
+    }
+
+    /**
+     * Afegeix la franja en L d'amplada d que envolta el quadrat de costat n - d situat a la
+     * cantonada indicada: una franja d×n que ocupa tot l'ample i una de (n - d)×d al costat del quadrat.
+     */
+    private void addBand(int r, int c, int n, int d, boolean top, boolean left) {
+        if (d == 0) return;
+        int p = n - d;
+        decomposeRect(top ? r + p : r, c, d, n);
+        decomposeRect(top ? r : r + d, left ? c + p : c, p, d);
+    }
+
+    /**
+     * Descompon un rectangle sense cel·la absent en blocs de 2×3 o 3×2 i, si els dos costats són
+     * senars, una cantonada de 9×5 o 5×9.
+     */
+    private void decomposeRect(int r, int c, int h, int w) {
+        if (h == 0 || w == 0) return;
+        if ((h % 2 == 0 && w % 3 == 0) || (h % 3 == 0 && w % 2 == 0)) {
+            pieces.add(new Piece(BLOCKS, r, c, h, w, -1, -1, null));
+        } else if (h % 6 == 0 && w % 2 == 1 && w >= 5) {
+            decomposeRect(r, c, h, 3);
+            decomposeRect(r, c + 3, h, w - 3);
+        } else if (w % 6 == 0 && h % 2 == 1 && h >= 5) {
+            decomposeRect(r, c, 3, w);
+            decomposeRect(r + 3, c, h - 3, w);
+        } else if (h % 3 == 0 && h >= 9 && w % 2 == 1 && w >= 5) {
+            pieces.add(new Piece(PATTERN, r, c, 9, 5, -1, -1, solve(9, 5, -1, -1)));
+            decomposeRect(r, c + 5, 9, w - 5);
+            decomposeRect(r + 9, c, h - 9, w);
+        } else if (w % 3 == 0 && w >= 9 && h % 2 == 1 && h >= 5) {
+            pieces.add(new Piece(PATTERN, r, c, 5, 9, -1, -1, solve(5, 9, -1, -1)));
+            decomposeRect(r + 5, c, h - 5, 9);
+            decomposeRect(r, c + 9, h, w - 9);
+        } else {
+            throw new IllegalArgumentException("A " + h + "x" + w + " region has no tromino tiling");
+        }
+    }
+
+    /**
+     * Retorna un tiling d'un rectangle petit trobat per cerca exhaustiva, amb les peces numerades
+     * des de 1 i la cel·la absent a -1. Els resultats es guarden per a tots els taulers.
+     *
+     * @return El tiling, o null si no n'hi ha cap.
+     */
+    private static int[][] solve(int h, int w, int holeRow, int holeCol) {
+        long key = ((long) h << 40) | ((long) w << 20) | ((long) (holeRow + 1) << 10) | (holeCol + 1);
+        int[][] solution = PATTERNS.computeIfAbsent(key, k -> {
+            int[][] grid = new int[h][w];
+            if (holeRow >= 0) {
+                grid[holeRow][holeCol] = -1;
+            }
+            return place(grid, 0, 1) ? grid : NO_TILING;
+        });
+        return solution == NO_TILING ? null : solution;
+    }
+
+    /**
+     * Cobreix, per retrocés, les cel·les lliures a partir de la posició cell (en ordre de files).
+     */
+    private static boolean place(int[][] grid, int cell, int id) {
+        int h = grid.length;
+        int w = grid[0].length;
+        while (cell < h * w && grid[cell / w][cell % w] != 0) {
+            cell++;
+        }
+        if (cell == h * w) return true;
+        int i = cell / w;
+        int j = cell % w;
+        for (int[] shape : SHAPES) {
+            int r1 = i + shape[0], c1 = j + shape[1];
+            int r2 = i + shape[2], c2 = j + shape[3];
+            if (r2 >= h || c1 < 0 || c1 >= w || c2 < 0 || c2 >= w
+                    || grid[r1][c1] != 0 || grid[r2][c2] != 0) {
+                continue;
+            }
+            grid[i][j] = id;
+            grid[r1][c1] = id;
+            grid[r2][c2] = id;
+            if (place(grid, cell + 1, id + 1)) return true;
+            grid[i][j] = 0;
+            grid[r1][c1] = 0;
+            grid[r2][c2] = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Calcula el tiling i notifica els canvis. Sense animació, tots els blocs s'omplen alhora al
+     * pool de càlcul; amb animació, el tiling es calcula igual i després es mostra bloc a bloc.
+     *
+     * @param notifier L'objecte que rep les notificacions.
+     * @param maxDepth La profunditat màxima (no s'utilitza per a GeneralTrominoTiling).
+     */
+    @Override
+    public void calculateTiling(TilingNotificar notifier, int maxDepth) {
+        notifier.onTilingStarted(Math.max(rows, cols), maxDepth);
+        boolean animate = (notifier instanceof ExecutionContext) && ((ExecutionContext) notifier).isAnimationEnabled();
+        if (animate) {
+            int[][] solution = new int[rows][cols];
+            fillAll(solution, notifier);
+            ScheduledExecutorService scheduler = ((ExecutionContext) notifier).getAnimationExecutor();
+            scheduler.execute(() -> reveal(solution, 0, notifier, scheduler));
+        } else {
+            fillAll(board, notifier);
+            markAllDirty();
+            notifier.onTilingStep(tileCount, board);
+            notifier.onTilingCompleted();
+        }
+    }
+
+    /**
+     * Copia al tauler el bloc index de la solució i programa el següent.
+     */
+    private void reveal(int[][] solution, int index, TilingNotificar notifier, ScheduledExecutorService scheduler) {
+        if (!isRunning(notifier)) return;
+        Piece piece = pieces.get(index);
+        for (int i = piece.row; i < piece.row + piece.height; i++) {
+            System.arraycopy(solution[i], piece.col, board[i], piece.col, piece.width);
+        }
+        markDirty(piece.row, piece.col, piece.height, piece.width);
+        notifier.onTilingStep(piece.firstId + piece.tiles - 1, board);
+        if (index + 1 < pieces.size()) {
+            scheduler.schedule(() -> reveal(solution, index + 1, notifier, scheduler), 50, TimeUnit.MILLISECONDS);
+        } else {
+            notifier.onTilingCompleted();
+        }
+    }
+
+    /**
+     * Omple tots els blocs de la descomposició en paral·lel al pool de càlcul.
+     */
+    private void fillAll(int[][] target, TilingNotificar notifier) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        if (notifier instanceof ExecutionContext) {
+            ExecutorService exec = ((ExecutionContext) notifier).getComputeExecutor();
+            if (exec instanceof ForkJoinPool) {
+                pool = (ForkJoinPool) exec;
+            }
+        }
+        ForkJoinPool computePool = pool;
+        if (missingRow >= 0) {
+            target[missingRow][missingCol] = -1;
+        }
+        pool.submit(() -> IntStream.range(0, pieces.size()).parallel()
+                .forEach(i -> fill(pieces.get(i), target, notifier, computePool))).join();
+    }
+
+    /**
+     * Omple un bloc de la descomposició amb els seus identificadors.
+     */
+    private static void fill(Piece piece, int[][] target, TilingNotificar notifier, ForkJoinPool pool) {
+        if (!isRunning(notifier)) return;
+        int offset = piece.firstId - 1;
+        if (piece.kind == CORE) {
+            if (piece.height == 1) return;
+            TrominoTiling core = new TrominoTiling(piece.height, piece.holeRow, piece.holeCol);
+            core.calculateTiling(new CoreContext(notifier, pool), 0);
+            copy(core.getBoard(), target, piece.row, piece.col, offset);
+        } else if (piece.kind == PATTERN) {
+            copy(piece.pattern, target, piece.row, piece.col, offset);
+        } else if (piece.height % 2 == 0 && piece.width % 3 == 0) {
+            // Blocs de 2×3: la peça A ocupa (0,0), (0,1) i (1,0), i la B, la resta.
+            int perRow = piece.width / 3;
+            IntStream.range(0, piece.height).parallel().forEach(i -> {
+                int[] row = target[piece.row + i];
+                int base = offset + 1 + 2 * (i / 2) * perRow;
+                boolean first = i % 2 == 0;
+                for (int j = 0; j < piece.width; j++) {
+                    int lj = j % 3;
+                    boolean a = first ? lj < 2 : lj == 0;
+                    row[piece.col + j] = base + 2 * (j / 3) + (a ? 0 : 1);
+                }
+            });
+        } else {
+            // Blocs de 3×2: la peça A ocupa (0,0), (0,1) i (1,0), i la B, (1,1), (2,0) i (2,1).
+            int perRow = piece.width / 2;
+            IntStream.range(0, piece.height).parallel().forEach(i -> {
+                int[] row = target[piece.row + i];
+                int base = offset + 1 + 2 * (i / 3) * perRow;
+                int li = i % 3;
+                for (int j = 0; j < piece.width; j++) {
+                    boolean a = li == 0 || (li == 1 && j % 2 == 0);
+                    row[piece.col + j] = base + 2 * (j / 2) + (a ? 0 : 1);
+                }
+            });
+        }
+    }
+
+    /**
+     * Copia un tiling sobre el tauler a la posició indicada, sumant offset als identificadors. La
+     * cel·la absent no es copia.
+     */
+    private static void copy(int[][] source, int[][] target, int r, int c, int offset) {
+        IntStream.range(0, source.length).parallel().forEach(i -> {
+            int[] from = source[i];
+            int[] to = target[r + i];
+            for (int j = 0; j < from.length; j++) {
+                if (from[j] > 0) to[c + j] = from[j] + offset;
+            }
+        });
+    }
+
+    private static boolean isRunning(TilingNotificar notifier) {
+        return !(notifier instanceof ExecutionContext) || ((ExecutionContext) notifier).isRunning();
+    }
+
+    /**
+     * Context del quadrat de costat potència de dos: calcula sense animació al mateix pool i
+     * s'atura quan s'atura el càlcul principal, sense notificar cap pas.
+     */
+    private static final class CoreContext implements TilingNotificar, ExecutionContext {
+        private final TilingNotificar parent;
+        private final ForkJoinPool pool;
+
+        CoreContext(TilingNotificar parent, ForkJoinPool pool) {
+            this.parent = parent;
+            this.pool = pool;
+        }
+
+        @Override
+        public void onTilingStarted(int boardSize, int maxDepth) {
+        }
+
+        @Override
+        public void onTilingStep(int step, int[][] boardState) {
+        }
+
+        @Override
+        public void onTilingCompleted() {
+        }
+
+        @Override
+        public void onTilingError(String errorMessage) {
+        }
+
+        @Override
+        public boolean isAnimationEnabled() {
+            return false;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return GeneralTrominoTiling.isRunning(parent);
+        }
+
+        @Override
+        public ScheduledExecutorService getAnimationExecutor() {
+            return null;
+        }
+
+        @Override
+        public ExecutorService getComputeExecutor() {
+            return pool;
+        }
+    }
+
+    /**
+     * Publica les peces del tiling en blocs, generant-les a mesura que es demanen.
+     *
+     * @param maxDepth La profunditat màxima (no s'utilitza per a GeneralTrominoTiling).
+     * @param chunkSize El nombre màxim de peces per bloc.
+     * @param executor L'executor on es generen les peces.
+     * @return El publicador de blocs de peces.
+     */
+    @Override
+    public Flow.Publisher<GeometryChunk> stream(int maxDepth, int chunkSize, Executor executor) {
+        return new GeometryPublisher<>(this::tileIterator, GeometryChunk::ofTiles, chunkSize, executor);
+    }
+
+    /**
+     * Retorna un iterador mandrós sobre les peces del tiling, en ordre d'identificador i amb els
+     * mateixos identificadors que calculateTiling. Recorre els blocs de la descomposició i genera
+     * les peces de cadascun a partir del seu identificador, sense escriure al tauler: el quadrat
+     * de costat potència de dos es delega a l'iterador de {@link TrominoTiling}.
+     *
+     * @return L'iterador de peces.
+     */
+    public Iterator<TilePlacement> tileIterator() {
+        return new PieceIterator();
+    }
+
+    private final class PieceIterator implements Iterator<TilePlacement> {
+        private int index = -1;
+        private Piece piece;
+        private int next;
+        private Iterator<TilePlacement> core;
+        private int[] patternRows;
+        private int[] patternCols;
+
+        @Override
+        public boolean hasNext() {
+            while (piece == null || (piece.kind == CORE ? !core.hasNext() : next >= piece.tiles)) {
+                if (++index >= pieces.size()) {
+                    piece = null;
+                    return false;
+                }
+                start(pieces.get(index));
+            }
+            return true;
+        }
+
+        @Override
+        public TilePlacement next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (piece.kind == CORE) {
+                return core.next();
+            }
+            int t = next++;
+            int id = piece.firstId + t;
+            if (piece.kind == PATTERN) {
+                return new TilePlacement(id, Arrays.copyOfRange(patternRows, 3 * t, 3 * t + 3),
+                        Arrays.copyOfRange(patternCols, 3 * t, 3 * t + 3));
+            }
+            int block = t / 2;
+            boolean a = t % 2 == 0;
+            if (piece.height % 2 == 0 && piece.width % 3 == 0) {
+                // Blocs de 2×3: la peça A ocupa (0,0), (0,1) i (1,0), i la B, la resta.
+                int perRow = piece.width / 3;
+                int r = piece.row + 2 * (block / perRow);
+                int c = piece.col + 3 * (block % perRow);
+                return a ? new TilePlacement(id, new int[]{r, r, r + 1}, new int[]{c, c + 1, c})
+                        : new TilePlacement(id, new int[]{r, r + 1, r + 1}, new int[]{c + 2, c + 1, c + 2});
+            }
+            // Blocs de 3×2: la peça A ocupa (0,0), (0,1) i (1,0), i la B, (1,1), (2,0) i (2,1).
+            int perRow = piece.width / 2;
+            int r = piece.row + 3 * (block / perRow);
+            int c = piece.col + 2 * (block % perRow);
+            return a ? new TilePlacement(id, new int[]{r, r, r + 1}, new int[]{c, c + 1, c})
+                    : new TilePlacement(id, new int[]{r + 1, r + 2, r + 2}, new int[]{c + 1, c, c + 1});
+        }
+
+        /**
+         * Prepara la generació de les peces d'un bloc.
+         */
+        private void start(Piece p) {
+            piece = p;
+            next = 0;
+            if (p.kind == CORE) {
+                core = TrominoTiling.tileIterator(p.row, p.col, p.height, p.row + p.holeRow, p.col + p.holeCol,
+                        p.firstId);
+            } else if (p.kind == PATTERN) {
+                // El patró és petit: se'n desen les cel·les de cada peça, en ordre de files.
+                patternRows = new int[3 * p.tiles];
+                patternCols = new int[3 * p.tiles];
+                int[] filled = new int[p.tiles];
+                for (int i = 0; i < p.height; i++) {
+                    for (int j = 0; j < p.width; j++) {
+                        int tile = p.pattern[i][j] - 1;
+                        if (tile < 0) continue;
+                        int k = 3 * tile + filled[tile]++;
+                        patternRows[k] = p.row + i;
+                        patternCols[k] = p.col + j;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Retorna el nombre de peces del tiling.
+     *
+     * @return El nombre de peces.
+     */
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    /**
+     * Retorna la matriu del tauler amb el tiling calculat.
+     *
+     * @return La matriu del tauler.
+     */
+    public int[][] getBoard() {
+        return board;
+    }
+
+    /**
+     * Retorna el publicador d'instantànies del tauler, per renderitzar-lo mentre es calcula. Es
+     * crea la primera vegada que es demana, de manera que els càlculs sense vista no en paguen
+     * els buffers; s'ha de demanar abans de començar el càlcul perquè no es perdi cap canvi.
+     *
+     * @return El publicador d'instantànies.
+     */
+    public BoardSnapshotPublisher getSnapshots() {
+        BoardSnapshotPublisher publisher = snapshots;
+        if (publisher == null) {
+            synchronized (this) {
+                publisher = snapshots;
+                if (publisher == null) {
+                    publisher = new BoardSnapshotPublisher(board);
+                    snapshots = publisher;
+                }
+            }
+        }
+        return publisher;
+    }
+
+    /**
+     * Marca com a bruta una regió del tauler, si hi ha algun publicador d'instantànies.
+     */
+    private void markDirty(int r, int c, int height, int width) {
+        BoardSnapshotPublisher publisher = snapshots;
+        if (publisher != null) {
+            publisher.markDirty(r, c, height, width);
+        }
+    }
+
+    /**
+     * Marca com a brut tot el tauler, si hi ha algun publicador d'instantànies.
+     */
+    private void markAllDirty() {
+        BoardSnapshotPublisher publisher = snapshots;
+        if (publisher != null) {
+            publisher.markAllDirty();
+        }
+    }
+}
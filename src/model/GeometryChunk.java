@@ -0,0 +1,75 @@
+package model;
+
+import java.awt.geom.Point2D;
+import java.util.Collections;
+import java.util.List;
+
+public class GeometryChunk {
+    private final long sequence;
+    private final List<Point2D.Double> points;
+    private final List<TilePlacement> tiles;
+
+    private GeometryChunk(long sequence, List<Point2D.Double> points, List<TilePlacement> tiles) {
+        this.sequence = sequence;
+        this.points = points;
+        this.tiles = tiles;
+    }
+
+    /**
+     * Crea un bloc de punts d'una corba. Un element null separa polilínies, igual que a getPoints().
+     *
+     * @param sequence La posició del bloc dins del flux.
+     * @param points Els punts del bloc.
+     * @return El bloc creat.
+     */
+    public static GeometryChunk ofPoints(long sequence, List<Point2D.Double> points) {
+        return new GeometryChunk(sequence, points, Collections.emptyList());
+    }
+
+    /**
+     * Crea un bloc de peces col·locades en un tauler.
+     *
+     * @param sequence La posició del bloc dins del flux.
+     * @param tiles Les peces del bloc.
+     * @return El bloc creat.
+     */
+    public static GeometryChunk ofTiles(long sequence, List<TilePlacement> tiles) {
+        return new GeometryChunk(sequence, Collections.emptyList(), tiles);
+    }
+
+    /**
+     * Retorna la posició del bloc dins del flux, començant per 0.
+     *
+     * @return El número de seqüència.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Retorna els punts del bloc (buit si és un bloc de peces).
+     *
+     * @return La llista de punts.
+     */
+    public List<Point2D.Double> getPoints() {
+        return points;
+    }
+
+    /**
+     * Retorna les peces del bloc (buit si és un bloc de punts).
+     *
+     * @return La llista de peces.
+     */
+    public List<TilePlacement> getTiles() {
+        return tiles;
+    }
+
+    /**
+     * Retorna el nombre d'elements del bloc.
+     *
+     * @return El nombre de punts o de peces.
+     */
+    public int size() {
+        return points.size() + tiles.size();
+    }
+}
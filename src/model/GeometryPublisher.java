@@ -0,0 +1,141 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Publica la geometria d'un generador mandrós en blocs, respectant la demanda de cada subscriptor.
+ * <p>
+ * Cada subscripció té el seu propi iterador, que només avança quan el subscriptor ha demanat
+ * blocs. Si el consumidor va lent, la generació s'atura i la memòria queda limitada a la mida
+ * dels blocs en trànsit.
+ *
+ * @param <T> El tipus d'element generat.
+ */
+public class GeometryPublisher<T> implements Flow.Publisher<GeometryChunk> {
+    private final Supplier<Iterator<T>> source;
+    private final BiFunction<Long, List<T>, GeometryChunk> chunkFactory;
+    private final int chunkSize;
+    private final Executor executor;
+
+    /**
+     * Crea un nou publicador.
+     *
+     * @param source Proveeix un iterador nou per a cada subscripció.
+     * @param chunkFactory Construeix un bloc a partir del seu número de seqüència i els seus elements.
+     * @param chunkSize El nombre màxim d'elements per bloc.
+     * @param executor L'executor on es genera i es lliura la geometria.
+     */
+    public GeometryPublisher(Supplier<Iterator<T>> source, BiFunction<Long, List<T>, GeometryChunk> chunkFactory,
+                             int chunkSize, Executor executor) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.source = source;
+        this.chunkFactory = chunkFactory;
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super GeometryChunk> subscriber) {
+        ChunkSubscription subscription = new ChunkSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private class ChunkSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super GeometryChunk> subscriber;
+        private final AtomicLong demand = new AtomicLong(0);
+        private final AtomicInteger wip = new AtomicInteger(0);
+        private volatile boolean cancelled;
+        private Iterator<T> iterator;
+        private Throwable pendingError;
+        private boolean done;
+        private long sequence;
+
+        ChunkSubscription(Flow.Subscriber<? super GeometryChunk> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                pendingError = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                demand.accumulateAndGet(n, (a, b) -> (a + b < 0) ? Long.MAX_VALUE : a + b);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Programa el drenatge a l'executor si no n'hi ha cap en curs.
+         */
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * Genera i lliura blocs mentre hi hagi demanda pendent.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (done || cancelled) return;
+            try {
+                if (pendingError != null) {
+                    fail(pendingError);
+                    return;
+                }
+                if (iterator == null) {
+                    iterator = source.get();
+                }
+                while (demand.get() > 0 && !cancelled) {
+                    List<T> elements = new ArrayList<>(chunkSize);
+                    while (elements.size() < chunkSize && iterator.hasNext()) {
+                        elements.add(iterator.next());
+                    }
+                    if (!elements.isEmpty()) {
+                        demand.decrementAndGet();
+                        subscriber.onNext(chunkFactory.apply(sequence++, elements));
+                    }
+                    if (!iterator.hasNext()) {
+                        done = true;
+                        if (!cancelled) {
+                            subscriber.onComplete();
+                        }
+                        return;
+                    }
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable error) {
+            done = true;
+            cancelled = true;
+            subscriber.onError(error);
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package model;
 
-import controller.TilingController;
-import controller.TilingNotificar;
+import engine.ExecutionContext;
+import engine.TilingNotificar;
 
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class HilbertCurve implements TilingAlgorithm {
     private int boardSize;
     private List<Point2D.Double> points;
+    private int computedDepth = -1;
 
     private double x, y;
     private double angle;
@@ -28,7 +34,9 @@ public class HilbertCurve implements TilingAlgorithm {
     }
 
     /**
-     * Calcula la corba de Hilbert i notifica els passos del càlcul.
+     * Calcula la corba de Hilbert i notifica els passos del càlcul. Sense animació, si el model ja
+     * té la corba calculada a una profunditat menor o igual, la refina en lloc de recalcular-la.
+     * En mode progressiu, hi arriba nivell a nivell i publica cada nivell amb onTilingLevel.
      *
      * @param notifier L'objecte que rep les notificacions.
      * @param maxDepth La profunditat màxima de la corba.
@@ -36,7 +44,23 @@ public class HilbertCurve implements TilingAlgorithm {
     @Override
     public void calculateTiling(TilingNotificar notifier, int maxDepth) {
         notifier.onTilingStarted(boardSize, maxDepth);
-        boolean animate = (notifier instanceof TilingController) && ((TilingController) notifier).isAnimationEnabled();
+        boolean animate = (notifier instanceof ExecutionContext) && ((ExecutionContext) notifier).isAnimationEnabled();
+        boolean progressive = !animate && (notifier instanceof ExecutionContext)
+                && ((ExecutionContext) notifier).isProgressiveEnabled();
+        if (progressive || (!animate && computedDepth >= 0 && computedDepth <= maxDepth)) {
+            if (computedDepth > maxDepth) {
+                computedDepth = -1;
+            }
+            while (computedDepth < maxDepth && refine(notifier) != null) {
+                if (progressive) {
+                    notifier.onTilingLevel(computedDepth, points);
+                }
+            }
+            notifier.onTilingStep(points.size(), null);
+            notifier.onTilingCompleted();
+            return;
+        }
+        computedDepth = -1;
 
         step = (double) (boardSize - 1) / (Math.pow(2, maxDepth) - 1);
 
@@ -49,8 +73,8 @@ public class HilbertCurve implements TilingAlgorithm {
 
             List<Point2D.Double> fullPoints = new ArrayList<>();
             generateHilbert(maxDepth, 90, fullPoints);
-            ScheduledExecutorService scheduler = (notifier instanceof TilingController)
-                    ? ((TilingController) notifier).getAnimationExecutor()
+            ScheduledExecutorService scheduler = (notifier instanceof ExecutionContext)
+                    ? ((ExecutionContext) notifier).getAnimationExecutor()
                     : java.util.concurrent.Executors.newSingleThreadScheduledExecutor();
             points.clear();
             if (!fullPoints.isEmpty()) {
@@ -60,7 +84,7 @@ public class HilbertCurve implements TilingAlgorithm {
             for (int i = 1; i < fullPoints.size(); i++) {
                 final int index = i;
                 scheduler.schedule(() -> {
-                    if (!(notifier instanceof TilingController) || ((TilingController) notifier).isRunning()) {
+                    if (!(notifier instanceof ExecutionContext) || ((ExecutionContext) notifier).isRunning()) {
                         points.add(fullPoints.get(index));
                         notifier.onTilingStep(points.size(), null);
                     }
@@ -69,8 +93,10 @@ public class HilbertCurve implements TilingAlgorithm {
             scheduler.schedule(() -> notifier.onTilingCompleted(), delayMs * (fullPoints.size() + 1), TimeUnit.MILLISECONDS);
         } else {
 
-            points.clear();
+            // La llista anterior pot ser compartida per un resultat ja publicat.
+            points = new ArrayList<>();
             generateHilbert(maxDepth, 90, points);
+            computedDepth = Math.max(maxDepth, 0);
             notifier.onTilingStep(points.size(), null);
             notifier.onTilingCompleted();
         }
@@ -110,6 +136,30 @@ public class HilbertCurve implements TilingAlgorithm {
         outPoints.add(new Point2D.Double(x, y));
     }
 
+    /**
+     * Publica els punts de la corba de Hilbert en blocs, generant-los a mesura que es demanen.
+     *
+     * @param maxDepth La profunditat màxima de la corba.
+     * @param chunkSize El nombre màxim de punts per bloc.
+     * @param executor L'executor on es generen els punts.
+     * @return El publicador de blocs de punts.
+     */
+    @Override
+    public Flow.Publisher<GeometryChunk> stream(int maxDepth, int chunkSize, Executor executor) {
+        return new GeometryPublisher<>(() -> pointIterator(maxDepth), GeometryChunk::ofPoints, chunkSize, executor);
+    }
+
+    /**
+     * Retorna un iterador mandrós sobre els punts de la corba, en el mateix ordre que getPoints().
+     * Reprodueix la recursió de la tortuga amb una pila explícita de mida proporcional a la profunditat.
+     *
+     * @param maxDepth La profunditat màxima de la corba.
+     * @return L'iterador de punts.
+     */
+    public Iterator<Point2D.Double> pointIterator(int maxDepth) {
+        return new HilbertIterator(maxDepth, (double) (boardSize - 1) / (Math.pow(2, maxDepth) - 1));
+    }
+
     /**
      * Retorna la llista de punts generats per la corba de Hilbert.
      *
@@ -127,4 +177,148 @@ public class HilbertCurve implements TilingAlgorithm {
     public List<Point2D.Double> getCurrentPoints() {
         return new ArrayList<>(points);
     }
+
+    /**
+     * Retorna la profunditat de la corba que retorna getPoints().
+     *
+     * @return La profunditat, o -1 si no hi ha cap corba acabada.
+     */
+    public int getComputedDepth() {
+        return computedDepth;
+    }
+
+    /**
+     * Refina la corba calculada un nivell més, en paral·lel i sense tornar a executar la tortuga.
+     * La corba de profunditat d+1 és formada per quatre còpies de la de profunditat d sobre la
+     * graella de 2^d cel·les de costat: la primera transposada, les dues del mig desplaçades i
+     * l'última reflectida per l'antidiagonal. Cada punt es porta a la graella, es col·loca a les
+     * quatre còpies i s'escala al pas de la nova profunditat. Els punts coincideixen amb els de la
+     * tortuga llevat dels errors d'arrodoniment que aquesta acumula. La llista anterior no es
+     * modifica. Si encara no hi ha cap corba, calcula la de profunditat 0.
+     *
+     * @param notifier El notificador del càlcul; si és un ExecutionContext, el refinament es fa
+     *                 al seu pool de càlcul i s'atura quan el context s'atura.
+     * @return La llista de punts refinada, o null si el càlcul s'ha aturat i el model no ha canviat.
+     */
+    public List<Point2D.Double> refine(TilingNotificar notifier) {
+        if (!LevelRefinement.isRunning(notifier)) return null;
+        if (computedDepth < 0) {
+            points = new ArrayList<>();
+            computedDepth = 0;
+            return points;
+        }
+        List<Point2D.Double> current = points;
+        int side = 1 << computedDepth;
+        int cells = side * side;
+        double oldStep = (double) (boardSize - 1) / (side - 1);
+        double newStep = (double) (boardSize - 1) / (2 * side - 1);
+        // Com la tortuga, la llista no inclou el punt d'inici (0, 0).
+        Point2D.Double[] refined = new Point2D.Double[4 * cells - 1];
+        boolean done = LevelRefinement.forEach(notifier, cells, k -> {
+            int gx = 0, gy = 0;
+            if (k > 0) {
+                Point2D.Double p = current.get(k - 1);
+                gx = (int) Math.round(p.x / oldStep);
+                gy = (int) Math.round(p.y / oldStep);
+                refined[k - 1] = new Point2D.Double(gy * newStep, gx * newStep);
+            }
+            refined[cells + k - 1] = new Point2D.Double(gx * newStep, (gy + side) * newStep);
+            refined[2 * cells + k - 1] = new Point2D.Double((gx + side) * newStep, (gy + side) * newStep);
+            refined[3 * cells + k - 1] = new Point2D.Double((2 * side - 1 - gy) * newStep, (side - 1 - gx) * newStep);
+        });
+        if (!done) return null;
+        points = new ArrayList<>(Arrays.asList(refined));
+        computedDepth++;
+        return points;
+    }
+
+    private static class HilbertIterator implements Iterator<Point2D.Double> {
+        private final int[] levels;
+        private final double[] thetas;
+        private final int[] pcs;
+        private final double step;
+        private int top;
+        private double x, y, angle;
+        private Point2D.Double next;
+
+        HilbertIterator(int maxDepth, double step) {
+            int capacity = Math.max(1, maxDepth);
+            this.levels = new int[capacity];
+            this.thetas = new double[capacity];
+            this.pcs = new int[capacity];
+            this.step = step;
+            this.top = -1;
+            push(maxDepth, 90);
+            this.next = advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Point2D.Double next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Point2D.Double result = next;
+            next = advance();
+            return result;
+        }
+
+        private void push(int level, double theta) {
+            if (level == 0) return;
+            top++;
+            levels[top] = level;
+            thetas[top] = theta;
+            pcs[top] = 0;
+        }
+
+        /**
+         * Executa la recursió de generateHilbert fins al següent avanç de la tortuga.
+         *
+         * @return El següent punt, o null si la corba s'ha acabat.
+         */
+        private Point2D.Double advance() {
+            while (top >= 0) {
+                int level = levels[top];
+                double theta = thetas[top];
+                switch (pcs[top]++) {
+                    case 0:
+                        angle += theta;
+                        push(level - 1, -theta);
+                        break;
+                    case 1:
+                        return forward();
+                    case 2:
+                        angle -= theta;
+                        push(level - 1, theta);
+                        break;
+                    case 3:
+                        return forward();
+                    case 4:
+                        push(level - 1, theta);
+                        break;
+                    case 5:
+                        angle -= theta;
+                        return forward();
+                    case 6:
+                        push(level - 1, -theta);
+                        break;
+                    default:
+                        angle += theta;
+                        top--;
+                }
+            }
+            return null;
+        }
+
+        private Point2D.Double forward() {
+            double rad = Math.toRadians(angle);
+            x += step * Math.cos(rad);
+            y += step * Math.sin(rad);
+            return new Point2D.Double(x, y);
+        }
+    }
 }
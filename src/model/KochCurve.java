@@ -1,11 +1,18 @@
 package model;
 
-import controller.TilingController;
-import controller.TilingNotificar;
+import engine.ExecutionContext;
+import engine.TilingNotificar;
 
 import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -14,7 +21,9 @@ import java.util.concurrent.ExecutorService;
 
 public class KochCurve implements TilingAlgorithm {
     private int boardSize;
+    private volatile ExecutionContext context;
     private List<Point2D.Double> points;
+    private int computedDepth = -1;
 
     /**
      * Crea una nova instància de KochCurve amb la mida especificada.
@@ -27,7 +36,9 @@ public class KochCurve implements TilingAlgorithm {
     }
 
     /**
-     * Calcula la corba de Koch i notifica els passos del càlcul.
+     * Calcula la corba de Koch i notifica els passos del càlcul. Sense animació, si el model ja
+     * té la corba calculada a una profunditat menor o igual, la refina en lloc de recalcular-la.
+     * En mode progressiu, hi arriba nivell a nivell i publica cada nivell amb onTilingLevel.
      *
      * @param notifier L'objecte que rep les notificacions.
      * @param maxDepth La profunditat màxima de la corba.
@@ -35,14 +46,18 @@ public class KochCurve implements TilingAlgorithm {
     @Override
     public void calculateTiling(TilingNotificar notifier, int maxDepth) {
         notifier.onTilingStarted(boardSize, maxDepth);
-        boolean animate = (notifier instanceof TilingController) && ((TilingController) notifier).isAnimationEnabled();
+        context = (notifier instanceof ExecutionContext) ? (ExecutionContext) notifier : null;
+        boolean animate = (notifier instanceof ExecutionContext) && ((ExecutionContext) notifier).isAnimationEnabled();
+        boolean progressive = !animate && (notifier instanceof ExecutionContext)
+                && ((ExecutionContext) notifier).isProgressiveEnabled();
         Point2D.Double start = new Point2D.Double(0, boardSize / 2.0);
         Point2D.Double end = new Point2D.Double(boardSize - 1, boardSize / 2.0);
         if (animate) {
 
+            computedDepth = -1;
             List<Point2D.Double> fullPoints = generateKochPoints(start, end, maxDepth);
-            ScheduledExecutorService scheduler = (notifier instanceof TilingController)
-                    ? ((TilingController) notifier).getAnimationExecutor()
+            ScheduledExecutorService scheduler = (notifier instanceof ExecutionContext)
+                    ? ((ExecutionContext) notifier).getAnimationExecutor()
                     : java.util.concurrent.Executors.newSingleThreadScheduledExecutor();
             points.clear();
             if (!fullPoints.isEmpty()) {
@@ -52,7 +67,7 @@ public class KochCurve implements TilingAlgorithm {
             for (int i = 1; i < fullPoints.size(); i++) {
                 final int index = i;
                 scheduler.schedule(() -> {
-                    if (!(notifier instanceof TilingController) || ((TilingController) notifier).isRunning()) {
+                    if (!(notifier instanceof ExecutionContext) || ((ExecutionContext) notifier).isRunning()) {
                         points.add(fullPoints.get(index));
                         notifier.onTilingStep(points.size(), null);
                     }
@@ -60,10 +75,21 @@ public class KochCurve implements TilingAlgorithm {
             }
 
             scheduler.schedule(() -> notifier.onTilingCompleted(), delayMs * (fullPoints.size() + 1), TimeUnit.MILLISECONDS);
+        } else if (progressive || (computedDepth >= 0 && computedDepth <= maxDepth)) {
+            if (computedDepth > maxDepth) {
+                computedDepth = -1;
+            }
+            while (computedDepth < maxDepth && refine(notifier) != null) {
+                if (progressive) {
+                    notifier.onTilingLevel(computedDepth, points);
+                }
+            }
+            notifier.onTilingStep(points.size(), null);
+            notifier.onTilingCompleted();
         } else {
             ForkJoinPool pool;
-            if (notifier instanceof TilingController) {
-                ExecutorService exec = ((TilingController) notifier).getComputeExecutor();
+            if (notifier instanceof ExecutionContext) {
+                ExecutorService exec = ((ExecutionContext) notifier).getComputeExecutor();
                 if (exec instanceof ForkJoinPool) {
                     pool = (ForkJoinPool) exec;
                 } else {
@@ -74,11 +100,37 @@ public class KochCurve implements TilingAlgorithm {
             }
             KochTask mainTask = new KochTask(start, end, maxDepth);
             points = pool.invoke(mainTask);
+            computedDepth = isCancelled() ? -1 : maxDepth;
             notifier.onTilingStep(points.size(), null);
             notifier.onTilingCompleted();
         }
     }
 
+    /**
+     * Publica els punts de la corba de Koch en blocs, generant-los a mesura que es demanen.
+     *
+     * @param maxDepth La profunditat màxima de la corba.
+     * @param chunkSize El nombre màxim de punts per bloc.
+     * @param executor L'executor on es generen els punts.
+     * @return El publicador de blocs de punts.
+     */
+    @Override
+    public Flow.Publisher<GeometryChunk> stream(int maxDepth, int chunkSize, Executor executor) {
+        return new GeometryPublisher<>(() -> pointIterator(maxDepth), GeometryChunk::ofPoints, chunkSize, executor);
+    }
+
+    /**
+     * Retorna un iterador mandrós sobre els punts de la corba, en el mateix ordre que getPoints().
+     * Només manté a memòria la pila de recursió, de mida proporcional a la profunditat.
+     *
+     * @param maxDepth La profunditat màxima de la corba.
+     * @return L'iterador de punts.
+     */
+    public Iterator<Point2D.Double> pointIterator(int maxDepth) {
+        return new KochIterator(new Point2D.Double(0, boardSize / 2.0),
+                new Point2D.Double(boardSize - 1, boardSize / 2.0), maxDepth);
+    }
+
     /**
      * Retorna la llista de punts generats per la corba de Koch.
      *
@@ -88,6 +140,67 @@ public class KochCurve implements TilingAlgorithm {
         return points;
     }
 
+    /**
+     * Retorna la profunditat de la corba que retorna getPoints().
+     *
+     * @return La profunditat, o -1 si no hi ha cap corba acabada.
+     */
+    public int getComputedDepth() {
+        return computedDepth;
+    }
+
+    /**
+     * Refina la corba calculada un nivell més: cada segment es divideix en els quatre del nivell
+     * següent, en paral·lel i sense tornar a recórrer els nivells anteriors. El resultat és el
+     * mateix que calcular la corba a la nova profunditat. La llista anterior no es modifica.
+     * Si encara no hi ha cap corba, calcula la de profunditat 0.
+     *
+     * @param notifier El notificador del càlcul; si és un ExecutionContext, el refinament es fa
+     *                 al seu pool de càlcul i s'atura quan el context s'atura.
+     * @return La llista de punts refinada, o null si el càlcul s'ha aturat i el model no ha canviat.
+     */
+    public List<Point2D.Double> refine(TilingNotificar notifier) {
+        List<Point2D.Double> current = points;
+        if (!LevelRefinement.isRunning(notifier)) return null;
+        if (computedDepth < 0) {
+            points = new ArrayList<>(Arrays.asList(new Point2D.Double(0, boardSize / 2.0),
+                    new Point2D.Double(boardSize - 1, boardSize / 2.0)));
+            computedDepth = 0;
+            return points;
+        }
+        int segments = current.size() - 1;
+        Point2D.Double[] refined = new Point2D.Double[4 * segments + 1];
+        refined[0] = current.get(0);
+        if (!LevelRefinement.forEach(notifier, segments,
+                i -> subdivide(current.get(i), current.get(i + 1), refined, 4 * i + 1))) {
+            return null;
+        }
+        points = new ArrayList<>(Arrays.asList(refined));
+        computedDepth++;
+        return points;
+    }
+
+    /**
+     * Escriu els quatre punts que substitueixen el segment ab al nivell següent, sense el punt a.
+     *
+     * @param a El punt d'inici del segment.
+     * @param b El punt final del segment.
+     * @param out El vector de sortida.
+     * @param at La posició on s'escriu el primer punt.
+     */
+    private static void subdivide(Point2D.Double a, Point2D.Double b, Point2D.Double[] out, int at) {
+        double deltaX = b.x - a.x;
+        double deltaY = b.y - a.y;
+        Point2D.Double p1 = new Point2D.Double(a.x + deltaX / 3, a.y + deltaY / 3);
+        Point2D.Double p3 = new Point2D.Double(a.x + 2 * deltaX / 3, a.y + 2 * deltaY / 3);
+        double angle = Math.atan2(deltaY, deltaX) - Math.PI / 3;
+        double dist = Math.hypot(deltaX, deltaY) / 3;
+        out[at] = p1;
+        out[at + 1] = new Point2D.Double(p1.x + dist * Math.cos(angle), p1.y + dist * Math.sin(angle));
+        out[at + 2] = p3;
+        out[at + 3] = b;
+    }
+
 
     /**
      * Genera recursivament la llista de punts per a la corba de Koch.
@@ -121,6 +234,71 @@ public class KochCurve implements TilingAlgorithm {
         return result;
     }
 
+    /**
+     * Indica si el context d'execució ha aturat el càlcul.
+     *
+     * @return Cert si el càlcul s'ha cancel·lat.
+     */
+    private boolean isCancelled() {
+        ExecutionContext ctx = context;
+        return ctx != null && !ctx.isRunning();
+    }
+
+    private static class Segment {
+        private final Point2D.Double a, b;
+        private final int depth;
+
+        Segment(Point2D.Double a, Point2D.Double b, int depth) {
+            this.a = a;
+            this.b = b;
+            this.depth = depth;
+        }
+    }
+
+    private static class KochIterator implements Iterator<Point2D.Double> {
+        private final Deque<Segment> stack = new ArrayDeque<>();
+        private Point2D.Double first;
+
+        KochIterator(Point2D.Double start, Point2D.Double end, int depth) {
+            this.first = start;
+            stack.push(new Segment(start, end, depth));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return first != null || !stack.isEmpty();
+        }
+
+        @Override
+        public Point2D.Double next() {
+            if (first != null) {
+                Point2D.Double p = first;
+                first = null;
+                return p;
+            }
+            while (!stack.isEmpty()) {
+                Segment segment = stack.pop();
+                Point2D.Double a = segment.a;
+                Point2D.Double b = segment.b;
+                int depth = segment.depth;
+                if (depth == 0) {
+                    return b;
+                }
+                double deltaX = b.x - a.x;
+                double deltaY = b.y - a.y;
+                Point2D.Double p1 = new Point2D.Double(a.x + deltaX / 3, a.y + deltaY / 3);
+                Point2D.Double p3 = new Point2D.Double(a.x + 2 * deltaX / 3, a.y + 2 * deltaY / 3);
+                double angle = Math.atan2(deltaY, deltaX) - Math.PI / 3;
+                double dist = Math.hypot(deltaX, deltaY) / 3;
+                Point2D.Double p2 = new Point2D.Double(p1.x + dist * Math.cos(angle), p1.y + dist * Math.sin(angle));
+                stack.push(new Segment(p3, b, depth - 1));
+                stack.push(new Segment(p2, p3, depth - 1));
+                stack.push(new Segment(p1, p2, depth - 1));
+                stack.push(new Segment(a, p1, depth - 1));
+            }
+            throw new NoSuchElementException();
+        }
+    }
 
     private class KochTask extends RecursiveTask<List<Point2D.Double>> {
         private Point2D.Double a, b;
@@ -139,7 +317,7 @@ public class KochCurve implements TilingAlgorithm {
          */
         @Override
         protected List<Point2D.Double> compute() {
-            if (Thread.currentThread().isInterrupted()) {
+            if (Thread.currentThread().isInterrupted() || isCancelled()) {
                 return new ArrayList<>();
             }
             if (depth == 0) {
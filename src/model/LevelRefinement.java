@@ -0,0 +1,67 @@
+package model;
+
+import engine.ExecutionContext;
+import engine.TilingNotificar;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Executa en paral·lel un pas de refinament de les corbes al pool de càlcul del context.
+ * <p>
+ * Els índexs es reparteixen en blocs i la cancel·lació es comprova abans de cada bloc, de
+ * manera que una execució aturada deixa de refinar sense acabar el nivell.
+ */
+final class LevelRefinement {
+    private static final int BLOCK_SIZE = 1024;
+
+    private LevelRefinement() {
+    }
+
+    /**
+     * Aplica l'acció a cada índex de [0, count) en paral·lel.
+     *
+     * @param notifier El notificador del càlcul; si és un ExecutionContext, se'n fa servir el
+     *                 pool de càlcul i se'n comprova la cancel·lació.
+     * @param count El nombre d'índexs.
+     * @param action L'acció per a cada índex.
+     * @return Cert si s'han processat tots els índexs; fals si el càlcul s'ha aturat.
+     */
+    static boolean forEach(TilingNotificar notifier, int count, IntConsumer action) {
+        if (!isRunning(notifier)) return false;
+        int blocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        return computePool(notifier).submit(() -> IntStream.range(0, blocks).parallel().allMatch(b -> {
+            if (!isRunning(notifier)) return false;
+            int end = Math.min(count, (b + 1) * BLOCK_SIZE);
+            for (int i = b * BLOCK_SIZE; i < end; i++) {
+                action.accept(i);
+            }
+            return true;
+        })).join() && isRunning(notifier);
+    }
+
+    /**
+     * Indica si el càlcul continua en marxa.
+     *
+     * @param notifier El notificador del càlcul.
+     * @return Cert si no és un ExecutionContext o si el context encara és en marxa.
+     */
+    static boolean isRunning(TilingNotificar notifier) {
+        return !(notifier instanceof ExecutionContext) || ((ExecutionContext) notifier).isRunning();
+    }
+
+    /**
+     * Retorna el pool de càlcul del context, o el pool comú si no n'hi ha cap.
+     */
+    private static ForkJoinPool computePool(TilingNotificar notifier) {
+        if (notifier instanceof ExecutionContext) {
+            ExecutorService exec = ((ExecutionContext) notifier).getComputeExecutor();
+            if (exec instanceof ForkJoinPool) {
+                return (ForkJoinPool) exec;
+            }
+        }
+        return ForkJoinPool.commonPool();
+    }
+}
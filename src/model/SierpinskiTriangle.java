@@ -1,11 +1,18 @@
 package model;
 
-import controller.TilingController;
-import controller.TilingNotificar;
+import engine.ExecutionContext;
+import engine.TilingNotificar;
 
 import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -14,7 +21,9 @@ import java.util.concurrent.ExecutorService;
 
 public class SierpinskiTriangle implements TilingAlgorithm {
     private int boardSize;
+    private volatile ExecutionContext context;
     private List<Point2D.Double> curvePoints;
+    private int computedDepth = -1;
 
     /**
      * Crea una nova instància de SierpinskiTriangle per a generar el triangle de Sierpinski.
@@ -27,7 +36,10 @@ public class SierpinskiTriangle implements TilingAlgorithm {
     }
 
     /**
-     * Calcula el triangle de Sierpinski i notifica els passos del càlcul.
+     * Calcula el triangle de Sierpinski i notifica els passos del càlcul. Sense animació, si el
+     * model ja té el fractal calculat a una profunditat menor o igual, el refina en lloc de
+     * recalcular-lo. En mode progressiu, hi arriba nivell a nivell i publica cada nivell amb
+     * onTilingLevel.
      *
      * @param notifier L'objecte que rep les notificacions.
      * @param maxDepth La profunditat màxima del fractal.
@@ -35,21 +47,23 @@ public class SierpinskiTriangle implements TilingAlgorithm {
     @Override
     public void calculateTiling(TilingNotificar notifier, int maxDepth) {
         notifier.onTilingStarted(boardSize, maxDepth);
+        context = (notifier instanceof ExecutionContext) ? (ExecutionContext) notifier : null;
 
-        double margin = boardSize * 0.05;
-        double effectiveSize = boardSize - 2 * margin;
-        Point2D.Double a = new Point2D.Double(margin, boardSize - margin);
-        Point2D.Double b = new Point2D.Double(boardSize - margin, boardSize - margin);
-        double height = effectiveSize * Math.sqrt(3) / 2;
-        Point2D.Double c = new Point2D.Double(boardSize / 2.0, boardSize - margin - height);
-        boolean animate = (notifier instanceof TilingController) && ((TilingController) notifier).isAnimationEnabled();
+        Point2D.Double[] root = rootTriangle();
+        Point2D.Double a = root[0];
+        Point2D.Double b = root[1];
+        Point2D.Double c = root[2];
+        boolean animate = (notifier instanceof ExecutionContext) && ((ExecutionContext) notifier).isAnimationEnabled();
+        boolean progressive = !animate && (notifier instanceof ExecutionContext)
+                && ((ExecutionContext) notifier).isProgressiveEnabled();
         if (animate) {
 
+            computedDepth = -1;
             ForkJoinPool tempPool = new ForkJoinPool();
             SierpinskiTask rootTask = new SierpinskiTask(a, b, c, maxDepth);
             List<Point2D.Double> fullPoints = tempPool.invoke(rootTask);
             tempPool.shutdown();
-            ScheduledExecutorService scheduler = ((TilingController) notifier).getAnimationExecutor();
+            ScheduledExecutorService scheduler = ((ExecutionContext) notifier).getAnimationExecutor();
             curvePoints.clear();
             if (!fullPoints.isEmpty()) {
                 curvePoints.add(fullPoints.get(0));
@@ -58,17 +72,28 @@ public class SierpinskiTriangle implements TilingAlgorithm {
             for (int i = 1; i < fullPoints.size(); i++) {
                 final int index = i;
                 scheduler.schedule(() -> {
-                    if (!(notifier instanceof TilingController) || ((TilingController) notifier).isRunning()) {
+                    if (!(notifier instanceof ExecutionContext) || ((ExecutionContext) notifier).isRunning()) {
                         curvePoints.add(fullPoints.get(index));
                         notifier.onTilingStep(curvePoints.size(), null);
                     }
                 }, delayMs * i, TimeUnit.MILLISECONDS);
             }
             scheduler.schedule(() -> notifier.onTilingCompleted(), delayMs * (fullPoints.size() + 1), TimeUnit.MILLISECONDS);
+        } else if (progressive || (computedDepth >= 0 && computedDepth <= maxDepth)) {
+            if (computedDepth > maxDepth) {
+                computedDepth = -1;
+            }
+            while (computedDepth < maxDepth && refine(notifier) != null) {
+                if (progressive) {
+                    notifier.onTilingLevel(computedDepth, curvePoints);
+                }
+            }
+            notifier.onTilingStep(curvePoints.size(), null);
+            notifier.onTilingCompleted();
         } else {
             ForkJoinPool pool;
-            if (notifier instanceof TilingController) {
-                ExecutorService exec = ((TilingController) notifier).getComputeExecutor();
+            if (notifier instanceof ExecutionContext) {
+                ExecutorService exec = ((ExecutionContext) notifier).getComputeExecutor();
                 if (exec instanceof ForkJoinPool) {
                     pool = (ForkJoinPool) exec;
                 } else {
@@ -79,11 +104,52 @@ public class SierpinskiTriangle implements TilingAlgorithm {
             }
             SierpinskiTask rootTask = new SierpinskiTask(a, b, c, maxDepth);
             curvePoints = pool.invoke(rootTask);
+            computedDepth = isCancelled() ? -1 : maxDepth;
             notifier.onTilingStep(curvePoints.size(), null);
             notifier.onTilingCompleted();
         }
     }
 
+    /**
+     * Calcula els vèrtexs del triangle inicial, centrat al tauler amb un marge del 5%.
+     *
+     * @return Els tres vèrtexs del triangle.
+     */
+    private Point2D.Double[] rootTriangle() {
+        double margin = boardSize * 0.05;
+        double effectiveSize = boardSize - 2 * margin;
+        Point2D.Double a = new Point2D.Double(margin, boardSize - margin);
+        Point2D.Double b = new Point2D.Double(boardSize - margin, boardSize - margin);
+        double height = effectiveSize * Math.sqrt(3) / 2;
+        Point2D.Double c = new Point2D.Double(boardSize / 2.0, boardSize - margin - height);
+        return new Point2D.Double[]{a, b, c};
+    }
+
+    /**
+     * Publica els punts del triangle de Sierpinski en blocs, generant-los a mesura que es demanen.
+     *
+     * @param maxDepth La profunditat màxima del fractal.
+     * @param chunkSize El nombre màxim de punts per bloc.
+     * @param executor L'executor on es generen els punts.
+     * @return El publicador de blocs de punts.
+     */
+    @Override
+    public Flow.Publisher<GeometryChunk> stream(int maxDepth, int chunkSize, Executor executor) {
+        return new GeometryPublisher<>(() -> pointIterator(maxDepth), GeometryChunk::ofPoints, chunkSize, executor);
+    }
+
+    /**
+     * Retorna un iterador mandrós sobre els punts del fractal, en el mateix ordre que getPoints():
+     * per cada triangle, les tres arestes seguides d'un null.
+     *
+     * @param maxDepth La profunditat màxima del fractal.
+     * @return L'iterador de punts.
+     */
+    public Iterator<Point2D.Double> pointIterator(int maxDepth) {
+        Point2D.Double[] root = rootTriangle();
+        return new SierpinskiIterator(root[0], root[1], root[2], maxDepth);
+    }
+
     /**
      * Retorna la llista de punts que defineixen el triangle de Sierpinski.
      *
@@ -93,6 +159,62 @@ public class SierpinskiTriangle implements TilingAlgorithm {
         return curvePoints;
     }
 
+    /**
+     * Retorna la profunditat del fractal que retorna getPoints().
+     *
+     * @return La profunditat, o -1 si no hi ha cap fractal acabat.
+     */
+    public int getComputedDepth() {
+        return computedDepth;
+    }
+
+    /**
+     * Refina el fractal calculat un nivell més: cada triangle es substitueix pels seus tres
+     * fills, en paral·lel i sense tornar a recórrer els nivells anteriors. El resultat és el
+     * mateix que calcular el fractal a la nova profunditat. La llista anterior no es modifica.
+     * Si encara no hi ha cap fractal, calcula el de profunditat 0.
+     *
+     * @param notifier El notificador del càlcul; si és un ExecutionContext, el refinament es fa
+     *                 al seu pool de càlcul i s'atura quan el context s'atura.
+     * @return La llista de punts refinada, o null si el càlcul s'ha aturat i el model no ha canviat.
+     */
+    public List<Point2D.Double> refine(TilingNotificar notifier) {
+        if (!LevelRefinement.isRunning(notifier)) return null;
+        if (computedDepth < 0) {
+            Point2D.Double[] root = rootTriangle();
+            curvePoints = new ArrayList<>(Arrays.asList(triangleEdges(root[0], root[1], root[2])));
+            computedDepth = 0;
+            return curvePoints;
+        }
+        List<Point2D.Double> current = curvePoints;
+        int triangles = current.size() / 7;
+        Point2D.Double[] refined = new Point2D.Double[3 * 7 * triangles];
+        boolean done = LevelRefinement.forEach(notifier, triangles, t -> {
+            Point2D.Double a = current.get(7 * t);
+            Point2D.Double b = current.get(7 * t + 1);
+            Point2D.Double c = current.get(7 * t + 3);
+            Point2D.Double ab = midpoint(a, b);
+            Point2D.Double bc = midpoint(b, c);
+            Point2D.Double ca = midpoint(c, a);
+            int at = 21 * t;
+            System.arraycopy(triangleEdges(a, ab, ca), 0, refined, at, 7);
+            System.arraycopy(triangleEdges(b, bc, ab), 0, refined, at + 7, 7);
+            System.arraycopy(triangleEdges(c, ca, bc), 0, refined, at + 14, 7);
+        });
+        if (!done) return null;
+        curvePoints = new ArrayList<>(Arrays.asList(refined));
+        computedDepth++;
+        return curvePoints;
+    }
+
+    /**
+     * Retorna els punts d'un triangle fulla en l'ordre de getPoints(): les tres arestes seguides
+     * d'un null.
+     */
+    private static Point2D.Double[] triangleEdges(Point2D.Double a, Point2D.Double b, Point2D.Double c) {
+        return new Point2D.Double[]{a, b, b, c, c, a, null};
+    }
+
     /**
      * Calcula el punt mig entre dos punts.
      *
@@ -104,6 +226,78 @@ public class SierpinskiTriangle implements TilingAlgorithm {
         return new Point2D.Double((p.x + q.x) / 2.0, (p.y + q.y) / 2.0);
     }
 
+    /**
+     * Indica si el context d'execució ha aturat el càlcul.
+     *
+     * @return Cert si el càlcul s'ha cancel·lat.
+     */
+    private boolean isCancelled() {
+        ExecutionContext ctx = context;
+        return ctx != null && !ctx.isRunning();
+    }
+
+    private class SierpinskiIterator implements Iterator<Point2D.Double> {
+        private final Deque<Triangle> stack = new ArrayDeque<>();
+        private final Point2D.Double[] pending = new Point2D.Double[7];
+        private int pendingIndex = pending.length;
+
+        SierpinskiIterator(Point2D.Double a, Point2D.Double b, Point2D.Double c, int depth) {
+            stack.push(new Triangle(a, b, c, depth));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pendingIndex < pending.length || !stack.isEmpty();
+        }
+
+        @Override
+        public Point2D.Double next() {
+            if (pendingIndex == pending.length) {
+                refill();
+            }
+            return pending[pendingIndex++];
+        }
+
+        /**
+         * Descendeix fins al següent triangle fulla i en prepara les arestes.
+         */
+        private void refill() {
+            while (!stack.isEmpty()) {
+                Triangle t = stack.pop();
+                if (t.depth == 0) {
+                    pending[0] = t.a;
+                    pending[1] = t.b;
+                    pending[2] = t.b;
+                    pending[3] = t.c;
+                    pending[4] = t.c;
+                    pending[5] = t.a;
+                    pending[6] = null;
+                    pendingIndex = 0;
+                    return;
+                }
+                Point2D.Double ab = midpoint(t.a, t.b);
+                Point2D.Double bc = midpoint(t.b, t.c);
+                Point2D.Double ca = midpoint(t.c, t.a);
+                stack.push(new Triangle(t.c, ca, bc, t.depth - 1));
+                stack.push(new Triangle(t.b, bc, ab, t.depth - 1));
+                stack.push(new Triangle(t.a, ab, ca, t.depth - 1));
+            }
+            throw new NoSuchElementException();
+        }
+    }
+
+    private static class Triangle {
+        private final Point2D.Double a, b, c;
+        private final int depth;
+
+        Triangle(Point2D.Double a, Point2D.Double b, Point2D.Double c, int depth) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.depth = depth;
+        }
+    }
+
     private class SierpinskiTask extends RecursiveTask<List<Point2D.Double>> {
         private Point2D.Double a, b, c;
         private int depth;
@@ -121,7 +315,7 @@ public class SierpinskiTriangle implements TilingAlgorithm {
          */
         @Override
         protected List<Point2D.Double> compute() {
-            if (Thread.currentThread().isInterrupted()) {
+            if (Thread.currentThread().isInterrupted() || isCancelled()) {
                 return new ArrayList<>();
             }
             if (depth == 0) {
@@ -1,11 +1,18 @@
 package model;
 
-import controller.TilingController;
-import controller.TilingNotificar;
+import engine.ExecutionContext;
+import engine.TilingNotificar;
 
 import java.awt.geom.Point2D;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -14,6 +21,8 @@ public class SquareModel implements TilingAlgorithm {
     private int depth;
     private List<Point2D.Double> points;
     private double size;
+    private int computedDepth = -1;
+    private double computedSize;
 
     /**
      * Crea una nova instància de SquareModel per a generar un fractal de quadrats.
@@ -29,7 +38,10 @@ public class SquareModel implements TilingAlgorithm {
     }
 
     /**
-     * Calcula el fractal de quadrats (Square Carpet) i notifica els passos del càlcul.
+     * Calcula el fractal de quadrats (Square Carpet) i notifica els passos del càlcul. Sense
+     * animació, si el model ja té el fractal calculat a una profunditat menor o igual, el refina
+     * en lloc de recalcular-lo. En mode progressiu, hi arriba nivell a nivell i publica cada
+     * nivell amb onTilingLevel.
      *
      * @param notifier L'objecte que rep les notificacions.
      * @param maxDepth La profunditat màxima per al càlcul.
@@ -37,13 +49,16 @@ public class SquareModel implements TilingAlgorithm {
     @Override
     public void calculateTiling(TilingNotificar notifier, int maxDepth) {
         notifier.onTilingStarted(boardSize, depth);
-        boolean animate = (notifier instanceof TilingController) && ((TilingController) notifier).isAnimationEnabled();
+        boolean animate = (notifier instanceof ExecutionContext) && ((ExecutionContext) notifier).isAnimationEnabled();
+        boolean progressive = !animate && (notifier instanceof ExecutionContext)
+                && ((ExecutionContext) notifier).isProgressiveEnabled();
         if (animate) {
 
+            computedDepth = -1;
             List<Point2D.Double> fullPoints = new ArrayList<>();
             generateCarpetPoints(0, 0, size, depth, fullPoints);
-            ScheduledExecutorService scheduler = (notifier instanceof TilingController)
-                    ? ((TilingController) notifier).getAnimationExecutor()
+            ScheduledExecutorService scheduler = (notifier instanceof ExecutionContext)
+                    ? ((ExecutionContext) notifier).getAnimationExecutor()
                     : java.util.concurrent.Executors.newSingleThreadScheduledExecutor();
             points.clear();
             if (!fullPoints.isEmpty()) {
@@ -53,21 +68,45 @@ public class SquareModel implements TilingAlgorithm {
             for (int i = 1; i < fullPoints.size(); i++) {
                 final int index = i;
                 scheduler.schedule(() -> {
-                    if (!(notifier instanceof TilingController) || ((TilingController) notifier).isRunning()) {
+                    if (!(notifier instanceof ExecutionContext) || ((ExecutionContext) notifier).isRunning()) {
                         points.add(fullPoints.get(index));
                         notifier.onTilingStep(points.size(), null);
                     }
                 }, delayMs * i, TimeUnit.MILLISECONDS);
             }
             scheduler.schedule(() -> notifier.onTilingCompleted(), delayMs * (fullPoints.size() + 1), TimeUnit.MILLISECONDS);
+        } else if (progressive || (computedDepth >= 0 && computedDepth <= depth)) {
+            if (computedDepth > depth) {
+                computedDepth = -1;
+            }
+            while (computedDepth < depth && refine(notifier) != null) {
+                if (progressive) {
+                    notifier.onTilingLevel(computedDepth, points);
+                }
+            }
+            notifier.onTilingStep(points.size(), null);
+            notifier.onTilingCompleted();
         } else {
-            points.clear();
+            // La llista anterior pot ser compartida per un resultat ja publicat.
+            points = new ArrayList<>();
             generateCarpet(0, 0, size, depth);
+            computedDepth = Math.max(depth, 0);
+            computedSize = size;
+            for (int level = 0; level < depth; level++) {
+                computedSize /= 3;
+            }
             notifier.onTilingStep(points.size(), null);
             notifier.onTilingCompleted();
         }
     }
 
+    /**
+     * Indica si el càlcul continua, és a dir, si el notificador no és un context d'execució aturat.
+     */
+    private static boolean isRunning(TilingNotificar notifier) {
+        return !(notifier instanceof ExecutionContext) || ((ExecutionContext) notifier).isRunning();
+    }
+
     /**
      * Genera recursivament els punts per al tapís de quadrats.
      *
@@ -141,6 +180,30 @@ public class SquareModel implements TilingAlgorithm {
         points.add(null);
     }
 
+    /**
+     * Publica els contorns dels quadrats en blocs, generant-los a mesura que es demanen. Igual que
+     * calculateTiling, fa servir la profunditat indicada en crear el model.
+     *
+     * @param maxDepth La profunditat màxima (no s'utilitza; s'usa la del constructor).
+     * @param chunkSize El nombre màxim de punts per bloc.
+     * @param executor L'executor on es generen els punts.
+     * @return El publicador de blocs de punts.
+     */
+    @Override
+    public Flow.Publisher<GeometryChunk> stream(int maxDepth, int chunkSize, Executor executor) {
+        return new GeometryPublisher<>(this::pointIterator, GeometryChunk::ofPoints, chunkSize, executor);
+    }
+
+    /**
+     * Retorna un iterador mandrós sobre els punts del tapís, en el mateix ordre que getPoints():
+     * per cada quadrat, les quatre arestes seguides d'un null.
+     *
+     * @return L'iterador de punts.
+     */
+    public Iterator<Point2D.Double> pointIterator() {
+        return new CarpetIterator(size, depth);
+    }
+
     /**
      * Retorna la llista de punts generats pel fractal de quadrats.
      *
@@ -149,4 +212,138 @@ public class SquareModel implements TilingAlgorithm {
     public List<Point2D.Double> getPoints() {
         return points;
     }
+
+    /**
+     * Canvia la profunditat que faran servir els càlculs següents. Si el model ja té un fractal
+     * de profunditat menor, el pròxim càlcul sense animació el refinarà.
+     *
+     * @param depth La nova profunditat del fractal.
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Retorna la profunditat del fractal que retorna getPoints().
+     *
+     * @return La profunditat, o -1 si no hi ha cap fractal acabat.
+     */
+    public int getComputedDepth() {
+        return computedDepth;
+    }
+
+    /**
+     * Refina el fractal calculat un nivell més: cada quadrat es substitueix pels vuit del nivell
+     * següent, en paral·lel i sense tornar a recórrer els nivells anteriors. El resultat és el
+     * mateix que calcular el fractal a la nova profunditat, que passa a ser la del model. La
+     * llista anterior no es modifica. Si encara no hi ha cap fractal, calcula el de profunditat 0.
+     *
+     * @param notifier El notificador del càlcul; si és un ExecutionContext, el refinament es fa
+     *                 al seu pool de càlcul i s'atura quan el context s'atura.
+     * @return La llista de punts refinada, o null si el càlcul s'ha aturat i el model no ha canviat.
+     */
+    public List<Point2D.Double> refine(TilingNotificar notifier) {
+        if (!isRunning(notifier)) return null;
+        if (computedDepth < 0) {
+            Point2D.Double[] square = new Point2D.Double[9];
+            squareOutline(0, 0, size, square, 0);
+            points = new ArrayList<>(Arrays.asList(square));
+            computedDepth = 0;
+            computedSize = size;
+            depth = Math.max(depth, 0);
+            return points;
+        }
+        List<Point2D.Double> current = points;
+        double third = computedSize / 3;
+        int squares = current.size() / 9;
+        Point2D.Double[] refined = new Point2D.Double[8 * 9 * squares];
+        boolean done = LevelRefinement.forEach(notifier, squares, s -> {
+            Point2D.Double origin = current.get(9 * s);
+            int at = 72 * s;
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    if (i == 1 && j == 1) continue;
+                    squareOutline(origin.x + i * third, origin.y + j * third, third, refined, at);
+                    at += 9;
+                }
+            }
+        });
+        if (!done) return null;
+        points = new ArrayList<>(Arrays.asList(refined));
+        computedSize = third;
+        computedDepth++;
+        depth = Math.max(depth, computedDepth);
+        return points;
+    }
+
+    /**
+     * Escriu el contorn d'un quadrat en l'ordre de getPoints(): les quatre arestes seguides d'un
+     * null.
+     */
+    private static void squareOutline(double x, double y, double size, Point2D.Double[] out, int at) {
+        out[at] = new Point2D.Double(x, y);
+        out[at + 1] = new Point2D.Double(x + size, y);
+        out[at + 2] = new Point2D.Double(x + size, y);
+        out[at + 3] = new Point2D.Double(x + size, y + size);
+        out[at + 4] = new Point2D.Double(x + size, y + size);
+        out[at + 5] = new Point2D.Double(x, y + size);
+        out[at + 6] = new Point2D.Double(x, y + size);
+        out[at + 7] = new Point2D.Double(x, y);
+        out[at + 8] = null;
+    }
+
+    private static class CarpetIterator implements Iterator<Point2D.Double> {
+        private final Deque<double[]> stack = new ArrayDeque<>();
+        private final Point2D.Double[] pending = new Point2D.Double[9];
+        private int pendingIndex = pending.length;
+
+        CarpetIterator(double size, int depth) {
+            stack.push(new double[]{0, 0, size, depth});
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pendingIndex < pending.length || !stack.isEmpty();
+        }
+
+        @Override
+        public Point2D.Double next() {
+            if (pendingIndex == pending.length) {
+                refill();
+            }
+            return pending[pendingIndex++];
+        }
+
+        /**
+         * Descendeix fins al següent quadrat fulla i en prepara el contorn.
+         */
+        private void refill() {
+            while (!stack.isEmpty()) {
+                double[] square = stack.pop();
+                double x = square[0], y = square[1], size = square[2];
+                int level = (int) square[3];
+                if (level <= 0) {
+                    pending[0] = new Point2D.Double(x, y);
+                    pending[1] = new Point2D.Double(x + size, y);
+                    pending[2] = new Point2D.Double(x + size, y);
+                    pending[3] = new Point2D.Double(x + size, y + size);
+                    pending[4] = new Point2D.Double(x + size, y + size);
+                    pending[5] = new Point2D.Double(x, y + size);
+                    pending[6] = new Point2D.Double(x, y + size);
+                    pending[7] = new Point2D.Double(x, y);
+                    pending[8] = null;
+                    pendingIndex = 0;
+                    return;
+                }
+                double third = size / 3;
+                for (int i = 2; i >= 0; i--) {
+                    for (int j = 2; j >= 0; j--) {
+                        if (i == 1 && j == 1) continue;
+                        stack.push(new double[]{x + i * third, y + j * third, third, level - 1});
+                    }
+                }
+            }
+            throw new NoSuchElementException();
+        }
+    }
 }
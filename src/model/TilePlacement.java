@@ -0,0 +1,58 @@
+package model;
+
+public class TilePlacement {
+    private final int id;
+    private final int[] rows;
+    private final int[] cols;
+
+    /**
+     * Crea una nova col·locació de peça.
+     *
+     * @param id L'identificador de la peça.
+     * @param rows Les files de les cel·les que ocupa.
+     * @param cols Les columnes de les cel·les que ocupa.
+     */
+    public TilePlacement(int id, int[] rows, int[] cols) {
+        this.id = id;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Retorna l'identificador de la peça.
+     *
+     * @return L'identificador.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Retorna el nombre de cel·les que ocupa la peça.
+     *
+     * @return El nombre de cel·les.
+     */
+    public int getCellCount() {
+        return rows.length;
+    }
+
+    /**
+     * Retorna la fila de la cel·la i-èsima.
+     *
+     * @param i L'índex de la cel·la.
+     * @return La fila.
+     */
+    public int getRow(int i) {
+        return rows[i];
+    }
+
+    /**
+     * Retorna la columna de la cel·la i-èsima.
+     *
+     * @param i L'índex de la cel·la.
+     * @return La columna.
+     */
+    public int getCol(int i) {
+        return cols[i];
+    }
+}
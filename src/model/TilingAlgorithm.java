@@ -1,8 +1,14 @@
 package model;
 
-import controller.TilingNotificar;
+import engine.TilingNotificar;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
 
 public interface TilingAlgorithm {
+    int DEFAULT_CHUNK_SIZE = 4096;
+
     /**
      * Calcula el tiling i notifica els canvis.
      *
@@ -10,4 +16,25 @@ public interface TilingAlgorithm {
      * @param maxDepth La profunditat màxima per al càlcul.
      */
     void calculateTiling(TilingNotificar notifier, int maxDepth);
+
+    /**
+     * Publica la geometria en blocs a mesura que es genera, sense materialitzar-la sencera.
+     * La generació només avança quan el subscriptor demana més blocs.
+     *
+     * @param maxDepth La profunditat màxima per al càlcul.
+     * @param chunkSize El nombre màxim de punts o peces per bloc.
+     * @param executor L'executor on es genera la geometria.
+     * @return El publicador de blocs de geometria.
+     */
+    Flow.Publisher<GeometryChunk> stream(int maxDepth, int chunkSize, Executor executor);
+
+    /**
+     * Publica la geometria en blocs de mida per defecte, generant-la al pool comú.
+     *
+     * @param maxDepth La profunditat màxima per al càlcul.
+     * @return El publicador de blocs de geometria.
+     */
+    default Flow.Publisher<GeometryChunk> stream(int maxDepth) {
+        return stream(maxDepth, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
 }
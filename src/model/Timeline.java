@@ -0,0 +1,244 @@
+package model;
+
+import java.awt.geom.Point2D;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Enregistrament d'una animació que es pot reproduir i recórrer a qualsevol pas sense tornar a
+ * executar l'algorisme.
+ * <p>
+ * Per a un tauler, el registre d'esdeveniments són les cel·les ordenades pel pas en què es
+ * col·loquen (un enter per cel·la) i la posició on comença cada pas (un enter per pas). Com que
+ * cada cel·la s'escriu una sola vegada, el tauler amb les peces numerades en ordre de pas fa de
+ * fotograma clau de qualsevol pas: el tauler del pas k són les cel·les amb número com a molt k.
+ * Un salt curt aplica o desfà només els passos entre la posició actual i la nova; un salt llarg
+ * reconstrueix el tauler a partir del fotograma clau, en paral·lel per files. El tauler de
+ * treball es publica amb un {@link BoardSnapshotPublisher}, de manera que la vista només
+ * redibuixa els blocs que canvien.
+ * <p>
+ * Per a una corba, el pas k són els k primers punts, i la llista visible és una vista sobre la
+ * corba sencera. Els mètodes de recorregut s'han de cridar sempre des del mateix fil.
+ */
+public class Timeline {
+    /** Un salt que toca més d'aquesta fracció de cel·les reconstrueix el tauler sencer. */
+    private static final int REBUILD_FRACTION = 16;
+
+    private final int[][] steps;
+    private final int[] stepStart;
+    private final int[] cells;
+    private final int[][] board;
+    private final BoardSnapshotPublisher snapshots;
+    private final List<Point2D.Double> points;
+    private final PrefixList visible;
+    private final boolean invertY;
+    private final int stepCount;
+    private int step;
+
+    private Timeline(int[][] steps, List<Point2D.Double> points, boolean invertY) {
+        this.steps = steps;
+        this.points = points;
+        this.invertY = invertY;
+        if (steps != null) {
+            int rows = steps.length;
+            int cols = rows > 0 ? steps[0].length : 0;
+            int last = IntStream.range(0, rows).parallel()
+                    .map(i -> {
+                        int max = 0;
+                        for (int v : steps[i]) max = Math.max(max, v);
+                        return max;
+                    }).max().orElse(0);
+            this.stepCount = last;
+            this.stepStart = new int[last + 2];
+            for (int[] row : steps) {
+                for (int v : row) {
+                    if (v > 0) stepStart[v + 1]++;
+                }
+            }
+            for (int s = 1; s < stepStart.length; s++) {
+                stepStart[s] += stepStart[s - 1];
+            }
+            this.cells = new int[stepStart[last + 1]];
+            int[] next = stepStart.clone();
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    int v = steps[i][j];
+                    if (v > 0) cells[next[v]++] = i * cols + j;
+                }
+            }
+            this.board = new int[rows][cols];
+            IntStream.range(0, rows).parallel().forEach(i -> {
+                for (int j = 0; j < cols; j++) {
+                    if (steps[i][j] < 0) board[i][j] = steps[i][j];
+                }
+            });
+            this.snapshots = new BoardSnapshotPublisher(board);
+            this.visible = null;
+        } else {
+            this.stepCount = points.size();
+            this.stepStart = null;
+            this.cells = null;
+            this.board = null;
+            this.snapshots = null;
+            this.visible = new PrefixList(points);
+        }
+        this.step = 0;
+    }
+
+    /**
+     * Enregistra l'animació d'un tauler a partir de les peces numerades en l'ordre en què es
+     * col·loquen, com el que retorna {@link TrominoTiling#stepOrderBoard()}. Les cel·les
+     * negatives (la cel·la absent) es mostren a tots els passos, i les cel·les a 0, a cap.
+     * El tauler no es modifica.
+     *
+     * @param steps El tauler amb les peces numerades en ordre de pas.
+     * @return L'enregistrament, situat al pas 0.
+     */
+    public static Timeline ofBoard(int[][] steps) {
+        return new Timeline(steps, null, false);
+    }
+
+    /**
+     * Enregistra l'animació d'una corba, en què cada pas afegeix el punt següent.
+     *
+     * @param points La llista de punts de la corba, que no s'ha de modificar.
+     * @param invertY Indica si la corba es dibuixa amb l'eix Y invertit.
+     * @return L'enregistrament, situat al pas 0.
+     */
+    public static Timeline ofCurve(List<Point2D.Double> points, boolean invertY) {
+        return new Timeline(null, points, invertY);
+    }
+
+    /**
+     * Indica si l'enregistrament és d'un tauler en lloc d'una corba.
+     *
+     * @return Cert si és un tauler.
+     */
+    public boolean isBoard() {
+        return steps != null;
+    }
+
+    /**
+     * Retorna el nombre de passos de l'enregistrament.
+     *
+     * @return L'últim pas.
+     */
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Retorna el pas actual.
+     *
+     * @return El pas actual.
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Situa l'enregistrament al pas indicat i, si és un tauler, en publica l'estat. Només es
+     * tornen a escriure les cel·les dels passos entre la posició actual i la nova, llevat que
+     * siguin prou per sortir més a compte reconstruir el tauler.
+     *
+     * @param target El pas de destinació; es limita a [0, getStepCount()].
+     */
+    public void seek(int target) {
+        target = Math.max(0, Math.min(stepCount, target));
+        if (steps == null) {
+            visible.setSize(target);
+            step = target;
+            return;
+        }
+        int from = stepStart[Math.min(step, target) + 1];
+        int to = stepStart[Math.max(step, target) + 1];
+        if ((long) (to - from) * REBUILD_FRACTION > cells.length) {
+            rebuild(target);
+        } else {
+            int cols = board[0].length;
+            boolean forward = target > step;
+            for (int k = from; k < to; k++) {
+                int r = cells[k] / cols;
+                int c = cells[k] % cols;
+                board[r][c] = forward ? steps[r][c] : 0;
+                snapshots.markDirty(r, c);
+            }
+        }
+        step = target;
+        snapshots.publish();
+    }
+
+    /**
+     * Reconstrueix el tauler de treball al pas indicat a partir del tauler numerat.
+     */
+    private void rebuild(int target) {
+        IntStream.range(0, board.length).parallel().forEach(i -> {
+            int[] src = steps[i];
+            int[] dst = board[i];
+            for (int j = 0; j < dst.length; j++) {
+                dst[j] = src[j] > target ? 0 : src[j];
+            }
+        });
+        snapshots.markAllDirty();
+    }
+
+    /**
+     * Retorna el publicador de l'estat del tauler al pas actual.
+     *
+     * @return El publicador, o null si l'enregistrament és d'una corba.
+     */
+    public BoardSnapshotPublisher getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Retorna els punts de la corba visibles al pas actual. És sempre la mateixa llista, que
+     * creix o s'escurça amb {@link #seek}, de manera que la vista pot dibuixar només els
+     * segments nous quan l'enregistrament avança.
+     *
+     * @return La llista de punts visibles, o null si l'enregistrament és d'un tauler.
+     */
+    public List<Point2D.Double> getVisiblePoints() {
+        return visible;
+    }
+
+    /**
+     * Indica si la corba es dibuixa amb l'eix Y invertit.
+     *
+     * @return Cert si l'eix Y s'inverteix.
+     */
+    public boolean isInvertY() {
+        return invertY;
+    }
+
+    /**
+     * Vista dels primers punts d'una llista, amb una mida que es pot canviar des d'un fil i
+     * llegir des d'un altre.
+     */
+    private static final class PrefixList extends AbstractList<Point2D.Double> {
+        private final List<Point2D.Double> points;
+        private volatile int size;
+
+        PrefixList(List<Point2D.Double> points) {
+            this.points = points;
+        }
+
+        void setSize(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Point2D.Double get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return points.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -1,8 +1,16 @@
 package model;
 
-import controller.TilingController;
-import controller.TilingNotificar;
+import engine.ExecutionContext;
+import engine.TilingNotificar;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.ScheduledExecutorService;
@@ -10,24 +18,95 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class TrominoTiling implements TilingAlgorithm {
+    /** Costat dels blocs de cantonada que el mode de còpia copia d'una plantilla. */
+    private static final int TEMPLATE_SIZE = 64;
+    private static final int[][][] CORNER_TEMPLATES = cornerTemplates();
+
     private int boardSize;
     private int[][] board;
+    private int missingRow;
+    private int missingCol;
     private AtomicInteger tileId;
+    private volatile BoardSnapshotPublisher snapshots;
+    private volatile boolean stamping = true;
 
     public TrominoTiling(int boardSize, int missingRow, int missingCol) {
         this.boardSize = boardSize;
         board = new int[boardSize][boardSize];
         board[missingRow][missingCol] = -1;
+        this.missingRow = missingRow;
+        this.missingCol = missingCol;
         tileId = new AtomicInteger(1);
     }
 
+    /**
+     * Retorna la matriu del tauler amb el tiling calculat.
+     *
+     * @return La matriu del tauler.
+     */
+    public int[][] getBoard() {
+        return board;
+    }
+
+    /**
+     * Retorna el publicador d'instantànies del tauler, per renderitzar-lo mentre es calcula. Es
+     * crea la primera vegada que es demana, de manera que els càlculs sense vista no en paguen
+     * els buffers; s'ha de demanar abans de començar el càlcul perquè no es perdi cap canvi.
+     *
+     * @return El publicador d'instantànies.
+     */
+    public BoardSnapshotPublisher getSnapshots() {
+        BoardSnapshotPublisher publisher = snapshots;
+        if (publisher == null) {
+            synchronized (this) {
+                publisher = snapshots;
+                if (publisher == null) {
+                    publisher = new BoardSnapshotPublisher(board);
+                    snapshots = publisher;
+                }
+            }
+        }
+        return publisher;
+    }
+
+    /**
+     * Marca com a bruta una regió del tauler, si hi ha algun publicador d'instantànies.
+     */
+    private void markDirty(int r, int c, int height, int width) {
+        BoardSnapshotPublisher publisher = snapshots;
+        if (publisher != null) {
+            publisher.markDirty(r, c, height, width);
+        }
+    }
+
+    /**
+     * Indica si el càlcul sense animació copia els blocs amb el forat a una cantonada en lloc
+     * de calcular-los. Per defecte és cert.
+     *
+     * @return Cert si el mode de còpia està activat.
+     */
+    public boolean isStamping() {
+        return stamping;
+    }
+
+    /**
+     * Activa o desactiva el mode de còpia del càlcul sense animació. Les peces són les mateixes
+     * en tots dos modes; només canvia la numeració: amb el mode de còpia és el preordre de
+     * {@link #tileIterator()}, i sense, l'ordre en què els fils col·loquen les peces.
+     *
+     * @param stamping Cert per copiar els blocs amb el forat a una cantonada.
+     */
+    public void setStamping(boolean stamping) {
+        this.stamping = stamping;
+    }
+
     @Override
     public void calculateTiling(TilingNotificar notifier, int maxDepth) {
         notifier.onTilingStarted(boardSize, maxDepth);
-        boolean animate = (notifier instanceof TilingController) && ((TilingController) notifier).isAnimationEnabled();
+        boolean animate = (notifier instanceof ExecutionContext) && ((ExecutionContext) notifier).isAnimationEnabled();
         if (animate) {
-            if (notifier instanceof TilingController) {
-                ScheduledExecutorService scheduler = ((TilingController) notifier).getAnimationExecutor();
+            if (notifier instanceof ExecutionContext) {
+                ScheduledExecutorService scheduler = ((ExecutionContext) notifier).getAnimationExecutor();
                 AtomicInteger activeTasks = new AtomicInteger(0);
                 // Increment counter for the initial call and schedule it
                 activeTasks.incrementAndGet();
@@ -39,8 +118,8 @@ public class TrominoTiling implements TilingAlgorithm {
             }
         } else {
             ForkJoinPool pool;
-            if (notifier instanceof TilingController) {
-                java.util.concurrent.ExecutorService exec = ((TilingController) notifier).getComputeExecutor();
+            if (notifier instanceof ExecutionContext) {
+                java.util.concurrent.ExecutorService exec = ((ExecutionContext) notifier).getComputeExecutor();
                 if (exec instanceof ForkJoinPool) {
                     pool = (ForkJoinPool) exec;
                 } else {
@@ -49,11 +128,198 @@ public class TrominoTiling implements TilingAlgorithm {
             } else {
                 pool = new ForkJoinPool();
             }
-            pool.invoke(new TrominoTask(0, 0, boardSize, findMissingRow(), findMissingCol(), notifier, false));
+            if (stamping) {
+                pool.invoke(new StampTask(findMissingRow(), findMissingCol(), notifier));
+            } else {
+                pool.invoke(new TrominoTask(0, 0, boardSize, findMissingRow(), findMissingCol(), notifier, false));
+            }
             notifier.onTilingCompleted();
         }
     }
 
+    /**
+     * Publica les peces del tiling en blocs, generant-les a mesura que es demanen. Les peces
+     * surten en preordre (la peça central abans que els quadrants) i es numeren des de 1.
+     *
+     * @param maxDepth La profunditat màxima (no s'utilitza per a TrominoTiling).
+     * @param chunkSize El nombre màxim de peces per bloc.
+     * @param executor L'executor on es generen les peces.
+     * @return El publicador de blocs de peces.
+     */
+    @Override
+    public Flow.Publisher<GeometryChunk> stream(int maxDepth, int chunkSize, Executor executor) {
+        return new GeometryPublisher<>(this::tileIterator, GeometryChunk::ofTiles, chunkSize, executor);
+    }
+
+    /**
+     * Retorna un iterador mandrós sobre les peces del tiling, sense escriure al tauler.
+     * Només manté a memòria la pila de quadrants pendents.
+     *
+     * @return L'iterador de peces.
+     */
+    public Iterator<TilePlacement> tileIterator() {
+        return new TrominoIterator(0, 0, boardSize, missingRow, missingCol, 1);
+    }
+
+    /**
+     * Retorna un iterador mandrós sobre les peces d'un bloc de costat potència de dos situat a
+     * (row, col) d'un tauler més gran, en el mateix preordre que {@link #tileIterator()} i amb
+     * els identificadors des de firstId. No crea cap tauler.
+     *
+     * @param row La fila de la cantonada superior esquerra del bloc.
+     * @param col La columna de la cantonada superior esquerra del bloc.
+     * @param size El costat del bloc.
+     * @param missingRow La fila de la cel·la absent, en coordenades del tauler.
+     * @param missingCol La columna de la cel·la absent, en coordenades del tauler.
+     * @param firstId L'identificador de la primera peça.
+     * @return L'iterador de peces.
+     */
+    static Iterator<TilePlacement> tileIterator(int row, int col, int size, int missingRow, int missingCol, int firstId) {
+        return new TrominoIterator(row, col, size, missingRow, missingCol, firstId);
+    }
+
+    /**
+     * Retorna un tauler nou amb cada peça numerada segons l'ordre en què la col·loca l'animació:
+     * per nivells de recursió (totes les peces d'un nivell es programen amb el mateix retard) i,
+     * dins de cada nivell, en l'ordre dels quadrants superior esquerre, superior dret, inferior
+     * esquerre i inferior dret. La peça del quadrant d'índex q del nivell l té l'identificador
+     * 1 + (4^l - 1) / 3 + q, on q és l'índex de Morton del quadrant. El fotograma k de l'animació
+     * són les peces amb identificador com a molt k. Es calcula en paral·lel i no depèn dels
+     * retards de l'animació.
+     *
+     * @return El tauler amb les peces numerades en ordre d'animació.
+     */
+    public int[][] stepOrderBoard() {
+        return stepOrderBoard(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Retorna el tauler de {@link #stepOrderBoard()} calculat al pool indicat, normalment el pool
+     * de càlcul del context d'execució.
+     *
+     * @param pool El pool on es calcula el tauler.
+     * @return El tauler amb les peces numerades en ordre d'animació.
+     */
+    public int[][] stepOrderBoard(ForkJoinPool pool) {
+        int[][] steps = new int[boardSize][boardSize];
+        steps[missingRow][missingCol] = -1;
+        if (boardSize > 1) {
+            pool.invoke(new StepOrderTask(steps, 0, 0, boardSize, missingRow, missingCol, 0, 0,
+                    Long.MAX_VALUE));
+        }
+        return steps;
+    }
+
+    /**
+     * Retorna el tauler de l'animació després del pas k, amb les peces numerades com a
+     * {@link #stepOrderBoard()}: només hi ha les peces amb identificador com a molt k.
+     * <p>
+     * No reprodueix els passos anteriors. L'identificador d'una peça sempre és més petit que
+     * els de les peces dels seus quadrants, de manera que la recursió es talla al primer node
+     * amb identificador més gran que k i només visita els nodes de les peces col·locades, en
+     * paral·lel. El cost és el de crear el tauler més el nombre de peces del resultat.
+     *
+     * @param step El pas k; a partir de l'últim pas, el tauler és complet.
+     * @return Un tauler nou amb les peces col·locades fins al pas k.
+     */
+    public int[][] boardAtStep(long step) {
+        return boardAtStep(step, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Retorna el tauler de {@link #boardAtStep(long)} calculat al pool indicat, normalment el
+     * pool de càlcul del context d'execució.
+     *
+     * @param step El pas k; a partir de l'últim pas, el tauler és complet.
+     * @param pool El pool on es calcula el tauler.
+     * @return Un tauler nou amb les peces col·locades fins al pas k.
+     */
+    public int[][] boardAtStep(long step, ForkJoinPool pool) {
+        int[][] steps = new int[boardSize][boardSize];
+        steps[missingRow][missingCol] = -1;
+        if (boardSize > 1 && step >= 1) {
+            pool.invoke(new StepOrderTask(steps, 0, 0, boardSize, missingRow, missingCol, 0, 0,
+                    step));
+        }
+        return steps;
+    }
+
+    /**
+     * Mou la cel·la absent d'un tauler ja calculat i reescriu només les peces que canvien.
+     * <p>
+     * El tiling d'un bloc només depèn de la posició del seu forat. Si el forat es mou dins del
+     * mateix quadrant, només canvia aquest quadrant; si canvia de quadrant, només canvia la peça
+     * central, i el canvi es propaga als dos quadrants on eren el forat antic i el nou, mentre
+     * que els altres dos queden intactes. El nombre de peces que canvien creix com el costat del
+     * tauler, no com l'àrea: uns pocs milers en un tauler de 4096 × 4096. Les peces resultants
+     * són les mateixes que les d'un càlcul nou amb la nova cel·la absent; les peces que no
+     * canvien conserven l'identificador.
+     * <p>
+     * No s'ha de cridar mentre el càlcul encara s'executa.
+     *
+     * @param newRow La fila de la nova cel·la absent.
+     * @param newCol La columna de la nova cel·la absent.
+     * @return Les peces que han canviat, amb les cel·les que ocupen ara. La cel·la absent
+     *         antiga queda coberta per una d'aquestes peces.
+     * @throws IllegalArgumentException Si la cel·la és fora del tauler.
+     */
+    public List<TilePlacement> moveHole(int newRow, int newCol) {
+        if (newRow < 0 || newRow >= boardSize || newCol < 0 || newCol >= boardSize) {
+            throw new IllegalArgumentException("Missing cell (" + newRow + "," + newCol + ") is outside the board");
+        }
+        List<TilePlacement> changed = new ArrayList<>();
+        if (newRow == missingRow && newCol == missingCol) {
+            return changed;
+        }
+        moveHole(0, 0, boardSize, missingRow, missingCol, newRow, newCol, changed);
+        board[newRow][newCol] = -1;
+        markDirty(newRow, newCol, 1, 1);
+        missingRow = newRow;
+        missingCol = newCol;
+        return changed;
+    }
+
+    /**
+     * Canvia el forat d'un bloc de (oldR, oldC) a (newR, newC). Quan el forat canvia de
+     * quadrant, la peça central passa a cobrir la cantonada del centre del quadrant on era el
+     * forat i deixa lliure la del quadrant on va, que passen a ser els forats d'aquests dos
+     * quadrants.
+     */
+    private void moveHole(int r, int c, int size, int oldR, int oldC, int newR, int newC, List<TilePlacement> changed) {
+        while (size > 1) {
+            int half = size / 2;
+            int qo = (oldR >= r + half ? 2 : 0) + (oldC >= c + half ? 1 : 0);
+            int qn = (newR >= r + half ? 2 : 0) + (newC >= c + half ? 1 : 0);
+            if (qo != qn) {
+                int centerR = r + half - 1;
+                int centerC = c + half - 1;
+                int kept = 0;
+                while (kept == qo || kept == qn) kept++;
+                int t = board[centerR + (kept >> 1)][centerC + (kept & 1)];
+                int holeR = centerR + (qo >> 1);
+                int holeC = centerC + (qo & 1);
+                board[holeR][holeC] = t;
+                markDirty(holeR, holeC, 1, 1);
+                int[] rows = new int[3];
+                int[] cols = new int[3];
+                int n = 0;
+                for (int q = 0; q < 4; q++) {
+                    if (q == qn) continue;
+                    rows[n] = centerR + (q >> 1);
+                    cols[n++] = centerC + (q & 1);
+                }
+                changed.add(new TilePlacement(t, rows, cols));
+                moveHole(r + (qo >> 1) * half, c + (qo & 1) * half, half, oldR, oldC, holeR, holeC, changed);
+                moveHole(r + (qn >> 1) * half, c + (qn & 1) * half, half,
+                        centerR + (qn >> 1), centerC + (qn & 1), newR, newC, changed);
+                return;
+            }
+            r += (qo >> 1) * half;
+            c += (qo & 1) * half;
+            size = half;
+        }
+    }
+
     private int findMissingRow() {
         for (int i = 0; i < boardSize; i++)
             for (int j = 0; j < boardSize; j++)
@@ -70,7 +336,7 @@ public class TrominoTiling implements TilingAlgorithm {
 
     private void scheduleTiling(int r, int c, int size, int missingR, int missingC,
                                 TilingNotificar notifier, AtomicInteger activeTasks) {
-        if (!(notifier instanceof TilingController) || !((TilingController) notifier).isRunning()) {
+        if (!(notifier instanceof ExecutionContext) || !((ExecutionContext) notifier).isRunning()) {
             return;
         }
         if (size == 1) {
@@ -91,9 +357,10 @@ public class TrominoTiling implements TilingAlgorithm {
         if (!missingTR) board[centerR][centerC + 1] = t;
         if (!missingBL) board[centerR + 1][centerC] = t;
         if (!missingBR) board[centerR + 1][centerC + 1] = t;
+        markDirty(centerR, centerC, 2, 2);
         notifier.onTilingStep(t, board);
 
-        ScheduledExecutorService scheduler = ((TilingController) notifier).getAnimationExecutor();
+        ScheduledExecutorService scheduler = ((ExecutionContext) notifier).getAnimationExecutor();
         long delay = 100;
 
         activeTasks.incrementAndGet();
@@ -114,6 +381,296 @@ public class TrominoTiling implements TilingAlgorithm {
         }
     }
 
+    private static class TrominoIterator implements Iterator<TilePlacement> {
+        private final Deque<int[]> stack = new ArrayDeque<>();
+        private int nextId;
+
+        TrominoIterator(int row, int col, int size, int missingRow, int missingCol, int firstId) {
+            nextId = firstId;
+            if (size > 1) {
+                stack.push(new int[]{row, col, size, missingRow, missingCol});
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public TilePlacement next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            int[] q = stack.pop();
+            int r = q[0], c = q[1], size = q[2], missingR = q[3], missingC = q[4];
+            int half = size / 2;
+            int centerR = r + half - 1;
+            int centerC = c + half - 1;
+            boolean missingTL = (missingR < r + half && missingC < c + half);
+            boolean missingTR = (missingR < r + half && missingC >= c + half);
+            boolean missingBL = (missingR >= r + half && missingC < c + half);
+            boolean missingBR = (missingR >= r + half && missingC >= c + half);
+            int[] rows = new int[3];
+            int[] cols = new int[3];
+            int n = 0;
+            if (!missingTL) { rows[n] = centerR; cols[n++] = centerC; }
+            if (!missingTR) { rows[n] = centerR; cols[n++] = centerC + 1; }
+            if (!missingBL) { rows[n] = centerR + 1; cols[n++] = centerC; }
+            if (!missingBR) { rows[n] = centerR + 1; cols[n++] = centerC + 1; }
+            if (half > 1) {
+                stack.push(new int[]{r + half, c + half, half, missingBR ? missingR : centerR + 1, missingBR ? missingC : centerC + 1});
+                stack.push(new int[]{r + half, c, half, missingBL ? missingR : centerR + 1, missingBL ? missingC : centerC});
+                stack.push(new int[]{r, c + half, half, missingTR ? missingR : centerR, missingTR ? missingC : centerC + 1});
+                stack.push(new int[]{r, c, half, missingTL ? missingR : centerR, missingTL ? missingC : centerC});
+            }
+            return new TilePlacement(nextId++, rows, cols);
+        }
+    }
+
+    private static class StepOrderTask extends RecursiveAction {
+        private static final int SEQUENTIAL_SIZE = 64;
+        private final int[][] steps;
+        private final int r, c, size, missingR, missingC, level;
+        private final long index;
+        private final long limit;
+
+        StepOrderTask(int[][] steps, int r, int c, int size, int missingR, int missingC, int level, long index,
+                      long limit) {
+            this.steps = steps;
+            this.r = r;
+            this.c = c;
+            this.size = size;
+            this.missingR = missingR;
+            this.missingC = missingC;
+            this.level = level;
+            this.index = index;
+            this.limit = limit;
+        }
+
+        @Override
+        protected void compute() {
+            if (stepId(level, index) > limit) {
+                return;
+            }
+            if (size <= SEQUENTIAL_SIZE) {
+                fill(r, c, size, missingR, missingC, level, index);
+                return;
+            }
+            int half = size / 2;
+            int[] child = place(r, c, size, missingR, missingC, level, index);
+            invokeAll(
+                    new StepOrderTask(steps, r, c, half, child[0], child[1], level + 1, index * 4, limit),
+                    new StepOrderTask(steps, r, c + half, half, child[2], child[3], level + 1, index * 4 + 1, limit),
+                    new StepOrderTask(steps, r + half, c, half, child[4], child[5], level + 1, index * 4 + 2, limit),
+                    new StepOrderTask(steps, r + half, c + half, half, child[6], child[7], level + 1, index * 4 + 3, limit)
+            );
+        }
+
+        private void fill(int r, int c, int size, int missingR, int missingC, int level, long index) {
+            if (size == 1 || stepId(level, index) > limit) return;
+            int half = size / 2;
+            int[] child = place(r, c, size, missingR, missingC, level, index);
+            fill(r, c, half, child[0], child[1], level + 1, index * 4);
+            fill(r, c + half, half, child[2], child[3], level + 1, index * 4 + 1);
+            fill(r + half, c, half, child[4], child[5], level + 1, index * 4 + 2);
+            fill(r + half, c + half, half, child[6], child[7], level + 1, index * 4 + 3);
+        }
+
+        /**
+         * Retorna el pas de la peça central del quadrant d'índex de Morton index del nivell level.
+         */
+        private static long stepId(int level, long index) {
+            return 1 + ((1L << (2 * level)) - 1) / 3 + index;
+        }
+
+        /**
+         * Col·loca la peça central d'un quadrant i retorna la cel·la que falta a cada subquadrant.
+         */
+        private int[] place(int r, int c, int size, int missingR, int missingC, int level, long index) {
+            int half = size / 2;
+            int centerR = r + half - 1;
+            int centerC = c + half - 1;
+            boolean missingTL = (missingR < r + half && missingC < c + half);
+            boolean missingTR = (missingR < r + half && missingC >= c + half);
+            boolean missingBL = (missingR >= r + half && missingC < c + half);
+            boolean missingBR = (missingR >= r + half && missingC >= c + half);
+            int t = (int) stepId(level, index);
+            if (!missingTL) steps[centerR][centerC] = t;
+            if (!missingTR) steps[centerR][centerC + 1] = t;
+            if (!missingBL) steps[centerR + 1][centerC] = t;
+            if (!missingBR) steps[centerR + 1][centerC + 1] = t;
+            return new int[]{
+                    missingTL ? missingR : centerR, missingTL ? missingC : centerC,
+                    missingTR ? missingR : centerR, missingTR ? missingC : centerC + 1,
+                    missingBL ? missingR : centerR + 1, missingBL ? missingC : centerC,
+                    missingBR ? missingR : centerR + 1, missingBR ? missingC : centerC + 1
+            };
+        }
+    }
+
+    /**
+     * Calcula el tiling copiant blocs en lloc de recórrer-los.
+     * <p>
+     * En cada pas de la recursió, tres dels quatre quadrants tenen el forat a la cantonada del
+     * centre, i el tiling d'un bloc amb el forat a una cantonada només depèn de la cantonada.
+     * Per això només es baixa pel camí fins al forat real, i els blocs de cantonada es
+     * reparteixen en paral·lel fins a blocs de costat TEMPLATE_SIZE, que es copien d'una de les
+     * quatre plantilles precalculades sumant un desplaçament als identificadors, de manera que
+     * gairebé tota la feina és copiar memòria.
+     * <p>
+     * Les peces es numeren en preordre, com les de {@link #tileIterator()}: la peça central d'un
+     * bloc i després els quadrants superior esquerre, superior dret, inferior esquerre i inferior
+     * dret. Cada bloc té un rang d'identificadors consecutius que es coneix sense recórrer-lo, i
+     * les cel·les veïnes tenen identificadors propers, cosa que manté compactes els fitxers de
+     * tauler.
+     */
+    private class StampTask extends RecursiveAction {
+        private final int missingR, missingC;
+        private final TilingNotificar notifier;
+
+        StampTask(int missingR, int missingC, TilingNotificar notifier) {
+            this.missingR = missingR;
+            this.missingC = missingC;
+            this.notifier = notifier;
+        }
+
+        @Override
+        protected void compute() {
+            int r = 0, c = 0, base = 1, placed = 0;
+            for (int size = boardSize; size > 1; size /= 2) {
+                if (notifier instanceof ExecutionContext && !((ExecutionContext) notifier).isRunning()) return;
+                int half = size / 2;
+                int hole = (missingR >= r + half ? 2 : 0) + (missingC >= c + half ? 1 : 0);
+                int tiles = cornerTiles(half);
+                placeCenter(board, r, c, half, hole, base);
+                List<CornerTask> corners = new ArrayList<>(3);
+                for (int q = 0; q < 4; q++) {
+                    if (q == hole) continue;
+                    corners.add(new CornerTask(r + (q >> 1) * half, c + (q & 1) * half, half, 3 - q,
+                            base + 1 + q * tiles, notifier));
+                }
+                invokeAll(corners);
+                for (CornerTask corner : corners) {
+                    markDirty(corner.r, corner.c, half, half);
+                }
+                placed += 1 + 3 * tiles;
+                notifier.onTilingStep(placed, board);
+                r += (hole >> 1) * half;
+                c += (hole & 1) * half;
+                base += 1 + hole * tiles;
+            }
+            tileId.set(cornerTiles(boardSize) + 1);
+        }
+    }
+
+    /**
+     * Omple un bloc amb el forat a la cantonada indicada (0 superior esquerra, 1 superior dreta,
+     * 2 inferior esquerra, 3 inferior dreta) amb els identificadors en preordre des de base. Els
+     * blocs grans es reparteixen per quadrants en paral·lel, i els de costat TEMPLATE_SIZE es
+     * copien de la plantilla.
+     */
+    private class CornerTask extends RecursiveAction {
+        private final int r, c, size, corner, base;
+        private final TilingNotificar notifier;
+
+        CornerTask(int r, int c, int size, int corner, int base, TilingNotificar notifier) {
+            this.r = r;
+            this.c = c;
+            this.size = size;
+            this.corner = corner;
+            this.base = base;
+            this.notifier = notifier;
+        }
+
+        @Override
+        protected void compute() {
+            if (size == TEMPLATE_SIZE) {
+                stampTemplate(board, r, c, corner, base);
+                return;
+            }
+            if (size < TEMPLATE_SIZE) {
+                fillCorner(board, r, c, size, corner, base);
+                return;
+            }
+            if (notifier instanceof ExecutionContext && !((ExecutionContext) notifier).isRunning()) return;
+            int half = size / 2;
+            int tiles = cornerTiles(half);
+            placeCenter(board, r, c, half, corner, base);
+            invokeAll(
+                    new CornerTask(r, c, half, corner == 0 ? 0 : 3, base + 1, notifier),
+                    new CornerTask(r, c + half, half, corner == 1 ? 1 : 2, base + 1 + tiles, notifier),
+                    new CornerTask(r + half, c, half, corner == 2 ? 2 : 1, base + 1 + 2 * tiles, notifier),
+                    new CornerTask(r + half, c + half, half, corner == 3 ? 3 : 0, base + 1 + 3 * tiles, notifier)
+            );
+        }
+    }
+
+    /**
+     * Omple seqüencialment un bloc amb el forat a la cantonada indicada, amb els identificadors
+     * en preordre des de base. El quadrant del forat té el forat a la mateixa cantonada, i els
+     * altres tres, a la cantonada del centre.
+     */
+    private static void fillCorner(int[][] board, int r, int c, int size, int corner, int base) {
+        if (size == 1) return;
+        int half = size / 2;
+        int tiles = cornerTiles(half);
+        placeCenter(board, r, c, half, corner, base);
+        for (int q = 0; q < 4; q++) {
+            fillCorner(board, r + (q >> 1) * half, c + (q & 1) * half, half, q == corner ? corner : 3 - q,
+                    base + 1 + q * tiles);
+        }
+    }
+
+    /**
+     * Copia la plantilla de la cantonada indicada a la posició (r, c), amb els identificadors
+     * des de base. La cel·la del forat no es toca.
+     */
+    private static void stampTemplate(int[][] board, int r, int c, int corner, int base) {
+        int[][] template = CORNER_TEMPLATES[corner];
+        int delta = base - 1;
+        for (int i = 0; i < TEMPLATE_SIZE; i++) {
+            int[] src = template[i];
+            int[] dst = board[r + i];
+            for (int j = 0; j < TEMPLATE_SIZE; j++) {
+                if (src[j] != 0) dst[c + j] = src[j] + delta;
+            }
+        }
+    }
+
+    /**
+     * Calcula les plantilles dels blocs de costat TEMPLATE_SIZE amb el forat a cadascuna de les
+     * quatre cantonades, numerades des de 1 i amb el forat a 0.
+     */
+    private static int[][][] cornerTemplates() {
+        int[][][] templates = new int[4][][];
+        for (int corner = 0; corner < 4; corner++) {
+            templates[corner] = new int[TEMPLATE_SIZE][TEMPLATE_SIZE];
+            fillCorner(templates[corner], 0, 0, TEMPLATE_SIZE, corner, 1);
+        }
+        return templates;
+    }
+
+    /**
+     * Retorna el nombre de peces d'un bloc de costat size amb una cel·la buida.
+     */
+    private static int cornerTiles(int size) {
+        return (int) (((long) size * size - 1) / 3);
+    }
+
+    /**
+     * Col·loca la peça central d'un bloc de costat 2 * half, a les tres cel·les del centre que
+     * no són al quadrant hole.
+     */
+    private static void placeCenter(int[][] board, int r, int c, int half, int hole, int t) {
+        int centerR = r + half - 1;
+        int centerC = c + half - 1;
+        if (hole != 0) board[centerR][centerC] = t;
+        if (hole != 1) board[centerR][centerC + 1] = t;
+        if (hole != 2) board[centerR + 1][centerC] = t;
+        if (hole != 3) board[centerR + 1][centerC + 1] = t;
+    }
+
     private class TrominoTask extends RecursiveAction {
         private int r, c, size, missingR, missingC;
         private TilingNotificar notifier;
@@ -133,6 +690,7 @@ public class TrominoTiling implements TilingAlgorithm {
         @Override
         protected void compute() {
             if (size == 1) return;
+            if (notifier instanceof ExecutionContext && !((ExecutionContext) notifier).isRunning()) return;
             int half = size / 2;
             int centerR = r + half - 1;
             int centerC = c + half - 1;
@@ -145,6 +703,7 @@ public class TrominoTiling implements TilingAlgorithm {
             if (!missingTR) board[centerR][centerC + 1] = t;
             if (!missingBL) board[centerR + 1][centerC] = t;
             if (!missingBR) board[centerR + 1][centerC + 1] = t;
+            markDirty(centerR, centerC, 2, 2);
             notifier.onTilingStep(t, board);
             if (animate) {
                 new TrominoTask(r, c, half, missingTL ? missingR : centerR, missingTL ? missingC : centerC, notifier, true).compute();
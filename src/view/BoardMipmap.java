@@ -0,0 +1,155 @@
+package view;
+
+import java.util.stream.IntStream;
+
+/**
+ * Piràmide de resolucions d'un tauler per dibuixar-lo quan té més cel·les que píxels.
+ * <p>
+ * El nivell 0 és el tauler original; cada nivell següent té la meitat de files i columnes, i
+ * cada cel·la guarda la peça dominant del bloc de 2x2 cel·les que cobreix al nivell anterior.
+ * Els nivells es construeixen de baix a dalt, amb les files de cada nivell en paral·lel, i es
+ * poden actualitzar només a les regions que han canviat.
+ */
+public class BoardMipmap {
+    private final int[][][] levels;
+
+    /**
+     * Construeix la piràmide sencera d'un tauler.
+     *
+     * @param board El tauler amb els identificadors de peça.
+     */
+    public BoardMipmap(int[][] board) {
+        int rows = board.length;
+        int cols = board[0].length;
+        int count = 1;
+        while ((rows >> (count - 1)) > 1 || (cols >> (count - 1)) > 1) {
+            count++;
+        }
+        levels = new int[count][][];
+        levels[0] = board;
+        for (int k = 1; k < count; k++) {
+            int[][] prev = levels[k - 1];
+            int lr = (prev.length + 1) / 2;
+            int lc = (prev[0].length + 1) / 2;
+            levels[k] = new int[lr][lc];
+            downsample(k, 0, 0, lr, lc);
+        }
+    }
+
+    /**
+     * Retorna el nombre de nivells de la piràmide.
+     *
+     * @return El nombre de nivells, inclòs el tauler original.
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Retorna un nivell de la piràmide.
+     *
+     * @param k El nivell, de 0 (tauler original) a getLevelCount() - 1.
+     * @return Les cel·les del nivell.
+     */
+    public int[][] getLevel(int k) {
+        return levels[k];
+    }
+
+    /**
+     * Indica si la piràmide correspon a un tauler amb aquestes dimensions.
+     *
+     * @param board El tauler.
+     * @return Cert si les dimensions coincideixen.
+     */
+    public boolean matches(int[][] board) {
+        return board.length == levels[0].length && board[0].length == levels[0][0].length;
+    }
+
+    /**
+     * Retorna el nivell més fi que cap en una àrea de dibuix, amb almenys un píxel per cel·la.
+     *
+     * @param width L'amplada de l'àrea en píxels.
+     * @param height L'alçada de l'àrea en píxels.
+     * @return El nivell adequat.
+     */
+    public int levelFor(int width, int height) {
+        int k = 0;
+        while (k < levels.length - 1 && (levels[k][0].length > width || levels[k].length > height)) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Actualitza la piràmide després que canviï una regió del tauler.
+     *
+     * @param board El tauler amb el contingut nou, de les mateixes dimensions.
+     * @param r0 La primera fila canviada (inclosa).
+     * @param c0 La primera columna canviada (inclosa).
+     * @param r1 L'última fila canviada (exclosa).
+     * @param c1 L'última columna canviada (exclosa).
+     */
+    public void update(int[][] board, int r0, int c0, int r1, int c1) {
+        levels[0] = board;
+        for (int k = 1; k < levels.length; k++) {
+            r0 >>= 1;
+            c0 >>= 1;
+            r1 = (r1 + 1) >> 1;
+            c1 = (c1 + 1) >> 1;
+            downsample(k, r0, c0, r1, c1);
+        }
+    }
+
+    /**
+     * Recalcula les cel·les [r0, r1) x [c0, c1) del nivell k a partir del nivell k - 1.
+     */
+    private void downsample(int k, int r0, int c0, int r1, int c1) {
+        int[][] src = levels[k - 1];
+        int[][] dst = levels[k];
+        IntStream rowsToDo = IntStream.range(r0, r1);
+        if ((long) (r1 - r0) * (c1 - c0) > 4096) {
+            rowsToDo = rowsToDo.parallel();
+        }
+        rowsToDo.forEach(r -> {
+            int[] top = src[2 * r];
+            int[] bottom = 2 * r + 1 < src.length ? src[2 * r + 1] : top;
+            int[] out = dst[r];
+            for (int c = c0; c < c1; c++) {
+                int c2 = Math.min(2 * c + 1, top.length - 1);
+                out[c] = dominant(top[2 * c], top[c2], bottom[2 * c], bottom[c2]);
+            }
+        });
+    }
+
+    /**
+     * Retorna la peça dominant d'un bloc de 2x2: la més repetida entre les cel·les cobertes, la
+     * cel·la que falta si el bloc no té cap peça, o 0 si està buit.
+     */
+    private static int dominant(int a, int b, int c, int d) {
+        int best = 0, bestCount = 0;
+        if (a > 0) {
+            best = a;
+            bestCount = 1 + (b == a ? 1 : 0) + (c == a ? 1 : 0) + (d == a ? 1 : 0);
+        }
+        if (b > 0 && b != a) {
+            int count = 1 + (c == b ? 1 : 0) + (d == b ? 1 : 0);
+            if (count > bestCount) {
+                best = b;
+                bestCount = count;
+            }
+        }
+        if (c > 0 && c != a && c != b) {
+            int count = 1 + (d == c ? 1 : 0);
+            if (count > bestCount) {
+                best = c;
+                bestCount = count;
+            }
+        }
+        if (d > 0 && bestCount == 0) {
+            best = d;
+            bestCount = 1;
+        }
+        if (bestCount > 0) return best;
+        return (a == -1 || b == -1 || c == -1 || d == -1) ? -1 : 0;
+    }
+}
@@ -1,31 +1,78 @@
 package view;
 
+import model.BoardSnapshotPublisher;
+
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.Point2D;
-import java.util.HashMap;
+import java.awt.image.BufferedImage;
 import java.util.List;
-import java.util.Map;
 
 
+/**
+ * Panell que mostra un tauler de peces o una corba fractal.
+ * <p>
+ * El dibuix no es fa a l'EDT: els mètodes públics només actualitzen l'escena i demanen un
+ * fotograma a un {@link FrameRenderer}, que el compon en un fil propi com a molt MAX_FPS cops
+ * per segon. L'EDT només copia l'últim fotograma complet, de manera que la interfície respon
+ * encara que un fotograma trigui a dibuixar-se.
+ */
 @SuppressWarnings("serial")
 public class BoardPanel extends JPanel {
+    private static final int MAX_FPS = 60;
 
-
-
-    private int[][] board;
-
-
-
+    /*
+     * Escena: l'escriu l'EDT i la llegeix el fil de dibuix al començament de cada fotograma,
+     * sempre amb el bloqueig de l'escena.
+     */
+    private final Object scene = new Object();
+    private int[][] sceneBoard;
+    private BoardSnapshotPublisher snapshots;
+    private boolean boardReplaced = true;
+    private boolean colorsChanged = false;
     private List<Point2D.Double> curvePoints;
     private boolean invertCurveY;
+    private boolean curveReset = false;
+    private boolean curveExact = true;
+    private boolean tilesStale = false;
+
+
+    private volatile boolean colorEnabled = true;
 
 
-    private boolean colorEnabled = true;
+    private final TilePalette palette = new TilePalette();
+    private volatile boolean mapColoring = false;
+    private byte[] cellColors;
+    private int cellColorsCols;
 
 
-    private final Map<Integer, Color> tileColors = new HashMap<>();
+    /*
+     * Estat del fil de dibuix. Només el toquen el fil de dibuix i, en el cas del tauler i de la
+     * piràmide, els fils de les rajoles. L'EDT llegeix el tauler i la mida de les cel·les per
+     * situar el ratolí.
+     */
+    private volatile int[][] board;
+    private BoardSnapshotPublisher readSnapshots;
+    private final BoardRasterizer rasterizer = new BoardRasterizer();
+    private BufferedImage boardImage;
+    private boolean boardImageDirty = true;
+    private volatile int boardCellW = -1;
+    private volatile int boardCellH = -1;
+    private volatile int boardLevel = 0;
+    private volatile BoardMipmap mipmap;
+    private final CurveRenderer curveRenderer = new CurveRenderer();
+    private BufferedImage curveImage;
+    private volatile double curveWorldW, curveWorldH;
+
+
+    private static final int MIN_ZOOM = -16;
+    private static final int MAX_ZOOM = 24;
+    private final TileCache tileCache = new TileCache(512, this::requestFrame);
+    private boolean viewportEnabled = false;
+    private int zoom;
+    private double panX, panY;
+    private Point dragStart;
 
 
     private boolean gridEnabled = false;
@@ -34,9 +81,21 @@ public class BoardPanel extends JPanel {
     private boolean selectMode = false;
     private MissingTileListener missingTileListener;
 
+    private final FrameRenderer frames = new FrameRenderer("board-renderer", MAX_FPS, this::composeFrame, this::repaint);
+
 
     public interface MissingTileListener {
         void onMissingTileSelected(int row, int col);
+
+        /**
+         * Notifica que el ratolí s'arrossega sobre una cel·la en mode de selecció. Per defecte
+         * no fa res.
+         *
+         * @param row La fila de la cel·la.
+         * @param col La columna de la cel·la.
+         */
+        default void onMissingTileDragged(int row, int col) {
+        }
     }
 
     /**
@@ -50,52 +109,145 @@ public class BoardPanel extends JPanel {
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (selectMode && board != null) {
+                if (!selectMode && viewportEnabled && e.getClickCount() == 2) {
+                    synchronized (scene) {
+                        viewportEnabled = false;
+                    }
+                    requestFrame();
+                    return;
+                }
+                int[][] shown = board;
+                if (selectMode && shown != null) {
                     int row = highlightRow;
                     int col = highlightCol;
-                    if (row >= 0 && col >= 0 && row < board.length && col < board[0].length) {
+                    if (row >= 0 && col >= 0 && row < shown.length && col < shown[0].length) {
                         if (missingTileListener != null) {
                             missingTileListener.onMissingTileSelected(row, col);
                         }
-                        selectMode = false;
-                        repaint();
+                        synchronized (scene) {
+                            selectMode = false;
+                        }
+                        requestFrame();
                     }
                 }
             }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragStart = e.getPoint();
+            }
+        });
+
+        addMouseWheelListener(e -> {
+            if (selectMode || (board == null && curvePoints == null)) {
+                return;
+            }
+            if (!viewportEnabled) {
+                enterViewport();
+            }
+            zoomAt(e.getX(), e.getY(), e.getWheelRotation() < 0 ? 1 : -1);
         });
 
         addMouseMotionListener(new MouseMotionAdapter() {
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                int[][] shown = board;
+                if (selectMode && shown != null) {
+                    int[] cell = cellAt(shown, e.getX(), e.getY());
+                    if (cell != null && (cell[0] != highlightRow || cell[1] != highlightCol)) {
+                        synchronized (scene) {
+                            highlightRow = cell[0];
+                            highlightCol = cell[1];
+                        }
+                        if (missingTileListener != null) {
+                            missingTileListener.onMissingTileDragged(cell[0], cell[1]);
+                        }
+                        requestFrame();
+                    }
+                    return;
+                }
+                if (viewportEnabled && dragStart != null) {
+                    synchronized (scene) {
+                        panX -= e.getX() - dragStart.x;
+                        panY -= e.getY() - dragStart.y;
+                    }
+                    dragStart = e.getPoint();
+                    requestFrame();
+                }
+            }
+
             @Override
             public void mouseMoved(MouseEvent e) {
-                if (selectMode && board != null) {
-                    int rows = board.length;
-                    int cols = board[0].length;
-                    int cellW = getWidth() / cols;
-                    int cellH = getHeight() / rows;
-
-                    int newRow = e.getY() / cellH;
-                    int newCol = e.getX() / cellW;
-
-                    if (newRow >= 0 && newRow < rows && newCol >= 0 && newCol < cols &&
-                            (newRow != highlightRow || newCol != highlightCol)) {
-                        highlightRow = newRow;
-                        highlightCol = newCol;
-                        repaint();
+                int[][] shown = board;
+                if (selectMode && shown != null) {
+                    int[] cell = cellAt(shown, e.getX(), e.getY());
+                    if (cell != null && (cell[0] != highlightRow || cell[1] != highlightCol)) {
+                        synchronized (scene) {
+                            highlightRow = cell[0];
+                            highlightCol = cell[1];
+                        }
+                        requestFrame();
                     }
                 }
             }
         });
     }
 
+    /**
+     * Retorna la cel·la del tauler sota un punt del panell, segons l'escala i el nivell de
+     * resolució de l'últim fotograma, de manera que també és correcta quan el tauler té més
+     * cel·les que píxels el panell.
+     *
+     * @param shown El tauler mostrat.
+     * @param x La coordenada horitzontal.
+     * @param y La coordenada vertical.
+     * @return La fila i la columna, o null si el punt és fora del tauler.
+     */
+    private int[] cellAt(int[][] shown, int x, int y) {
+        int rows = shown.length;
+        int cols = shown[0].length;
+        int level = boardLevel;
+        int cellW = boardCellW > 0 ? boardCellW : Math.max(1, getWidth() / cols);
+        int cellH = boardCellH > 0 ? boardCellH : Math.max(1, getHeight() / rows);
+        int row = (int) (((long) y << level) / cellH);
+        int col = (int) (((long) x << level) / cellW);
+        if (x < 0 || y < 0 || row >= rows || col >= cols) {
+            return null;
+        }
+        return new int[]{row, col};
+    }
+
     /**
      * Estableix o reemplaça l'array de tauler 2D per a l'emplenat de tessel·les basat en graella.
      * @param board L'array de tauler 2D amb identificadors de cel·les.
      */
     public void setBoard(int[][] board) {
-        this.board = board;
+        synchronized (scene) {
+            this.sceneBoard = board;
+            this.snapshots = null;
+            this.boardReplaced = true;
+            this.curvePoints = null;
+        }
+        requestFrame();
+    }
 
-        this.curvePoints = null;
-        repaint();
+    /**
+     * Mostra el tauler d'un publicador d'instantànies. El fil de dibuix passa a ser l'únic
+     * lector del publicador: a cada fotograma publica els blocs bruts, n'adquireix l'última
+     * instantània i només redibuixa els blocs que han canviat des de l'anterior.
+     *
+     * @param snapshots El publicador d'instantànies del tauler.
+     */
+    public void showSnapshots(BoardSnapshotPublisher snapshots) {
+        synchronized (scene) {
+            if (this.snapshots != snapshots) {
+                this.snapshots = snapshots;
+                this.sceneBoard = null;
+                this.boardReplaced = true;
+            }
+            this.curvePoints = null;
+        }
+        requestFrame();
     }
 
     /**
@@ -105,66 +257,207 @@ public class BoardPanel extends JPanel {
      * @param listener L'objecte que notificarà la selecció de la peça.
      */
     public void setSelectMode(boolean enabled, MissingTileListener listener) {
-        this.selectMode = enabled;
+        synchronized (scene) {
+            this.selectMode = enabled;
+            if (enabled) {
+                this.viewportEnabled = false;
+            }
+            this.gridEnabled = enabled;
+            this.highlightRow = -1;
+            this.highlightCol = -1;
+        }
         this.missingTileListener = listener;
-        this.gridEnabled = enabled;
-        this.highlightRow = -1;
-        this.highlightCol = -1;
         setCursor(enabled ? new Cursor(Cursor.HAND_CURSOR) : new Cursor(Cursor.DEFAULT_CURSOR));
-        repaint();
+        requestFrame();
     }
 
     /**
-     * Pinta el contingut del panell, incloent el tauler, la corba o la selecció.
+     * Copia l'últim fotograma compost pel fil de dibuix. Si encara no n'hi ha cap de la mida
+     * del panell, en demana un de nou.
      *
      * @param g L'objecte Graphics per dibuixar.
      */
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        if (curvePoints != null && !curvePoints.isEmpty()) {
-            drawCurve((Graphics2D) g);
-            return;
+        BufferedImage frame = frames.acquire();
+        if (frame != null) {
+            g.drawImage(frame, 0, 0, null);
         }
-        if (board != null) {
-            drawTiledBoard(g);
+        if (frame == null || frame.getWidth() != Math.max(1, getWidth()) || frame.getHeight() != Math.max(1, getHeight())) {
+            requestFrame();
+        }
+    }
+
+    /**
+     * Retorna el fil de dibuix del panell, per consultar-ne les estadístiques.
+     *
+     * @return El fil de dibuix.
+     */
+    public FrameRenderer getFrameRenderer() {
+        return frames;
+    }
 
+    /**
+     * Demana un fotograma nou de la mida actual del panell.
+     */
+    private void requestFrame() {
+        frames.requestFrame(getWidth(), getHeight());
+    }
+
+    /**
+     * Compon un fotograma amb el contingut del panell, incloent el tauler, la corba o la
+     * selecció. S'executa al fil de dibuix.
+     *
+     * @param frame La imatge del fotograma.
+     */
+    private void composeFrame(BufferedImage frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int[][] next;
+        BoardSnapshotPublisher source;
+        boolean replaced, recolor, resetCurve, exact, invertY, tiles, viewport, grid, select;
+        List<Point2D.Double> points;
+        int z, row, col;
+        double px, py;
+        synchronized (scene) {
+            next = sceneBoard;
+            source = snapshots;
+            replaced = boardReplaced;
+            recolor = colorsChanged;
+            points = curvePoints;
+            invertY = invertCurveY;
+            resetCurve = curveReset;
+            exact = curveExact;
+            tiles = tilesStale;
+            viewport = viewportEnabled;
+            z = zoom;
+            px = panX;
+            py = panY;
+            grid = gridEnabled;
+            select = selectMode;
+            row = highlightRow;
+            col = highlightCol;
+            boardReplaced = false;
+            colorsChanged = false;
+            curveReset = false;
+            tilesStale = false;
+        }
+
+        long[] changedBlocks = null;
+        if (points != null) {
+            next = null;
+        } else if (source != null) {
+            source.tryPublish();
+            long[] changed = source.drainChangedBlocks();
+            next = source.acquire().getCells();
+            if (source != readSnapshots) {
+                replaced = true;
+            } else if (!replaced) {
+                changedBlocks = changed;
+            }
+        }
+        readSnapshots = points == null ? source : null;
+        int[][] previous = board;
+        board = next;
+        if (replaced || next == null) {
+            boardImageDirty = true;
+            mipmap = null;
+            if (viewport && next != null) {
+                if (previous != null && previous.length == next.length && previous[0].length == next[0].length) {
+                    tiles = true;
+                } else {
+                    viewport = exitViewport();
+                }
+            }
+        }
+        if (recolor) {
+            boardImageDirty = true;
+        }
+        if (resetCurve) {
+            curveRenderer.reset(points, invertY, exact);
+            curveImage = null;
+        } else if (points != null) {
+            curveRenderer.setExact(exact);
+        }
 
-            if (gridEnabled) {
-                drawGrid(g);
+        Graphics2D g = frame.createGraphics();
+        try {
+            g.setColor(getBackground());
+            g.fillRect(0, 0, width, height);
+            if (viewport) {
+                if (next != null && changedBlocks != null) {
+                    invalidateBlockTiles(next, changedBlocks, source.getBlockCols(), BoardSnapshotPublisher.BLOCK_SHIFT);
+                }
+                boardImageDirty = true;
+                drawViewport(g, next, points, tiles, z, px, py, width, height);
+                return;
+            }
+            if (points != null && !points.isEmpty()) {
+                drawCurve(g, width, height);
+                return;
             }
+            if (next != null) {
+                drawTiledBoard(g, next, width, height, changedBlocks,
+                        source == null ? 0 : source.getBlockCols(), BoardSnapshotPublisher.BLOCK_SHIFT);
+
+
+                if (grid) {
+                    drawGrid(g, next, width, height);
+                }
 
 
-            if (selectMode && highlightRow >= 0 && highlightCol >= 0 &&
-                    highlightRow < board.length && highlightCol < board[0].length) {
-                drawHighlight(g);
+                if (select && row >= 0 && col >= 0 &&
+                        row < next.length && col < next[0].length) {
+                    drawHighlight(g, next, row, col, width, height);
+                }
             }
+        } finally {
+            g.dispose();
         }
     }
 
+    /**
+     * Surt de la vista de rajoles des del fil de dibuix.
+     *
+     * @return Fals, el nou estat de la vista de rajoles.
+     */
+    private boolean exitViewport() {
+        synchronized (scene) {
+            viewportEnabled = false;
+        }
+        return false;
+    }
+
     /**
      * Dibuixa les línies de la graella per ajudar en la selecció.
      *
      * @param g L'objecte Graphics per dibuixar.
+     * @param board El tauler.
+     * @param width L'amplada del fotograma.
+     * @param height L'alçada del fotograma.
      */
-    private void drawGrid(Graphics g) {
+    private void drawGrid(Graphics g, int[][] board, int width, int height) {
         int rows = board.length;
         int cols = board[0].length;
-        int cellW = getWidth() / cols;
-        int cellH = getHeight() / rows;
+        int cellW = width / cols;
+        int cellH = height / rows;
+        if (cellW < 4 || cellH < 4) {
+            return;
+        }
 
         g.setColor(new Color(200, 200, 200, 150));
 
 
         for (int j = 1; j < cols; j++) {
             int x = j * cellW;
-            g.drawLine(x, 0, x, getHeight());
+            g.drawLine(x, 0, x, height);
         }
 
 
         for (int i = 1; i < rows; i++) {
             int y = i * cellH;
-            g.drawLine(0, y, getWidth(), y);
+            g.drawLine(0, y, width, y);
         }
     }
 
@@ -172,15 +465,23 @@ public class BoardPanel extends JPanel {
      * Dibuixa una cel·la destacada per indicar la selecció actual.
      *
      * @param g L'objecte Graphics per dibuixar.
+     * @param board El tauler.
+     * @param row La fila destacada.
+     * @param col La columna destacada.
+     * @param width L'amplada del fotograma.
+     * @param height L'alçada del fotograma.
      */
-    private void drawHighlight(Graphics g) {
+    private void drawHighlight(Graphics g, int[][] board, int row, int col, int width, int height) {
         int rows = board.length;
         int cols = board[0].length;
-        int cellW = getWidth() / cols;
-        int cellH = getHeight() / rows;
+        int level = boardLevel;
+        int cellW = boardCellW > 0 ? boardCellW : Math.max(1, width / cols);
+        int cellH = boardCellH > 0 ? boardCellH : Math.max(1, height / rows);
 
-        int x = highlightCol * cellW;
-        int y = highlightRow * cellH;
+        int x = (col >> level) * cellW;
+        int y = (row >> level) * cellH;
+        cellW = Math.max(3, cellW);
+        cellH = Math.max(3, cellH);
 
 
         g.setColor(new Color(100, 100, 255, 100));
@@ -198,13 +499,42 @@ public class BoardPanel extends JPanel {
      * @param invertY Indica si s'ha d'invertir l'eix Y.
      */
     public void setCurvePoints(List<Point2D.Double> points, boolean invertY) {
-        this.curvePoints = points;
-        this.invertCurveY = invertY;
+        synchronized (scene) {
+            if (board != null || sceneBoard != null || snapshots != null) {
+                this.viewportEnabled = false;
+            }
+            this.tilesStale = true;
+            this.curvePoints = points;
+            this.invertCurveY = invertY;
+            this.curveReset = true;
+            this.curveExact = true;
+
+            this.sceneBoard = null;
+            this.snapshots = null;
+            this.boardReplaced = true;
+            this.selectMode = false;
+            this.gridEnabled = false;
+        }
+        requestFrame();
+    }
 
-        this.board = null;
-        this.selectMode = false;
-        this.gridEnabled = false;
-        repaint();
+    /**
+     * Mostra una corba que encara creix. Si la llista és la mateixa que ja es mostra, només es
+     * dibuixen els segments afegits des del darrer fotograma; l'escala només es recalcula quan
+     * un punt nou queda fora dels límits actuals, que llavors s'amplien amb marge.
+     *
+     * @param points La llista de punts de la corba, que només creix pel final.
+     * @param invertY Indica si s'ha d'invertir l'eix Y.
+     */
+    public void appendCurvePoints(List<Point2D.Double> points, boolean invertY) {
+        if (points != curvePoints || invertY != invertCurveY || sceneBoard != null || snapshots != null) {
+            setCurvePoints(points, invertY);
+        }
+        synchronized (scene) {
+            curveExact = false;
+            tilesStale = true;
+        }
+        requestFrame();
     }
 
     /**
@@ -213,201 +543,326 @@ public class BoardPanel extends JPanel {
      * @param enabled Cert per activar el mode de colors.
      */
     public void setColorMode(boolean enabled) {
-        this.colorEnabled = enabled;
-        repaint();
+        synchronized (scene) {
+            this.colorEnabled = enabled;
+            this.colorsChanged = true;
+        }
+        tileCache.invalidate();
+        requestFrame();
+    }
+
+    /**
+     * Activa o desactiva la coloració de mapa, en què les peces veïnes sempre tenen colors diferents.
+     *
+     * @param enabled Cert per activar la coloració de mapa.
+     */
+    public void setMapColoring(boolean enabled) {
+        synchronized (scene) {
+            this.mapColoring = enabled;
+            this.colorsChanged = true;
+        }
+        tileCache.invalidate();
+        requestFrame();
     }
 
     /**
-     * Neteja el mapa de colors per assignar nous colors als identificadors dels tiles.
+     * Descarta la coloració calculada perquè es torni a calcular amb el pròxim tauler.
+     * Els colors per identificador són deterministes i no canvien.
      */
     public void resetColorMapping() {
-        tileColors.clear();
+        synchronized (scene) {
+            colorsChanged = true;
+        }
     }
 
     /**
-     * Genera un color aleatori brillant per omplir els tiles.
-     *
-     * @return Un color aleatori.
+     * Passa de la vista ajustada a la vista de rajoles, amb el zoom més proper que hi encaixa
+     * el contingut sencer i el contingut centrat.
      */
-    private Color generateRandomColor() {
-        float hue = (float) Math.random();
-        float saturation = 0.6f + (float) Math.random() * 0.4f;
-        float brightness = 0.8f + (float) Math.random() * 0.2f;
-        return Color.getHSBColor(hue, saturation, brightness);
+    private void enterViewport() {
+        double worldW = worldWidth(board), worldH = worldHeight(board);
+        double fit = Math.min(getWidth() / worldW, getHeight() / worldH);
+        synchronized (scene) {
+            zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, (int) Math.floor(Math.log(fit) / Math.log(2))));
+            double scale = Math.scalb(1.0, zoom);
+            panX = (worldW * scale - getWidth()) / 2;
+            panY = (worldH * scale - getHeight()) / 2;
+            tilesStale = true;
+            viewportEnabled = true;
+        }
     }
 
     /**
-     * Dibuixa la corba fractal com una polilínia, gestionant interrupcions en la seqüència.
+     * Canvia el nivell de zoom mantenint fix el punt del món que hi ha sota el cursor.
      *
-     * @param g2 L'objecte Graphics2D per dibuixar.
+     * @param mx La coordenada X del cursor.
+     * @param my La coordenada Y del cursor.
+     * @param delta El nombre de nivells a ampliar (positiu) o reduir (negatiu).
      */
-    private void drawCurve(Graphics2D g2) {
-        if (curvePoints == null || curvePoints.isEmpty()) {
-            return;
+    private void zoomAt(int mx, int my, int delta) {
+        synchronized (scene) {
+            int newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom + delta));
+            if (newZoom == zoom) {
+                return;
+            }
+            double factor = Math.scalb(1.0, newZoom - zoom);
+            panX = (panX + mx) * factor - mx;
+            panY = (panY + my) * factor - my;
+            zoom = newZoom;
         }
+        requestFrame();
+    }
 
-        g2.setColor(Color.BLACK);
-        g2.setStroke(new BasicStroke(2.0f));
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-
-        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
-        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    /**
+     * Fa que les rajoles dibuixin el tauler actual. Les rajoles llegeixen el tauler en el moment
+     * de dibuixar-se, de manera que les actualitzacions per blocs només n'invaliden una part.
+     * Amb zoom negatiu, cada píxel mostra una cel·la del nivell corresponent de la piràmide.
+     */
+    private void installBoardTiles() {
+        tileCache.setRenderer((tile, z, tx, ty) -> {
+            int[][] current = board;
+            BoardMipmap mip = mipmap;
+            if (current == null) {
+                return;
+            }
+            if (z < 0 && mip != null && mip.matches(current) && -z < mip.getLevelCount()) {
+                int shift = -z;
+                BoardRasterizer.renderTile(mip.getLevel(shift), tile, 0, tx, ty,
+                        (r, c, id) -> tileArgb(Math.min(current.length - 1, r << shift),
+                                Math.min(current[0].length - 1, c << shift), id));
+            } else {
+                BoardRasterizer.renderTile(current, tile, z, tx, ty, this::tileArgb);
+            }
+        });
+    }
 
-        for (Point2D.Double p : curvePoints) {
-            if (p == null) continue;
-            if (p.x < minX) minX = p.x;
-            if (p.x > maxX) maxX = p.x;
-            if (p.y < minY) minY = p.y;
-            if (p.y > maxY) maxY = p.y;
+    /**
+     * Invalida les rajoles que cobreixen els blocs canviats del tauler i n'actualitza la
+     * piràmide de resolucions, si n'hi ha.
+     */
+    private void invalidateBlockTiles(int[][] board, long[] changedBlocks, int blockCols, int blockShift) {
+        int side = 1 << blockShift;
+        BoardMipmap mip = mipmap;
+        for (int w = 0; w < changedBlocks.length; w++) {
+            long bits = changedBlocks[w];
+            while (bits != 0) {
+                int block = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int c0 = (block % blockCols) * side;
+                int r0 = (block / blockCols) * side;
+                if (mip != null) {
+                    mip.update(board, r0, c0, Math.min(board.length, r0 + side), Math.min(board[0].length, c0 + side));
+                }
+                tileCache.invalidate(c0, r0, c0 + side + 1, r0 + side + 1);
+            }
         }
+    }
 
+    private double worldWidth(int[][] board) {
+        return board != null ? board[0].length : Math.max(1e-9, curveWorldW);
+    }
 
-        double padding = Math.max((maxX - minX), (maxY - minY)) * 0.05;
-        minX -= padding;
-        maxX += padding;
-        minY -= padding;
-        maxY += padding;
-
-
-        double width = getWidth();
-        double height = getHeight();
-        double scaleX = (maxX > minX) ? (width - 20) / (maxX - minX) : 1;
-        double scaleY = (maxY > minY) ? (height - 20) / (maxY - minY) : 1;
-
-
-        double scale = Math.min(scaleX, scaleY);
-
+    private double worldHeight(int[][] board) {
+        return board != null ? board.length : Math.max(1e-9, curveWorldH);
+    }
 
-        double offsetX = (width - (maxX - minX) * scale) / 2;
-        double offsetY = (height - (maxY - minY) * scale) / 2;
+    /**
+     * Sincronitza la piràmide de la corba amb els punts nous i en publica la mida del món.
+     *
+     * @return Cert si la piràmide s'ha reconstruït.
+     */
+    private boolean syncCurve() {
+        boolean rebuilt = curveRenderer.sync();
+        curveWorldW = curveRenderer.getWorldWidth();
+        curveWorldH = curveRenderer.getWorldHeight();
+        return rebuilt;
+    }
 
-        Point2D.Double prev = null;
-        for (Point2D.Double curr : curvePoints) {
-            if (curr == null) {
-                prev = null;
-                continue;
+    /**
+     * Dibuixa la vista de rajoles. Les rajoles que encara no estan a punt es substitueixen per
+     * la rajola del nivell de zoom anterior, ampliada, si és a la memòria cau.
+     *
+     * @param g L'objecte Graphics per dibuixar.
+     * @param board El tauler, o null si es mostra una corba.
+     * @param points Els punts de la corba, o null si es mostra un tauler.
+     * @param tilesStale Cert si cal tornar a instal·lar el dibuixant de rajoles.
+     * @param zoom El nivell de zoom.
+     * @param panX El desplaçament horitzontal de la vista, en píxels.
+     * @param panY El desplaçament vertical de la vista, en píxels.
+     * @param width L'amplada del fotograma.
+     * @param height L'alçada del fotograma.
+     */
+    private void drawViewport(Graphics g, int[][] board, List<Point2D.Double> points, boolean tilesStale,
+                              int zoom, double panX, double panY, int width, int height) {
+        if (board == null && points == null) {
+            return;
+        }
+        if (tilesStale) {
+            if (board != null) {
+                installBoardTiles();
+            } else {
+                syncCurve();
+                tileCache.setRenderer(curveRenderer.tileRenderer());
             }
-
-            if (prev != null) {
-                int x1 = (int) (offsetX + (prev.x - minX) * scale);
-                int y1 = (int) (offsetY + (prev.y - minY) * scale);
-                int x2 = (int) (offsetX + (curr.x - minX) * scale);
-                int y2 = (int) (offsetY + (curr.y - minY) * scale);
-
-                if (invertCurveY) {
-                    y1 = (int) (height - y1);
-                    y2 = (int) (height - y2);
+        }
+        if (board != null && zoom < 0 && (mipmap == null || !mipmap.matches(board))) {
+            ensureMipmap(board);
+            tileCache.invalidate();
+        }
+        int size = TileCache.TILE_SIZE;
+        double scale = Math.scalb(1.0, zoom);
+        long maxTx = (long) Math.ceil(worldWidth(board) * scale / size) - 1;
+        long maxTy = (long) Math.ceil(worldHeight(board) * scale / size) - 1;
+        long px = (long) Math.floor(panX);
+        long py = (long) Math.floor(panY);
+        long tx0 = Math.max(0, Math.floorDiv(px, size));
+        long ty0 = Math.max(0, Math.floorDiv(py, size));
+        long tx1 = Math.min(maxTx, Math.floorDiv(px + width - 1, size));
+        long ty1 = Math.min(maxTy, Math.floorDiv(py + height - 1, size));
+
+        for (long ty = ty0; ty <= ty1; ty++) {
+            for (long tx = tx0; tx <= tx1; tx++) {
+                int dx = (int) (tx * size - px);
+                int dy = (int) (ty * size - py);
+                BufferedImage tile = tileCache.get(zoom, (int) tx, (int) ty);
+                if (tile != null) {
+                    g.drawImage(tile, dx, dy, null);
+                    continue;
+                }
+                BufferedImage parent = tileCache.peek(zoom - 1, (int) (tx >> 1), (int) (ty >> 1));
+                if (parent != null) {
+                    int sx = (int) (tx & 1) * size / 2;
+                    int sy = (int) (ty & 1) * size / 2;
+                    g.drawImage(parent, dx, dy, dx + size, dy + size, sx, sy, sx + size / 2, sy + size / 2, null);
                 }
-
-                g2.drawLine(x1, y1, x2, y2);
             }
-            prev = curr;
         }
     }
 
+    /**
+     * Dibuixa la corba fractal com una polilínia, gestionant interrupcions en la seqüència.
+     * <p>
+     * La corba es dibuixa sobre una imatge persistent amb el nivell de detall adequat a la mida
+     * del fotograma; mentre creix, només s'hi afegeixen els segments nous, i la resta de
+     * fotogrames es limiten a copiar la imatge.
+     *
+     * @param g2 L'objecte Graphics2D per dibuixar.
+     * @param width L'amplada del fotograma.
+     * @param height L'alçada del fotograma.
+     */
+    private void drawCurve(Graphics2D g2, int width, int height) {
+        boolean rebuilt = syncCurve();
+
+        if (rebuilt || curveImage == null || curveImage.getWidth() != width || curveImage.getHeight() != height) {
+            curveImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            curveRenderer.drawAll(curveImage);
+        } else {
+            curveRenderer.drawNew(curveImage);
+        }
+        g2.drawImage(curveImage, 0, 0, null);
+    }
+
 
     /**
      * Dibuixa el tauler amb els tiles i les línies de contorn.
+     * <p>
+     * El tauler es rasteritza sencer a una imatge només quan canvien els colors, la mida de les
+     * cel·les o el tauler; les actualitzacions per blocs només redibuixen els blocs canviats, i
+     * la resta de fotogrames es limiten a copiar la imatge. Si el tauler té més cel·les que
+     * píxels el fotograma, es dibuixa el nivell de la piràmide de resolucions que hi cap, de
+     * manera que el cost és proporcional als píxels i no a les cel·les.
      *
      * @param g L'objecte Graphics per dibuixar.
+     * @param board El tauler.
+     * @param width L'amplada del fotograma.
+     * @param height L'alçada del fotograma.
+     * @param changedBlocks El mapa de bits dels blocs canviats des de l'últim fotograma, o null.
+     * @param blockCols El nombre de columnes de blocs.
+     * @param blockShift El logaritme en base 2 del costat d'un bloc en cel·les.
      */
-    private void drawTiledBoard(Graphics g) {
+    private void drawTiledBoard(Graphics g, int[][] board, int width, int height,
+                                long[] changedBlocks, int blockCols, int blockShift) {
         int rows = board.length;
         int cols = board[0].length;
-        int cellW = getWidth() / cols;
-        int cellH = getHeight() / rows;
-
-
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                int val = board[i][j];
-
-                if (val > 0) {
-                    Color fillColor = Color.WHITE;
-                    if (colorEnabled) {
-                        fillColor = tileColors.computeIfAbsent(val, k -> generateRandomColor());
-                    }
-                    g.setColor(fillColor);
-                    g.fillRect(j * cellW, i * cellH, cellW, cellH);
-                } else if (val == -1) {
-
-                    g.setColor(Color.DARK_GRAY);
-                    g.fillRect(j * cellW, i * cellH, cellW, cellH);
-                }
-            }
+        int level = 0;
+        int[][] source = board;
+        if (width < cols || height < rows) {
+            ensureMipmap(board);
+            level = mipmap.levelFor(width, height);
+            source = mipmap.getLevel(level);
         }
-
-
-        g.setColor(Color.BLACK);
-
-
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols - 1; j++) {
-                int leftVal = board[i][j];
-                int rightVal = board[i][j + 1];
-                boolean leftFilled = leftVal > 0;
-                boolean rightFilled = rightVal > 0;
-
-                if ((leftFilled != rightFilled) || (leftFilled && rightFilled && leftVal != rightVal)) {
-                    int x = (j + 1) * cellW;
-                    int y1 = i * cellH;
-                    int y2 = y1 + cellH;
-                    g.drawLine(x, y1, x, y2);
-                }
+        int shift = level;
+        BoardRasterizer.CellColor color = level == 0 ? this::tileArgb
+                : (r, c, id) -> tileArgb(Math.min(rows - 1, r << shift), Math.min(cols - 1, c << shift), id);
+        int levelRows = source.length;
+        int levelCols = source[0].length;
+        int cellW = Math.max(1, width / levelCols);
+        int cellH = Math.max(1, height / levelRows);
+
+        if (boardImage == null || boardImageDirty || cellW != boardCellW || cellH != boardCellH || level != boardLevel) {
+            cellColors = mapColoring && colorEnabled ? TilePalette.mapColoring(board) : null;
+            cellColorsCols = cols;
+            boardImage = rasterizer.render(source, cellW, cellH, color, level == 0);
+            boardCellW = cellW;
+            boardCellH = cellH;
+            boardLevel = level;
+            boardImageDirty = false;
+        } else if (changedBlocks != null) {
+            if (level == 0) {
+                mipmap = null;
             }
-        }
-
-
-        for (int i = 0; i < rows - 1; i++) {
-            for (int j = 0; j < cols; j++) {
-                int topVal = board[i][j];
-                int botVal = board[i + 1][j];
-                boolean topFilled = topVal > 0;
-                boolean botFilled = botVal > 0;
-                if ((topFilled != botFilled) || (topFilled && botFilled && topVal != botVal)) {
-                    int y = (i + 1) * cellH;
-                    int x1 = j * cellW;
-                    int x2 = x1 + cellW;
-                    g.drawLine(x1, y, x2, y);
+            for (int w = 0; w < changedBlocks.length; w++) {
+                long bits = changedBlocks[w];
+                while (bits != 0) {
+                    int block = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int r0 = (block / blockCols) << blockShift;
+                    int c0 = (block % blockCols) << blockShift;
+                    int r1 = Math.min(rows, r0 + (1 << blockShift));
+                    int c1 = Math.min(cols, c0 + (1 << blockShift));
+                    if (level > 0) {
+                        mipmap.update(board, r0, c0, r1, c1);
+                    }
+                    rasterizer.renderRegion(source, cellW, cellH, color, level == 0, r0 >> level, c0 >> level,
+                            ((r1 - 1) >> level) + 1, ((c1 - 1) >> level) + 1);
                 }
             }
         }
 
+        g.drawImage(boardImage, 0, 0, null);
+    }
 
-
-        for (int j = 0; j < cols; j++) {
-            if (board[0][j] > 0) {
-                int x1 = j * cellW;
-                int x2 = x1 + cellW;
-                g.drawLine(x1, 0, x2, 0);
-            }
-        }
-
-        for (int j = 0; j < cols; j++) {
-            if (board[rows - 1][j] > 0) {
-                int x1 = j * cellW;
-                int x2 = x1 + cellW;
-                int y = rows * cellH;
-                g.drawLine(x1, y, x2, y);
-            }
+    /**
+     * Construeix la piràmide de resolucions del tauler si no n'hi ha cap de vàlida.
+     */
+    private void ensureMipmap(int[][] board) {
+        if (mipmap == null || !mipmap.matches(board)) {
+            mipmap = new BoardMipmap(board);
         }
+    }
 
-        for (int i = 0; i < rows; i++) {
-            if (board[i][0] > 0) {
-                int y1 = i * cellH;
-                int y2 = y1 + cellH;
-                g.drawLine(0, y1, 0, y2);
-            }
+    /**
+     * Retorna el color ARGB de farciment d'una cel·la. Amb la coloració de mapa, les cel·les
+     * col·locades després de calcular-la fan servir el color per identificador.
+     *
+     * @param row La fila de la cel·la.
+     * @param col La columna de la cel·la.
+     * @param id L'identificador del tile.
+     * @return El color ARGB.
+     */
+    private int tileArgb(int row, int col, int id) {
+        if (!colorEnabled) {
+            return Color.WHITE.getRGB();
         }
-
-        for (int i = 0; i < rows; i++) {
-            if (board[i][cols - 1] > 0) {
-                int x = cols * cellW;
-                int y1 = i * cellH;
-                int y2 = y1 + cellH;
-                g.drawLine(x, y1, x, y2);
+        byte[] colors = cellColors;
+        int cols = cellColorsCols;
+        int cell = row * cols + col;
+        if (colors != null && col < cols && cell < colors.length) {
+            byte index = colors[cell];
+            if (index != TilePalette.NO_COLOR) {
+                return palette.argbForIndex(index);
             }
         }
+        return palette.argbForTile(id);
     }
-}
\ No newline at end of file
+}
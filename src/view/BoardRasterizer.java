@@ -0,0 +1,386 @@
+package view;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Rasteritza un tauler de peces directament sobre els píxels ARGB d'una imatge.
+ * <p>
+ * Produeix el mateix dibuix que les crides a fillRect/drawLine de BoardPanel (farciment de
+ * cada cel·la i una línia negra entre peces diferents i a la vora de les peces), però escrivint
+ * al DataBufferInt en franges de files en paral·lel.
+ */
+public class BoardRasterizer {
+    private static final int BAND_ROWS = 64;
+    private static final int BORDER = Color.BLACK.getRGB();
+    private static final int MISSING = Color.DARK_GRAY.getRGB();
+    private static final int EMPTY = 0;
+
+    private BufferedImage image;
+
+    /**
+     * Proporciona el color de farciment d'una cel·la coberta per una peça.
+     */
+    public interface CellColor {
+        /**
+         * Retorna el color ARGB d'una cel·la.
+         *
+         * @param row La fila de la cel·la.
+         * @param col La columna de la cel·la.
+         * @param id L'identificador positiu de la peça que la cobreix.
+         * @return El color ARGB.
+         */
+        int argb(int row, int col, int id);
+    }
+
+    /**
+     * Retorna la imatge on es rasteritza el tauler, reutilitzant-la si ja té la mida correcta.
+     * La imatge té una fila i una columna de més per a la vora inferior i dreta.
+     *
+     * @param rows El nombre de files del tauler.
+     * @param cols El nombre de columnes del tauler.
+     * @param cellW L'amplada d'una cel·la en píxels.
+     * @param cellH L'alçada d'una cel·la en píxels.
+     * @return La imatge de destinació.
+     */
+    public BufferedImage ensureImage(int rows, int cols, int cellW, int cellH) {
+        int width = cols * cellW + 1;
+        int height = rows * cellH + 1;
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return image;
+    }
+
+    /**
+     * Rasteritza el tauler sencer.
+     *
+     * @param board El tauler amb els identificadors de peça.
+     * @param cellW L'amplada d'una cel·la en píxels (com a mínim 1).
+     * @param cellH L'alçada d'una cel·la en píxels (com a mínim 1).
+     * @param tileColor Retorna el color ARGB de farciment de les cel·les cobertes per una peça.
+     * @return La imatge amb el tauler dibuixat.
+     */
+    public BufferedImage render(int[][] board, int cellW, int cellH, CellColor tileColor) {
+        return render(board, cellW, cellH, tileColor, true);
+    }
+
+    /**
+     * Rasteritza el tauler sencer, amb vores entre peces o sense.
+     *
+     * @param board El tauler amb els identificadors de peça.
+     * @param cellW L'amplada d'una cel·la en píxels (com a mínim 1).
+     * @param cellH L'alçada d'una cel·la en píxels (com a mínim 1).
+     * @param tileColor Retorna el color ARGB de farciment de les cel·les cobertes per una peça.
+     * @param borders Cert per dibuixar les vores; els nivells reduïts d'un tauler no en tenen.
+     * @return La imatge amb el tauler dibuixat.
+     */
+    public BufferedImage render(int[][] board, int cellW, int cellH, CellColor tileColor, boolean borders) {
+        int rows = board.length;
+        int cols = board[0].length;
+        BufferedImage target = ensureImage(rows, cols, cellW, cellH);
+        renderPixels(board, cellW, cellH, tileColor, borders, 0, 0, target.getWidth(), target.getHeight());
+        return target;
+    }
+
+    /**
+     * Rasteritza només una regió de cel·les sobre la imatge actual, incloent les vores que
+     * comparteix amb les cel·les veïnes. La resta de la imatge no es toca.
+     *
+     * @param board El tauler amb els identificadors de peça.
+     * @param cellW L'amplada d'una cel·la en píxels.
+     * @param cellH L'alçada d'una cel·la en píxels.
+     * @param tileColor Retorna el color ARGB de farciment de les cel·les cobertes per una peça.
+     * @param r0 La primera fila de cel·les (inclosa).
+     * @param c0 La primera columna de cel·les (inclosa).
+     * @param r1 L'última fila de cel·les (exclosa).
+     * @param c1 L'última columna de cel·les (exclosa).
+     */
+    public void renderRegion(int[][] board, int cellW, int cellH, CellColor tileColor,
+                             int r0, int c0, int r1, int c1) {
+        renderRegion(board, cellW, cellH, tileColor, true, r0, c0, r1, c1);
+    }
+
+    /**
+     * Rasteritza només una regió de cel·les sobre la imatge actual, amb vores o sense.
+     *
+     * @param board El tauler amb els identificadors de peça.
+     * @param cellW L'amplada d'una cel·la en píxels.
+     * @param cellH L'alçada d'una cel·la en píxels.
+     * @param tileColor Retorna el color ARGB de farciment de les cel·les cobertes per una peça.
+     * @param borders Cert per dibuixar les vores.
+     * @param r0 La primera fila de cel·les (inclosa).
+     * @param c0 La primera columna de cel·les (inclosa).
+     * @param r1 L'última fila de cel·les (exclosa).
+     * @param c1 L'última columna de cel·les (exclosa).
+     */
+    public void renderRegion(int[][] board, int cellW, int cellH, CellColor tileColor, boolean borders,
+                             int r0, int c0, int r1, int c1) {
+        renderPixels(board, cellW, cellH, tileColor, borders, c0 * cellW, r0 * cellH, c1 * cellW + 1, r1 * cellH + 1);
+    }
+
+    /**
+     * Rasteritza el rectangle de píxels [x0, x1) x [y0, y1) de la imatge actual.
+     *
+     * @param board El tauler amb els identificadors de peça.
+     * @param cellW L'amplada d'una cel·la en píxels.
+     * @param cellH L'alçada d'una cel·la en píxels.
+     * @param tileColor Retorna el color ARGB de farciment de les cel·les cobertes per una peça.
+     * @param borders Cert per dibuixar les vores.
+     * @param x0 La primera columna de píxels (inclosa).
+     * @param y0 La primera fila de píxels (inclosa).
+     * @param x1 L'última columna de píxels (exclosa).
+     * @param y1 L'última fila de píxels (exclosa).
+     */
+    private void renderPixels(int[][] board, int cellW, int cellH, CellColor tileColor, boolean borders,
+                              int x0, int y0, int x1, int y1) {
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        RasterTask task = new RasterTask(board, cellW, cellH, tileColor, borders, pixels, image.getWidth(),
+                Math.max(0, x0), Math.min(image.getWidth(), x1), Math.max(0, y0), Math.min(image.getHeight(), y1));
+        if (y1 - y0 <= BAND_ROWS) {
+            task.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+    }
+
+    /**
+     * Rasteritza una rajola d'una vista ampliada o reduïda del tauler. Cada píxel mostra la
+     * cel·la que hi cau a sobre, i les vores entre peces es dibuixen quan les cel·les fan almenys
+     * 4 píxels. El cost depèn només de la mida de la rajola, no de la del tauler.
+     *
+     * @param board El tauler amb els identificadors de peça.
+     * @param tile La imatge de la rajola, de tipus INT_ARGB. No cal que sigui quadrada: la rajola
+     *             (tx, ty) comença al píxel (tx * amplada, ty * alçada).
+     * @param zoom El nivell de zoom: una cel·la ocupa 2^zoom píxels.
+     * @param tx La columna de la rajola.
+     * @param ty La fila de la rajola.
+     * @param tileColor Retorna el color ARGB de farciment de les cel·les cobertes per una peça.
+     */
+    public static void renderTile(int[][] board, BufferedImage tile, int zoom, int tx, int ty, CellColor tileColor) {
+        int rows = board.length;
+        int cols = board[0].length;
+        int width = tile.getWidth();
+        int height = tile.getHeight();
+        int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+        int[] colOf = cellIndices(tx, width, zoom);
+        int[] rowOf = cellIndices(ty, height, zoom);
+        boolean borders = zoom >= 2;
+
+        for (int py = 0; py < height; py++) {
+            int r = rowOf[py + 1];
+            boolean topEdge = borders && rowOf[py] != r;
+            int offset = py * width;
+            for (int px = 0; px < width; px++) {
+                int c = colOf[px + 1];
+                int argb = EMPTY;
+                if (r < rows && c < cols && r >= 0 && c >= 0) {
+                    int val = board[r][c];
+                    argb = val > 0 ? tileColor.argb(r, c, val) : (val == -1 ? MISSING : EMPTY);
+                }
+                if (borders) {
+                    boolean leftEdge = colOf[px] != c;
+                    if ((leftEdge && vertical(board, r, c, rows, cols))
+                            || (topEdge && horizontal(board, r, c, rows, cols))
+                            || (leftEdge && topEdge && (vertical(board, r - 1, c, rows, cols)
+                                    || horizontal(board, r, c - 1, rows, cols)))) {
+                        argb = BORDER;
+                    }
+                }
+                pixels[offset + px] = argb;
+            }
+        }
+    }
+
+    /**
+     * Retorna, per a cada píxel d'una rajola i el píxel anterior, l'índex de la cel·la que hi
+     * cau. La posició 0 correspon al píxel just abans de la rajola.
+     */
+    private static int[] cellIndices(int t, int size, int zoom) {
+        int[] index = new int[size + 1];
+        long first = (long) t * size - 1;
+        for (int p = 0; p <= size; p++) {
+            long pixel = first + p;
+            index[p] = (int) (zoom >= 0 ? Math.floorDiv(pixel, 1L << zoom) : pixel << -zoom);
+        }
+        return index;
+    }
+
+    /**
+     * Indica si hi ha vora a l'esquerra de la cel·la (r, c), que pot ser just fora del tauler.
+     */
+    private static boolean vertical(int[][] board, int r, int c, int rows, int cols) {
+        if (r < 0 || r >= rows || c < 0 || c > cols) return false;
+        if (c == 0) return board[r][0] > 0;
+        if (c == cols) return board[r][cols - 1] > 0;
+        return differs(board[r][c - 1], board[r][c]);
+    }
+
+    /**
+     * Indica si hi ha vora a sobre de la cel·la (r, c), que pot ser just fora del tauler.
+     */
+    private static boolean horizontal(int[][] board, int r, int c, int rows, int cols) {
+        if (c < 0 || c >= cols || r < 0 || r > rows) return false;
+        if (r == 0) return board[0][c] > 0;
+        if (r == rows) return board[rows - 1][c] > 0;
+        return differs(board[r - 1][c], board[r][c]);
+    }
+
+    /**
+     * Indica si hi ha d'haver una vora entre dues cel·les veïnes.
+     *
+     * @param a L'identificador d'una cel·la.
+     * @param b L'identificador de l'altra cel·la.
+     * @return Cert si les cel·les pertanyen a peces diferents o només una està coberta.
+     */
+    private static boolean differs(int a, int b) {
+        boolean aFilled = a > 0;
+        boolean bFilled = b > 0;
+        return (aFilled != bFilled) || (aFilled && a != b);
+    }
+
+    private static class RasterTask extends RecursiveAction {
+        private final int[][] board;
+        private final int cellW, cellH;
+        private final CellColor tileColor;
+        private final boolean borders;
+        private final int[] pixels;
+        private final int stride;
+        private final int x0, x1;
+        private final int y0, y1;
+
+        RasterTask(int[][] board, int cellW, int cellH, CellColor tileColor, boolean borders,
+                   int[] pixels, int stride, int x0, int x1, int y0, int y1) {
+            this.board = board;
+            this.cellW = cellW;
+            this.cellH = cellH;
+            this.tileColor = tileColor;
+            this.borders = borders;
+            this.pixels = pixels;
+            this.stride = stride;
+            this.x0 = x0;
+            this.x1 = x1;
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+
+        @Override
+        protected void compute() {
+            if (y1 - y0 > BAND_ROWS) {
+                int mid = (y0 + y1) >>> 1;
+                invokeAll(new RasterTask(board, cellW, cellH, tileColor, borders, pixels, stride, x0, x1, y0, mid),
+                        new RasterTask(board, cellW, cellH, tileColor, borders, pixels, stride, x0, x1, mid, y1));
+                return;
+            }
+            for (int y = y0; y < y1; y++) {
+                renderRow(y);
+            }
+        }
+
+        /**
+         * Dibuixa el tram [x0, x1) d'una fila de píxels: primer els farciments i després totes
+         * les vores que la toquen.
+         *
+         * @param y La fila de píxels.
+         */
+        private void renderRow(int y) {
+            int rows = board.length;
+            int cols = board[0].length;
+            int offset = y * stride;
+            int i = y / cellH;
+            boolean onEdge = y % cellH == 0;
+
+            if (i < rows) {
+                int[] row = board[i];
+                int jEnd = Math.min(cols - 1, (x1 - 1) / cellW);
+                for (int j = x0 / cellW; j <= jEnd; j++) {
+                    int val = row[j];
+                    int argb = val > 0 ? tileColor.argb(i, j, val) : (val == -1 ? MISSING : EMPTY);
+                    int from = Math.max(x0, j * cellW);
+                    int to = Math.min(x1, (j + 1) * cellW);
+                    Arrays.fill(pixels, offset + from, offset + to, argb);
+                }
+                plot(offset, cols * cellW, EMPTY);
+                if (borders) {
+                    drawVerticalBorders(row, offset);
+                }
+            } else {
+                Arrays.fill(pixels, offset + x0, offset + x1, EMPTY);
+            }
+            if (!borders) {
+                return;
+            }
+            if (onEdge && i > 0) {
+                drawVerticalBorders(board[i - 1], offset);
+            }
+            if (onEdge) {
+                drawHorizontalBorder(i, offset);
+            }
+        }
+
+        /**
+         * Escriu un píxel de la fila si cau dins del tram que rasteritza la tasca.
+         *
+         * @param offset La posició del primer píxel de la fila.
+         * @param x La columna del píxel.
+         * @param argb El color ARGB.
+         */
+        private void plot(int offset, int x, int argb) {
+            if (x >= x0 && x < x1) {
+                pixels[offset + x] = argb;
+            }
+        }
+
+        /**
+         * Dibuixa les vores verticals d'una fila de cel·les sobre una fila de píxels.
+         *
+         * @param row La fila de cel·les.
+         * @param offset La posició del primer píxel de la fila.
+         */
+        private void drawVerticalBorders(int[] row, int offset) {
+            int cols = row.length;
+            int jStart = Math.max(0, x0 / cellW - 1);
+            int jEnd = Math.min(cols - 2, (x1 - 1) / cellW);
+            if (row[0] > 0) plot(offset, 0, BORDER);
+            for (int j = jStart; j <= jEnd; j++) {
+                if (differs(row[j], row[j + 1])) {
+                    plot(offset, (j + 1) * cellW, BORDER);
+                }
+            }
+            if (row[cols - 1] > 0) plot(offset, cols * cellW, BORDER);
+        }
+
+        /**
+         * Dibuixa la vora horitzontal entre les files de cel·les k-1 i k.
+         *
+         * @param k L'índex de la línia horitzontal (de 0 a rows).
+         * @param offset La posició del primer píxel de la fila.
+         */
+        private void drawHorizontalBorder(int k, int offset) {
+            int rows = board.length;
+            int cols = board[0].length;
+            int jEnd = Math.min(cols - 1, (x1 - 1) / cellW);
+            for (int j = Math.max(0, x0 / cellW - 1); j <= jEnd; j++) {
+                boolean border;
+                if (k == 0) {
+                    border = board[0][j] > 0;
+                } else if (k == rows) {
+                    border = board[rows - 1][j] > 0;
+                } else {
+                    border = differs(board[k - 1][j], board[k][j]);
+                }
+                if (border) {
+                    int from = Math.max(x0, j * cellW);
+                    int to = Math.min(x1, (j + 1) * cellW + 1);
+                    if (from < to) {
+                        Arrays.fill(pixels, offset + from, offset + to, BORDER);
+                    }
+                }
+            }
+        }
+    }
+}
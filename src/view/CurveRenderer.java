@@ -0,0 +1,695 @@
+package view;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dibuixa corbes fractals amb nivells de detall.
+ * <p>
+ * Els punts es normalitzen un sol cop respecte als límits de la corba i es decimen en una
+ * piràmide de nivells: el nivell L només conserva els punts on la corba entra i surt de cada
+ * cel·la d'una graella de 2^L x 2^L. En dibuixar, es tria el nivell més fi amb cel·les d'almenys
+ * un píxel, de manera que es dibuixen com a molt un parell de segments per píxel, i tots els
+ * segments s'agrupen en un únic Path2D. Quan el nivell triat encara té massa vèrtexs (corbes que
+ * omplen el pla, com la de Hilbert), els segments s'escriuen directament sobre els píxels. La piràmide creix de manera incremental mentre la corba s'allarga.
+ */
+public class CurveRenderer {
+    private static final int MAX_LEVEL = 13;
+    private static final float BREAK = Float.NaN;
+    private static final int RASTER_THRESHOLD = 1 << 16;
+    private static final int INK = Color.BLACK.getRGB();
+    public static final int WORLD_SIZE = 1024;
+
+    private List<Point2D.Double> points;
+    private boolean invertY;
+    private boolean exact = true;
+    private int covered;
+    private double minX, maxX, minY, maxY;
+    private double span;
+    private final Level[] levels = new Level[MAX_LEVEL + 1];
+
+    private int drawnLevel = -1;
+    private int drawnIndex;
+
+    /**
+     * Canvia la corba a dibuixar. La piràmide es reconstrueix a la pròxima sincronització.
+     *
+     * @param points La llista de punts, amb null com a separador entre tram i tram.
+     * @param invertY Indica si s'ha d'invertir l'eix Y.
+     * @param exact Cert per ajustar els límits exactament als punts; fals si la corba encara
+     *              creix i els límits s'han d'ampliar amb marge.
+     */
+    public void reset(List<Point2D.Double> points, boolean invertY, boolean exact) {
+        this.points = points;
+        this.invertY = invertY;
+        this.exact = exact;
+        this.covered = -1;
+    }
+
+    /**
+     * Indica si els límits s'han d'ajustar exactament als punts.
+     *
+     * @param exact Cert per ajustar-los exactament.
+     */
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+
+    /**
+     * Retorna la llista de punts que es dibuixa.
+     *
+     * @return La llista de punts, o null si no n'hi ha cap.
+     */
+    public List<Point2D.Double> getPoints() {
+        return points;
+    }
+
+    /**
+     * Indica si la corba es dibuixa amb l'eix Y invertit.
+     *
+     * @return Cert si l'eix Y s'inverteix.
+     */
+    public boolean isInvertY() {
+        return invertY;
+    }
+
+    /**
+     * Incorpora a la piràmide els punts afegits des de l'última sincronització. Si algun punt
+     * nou queda fora dels límits, o la llista s'ha escurçat, es reconstrueix tota la piràmide.
+     *
+     * @return Cert si la piràmide s'ha reconstruït i cal redibuixar-la sencera.
+     */
+    public boolean sync() {
+        int count = points.size();
+        if (covered < 0 || count < covered) {
+            rebuild(count, true);
+            return true;
+        }
+        if (count == covered) {
+            return false;
+        }
+        if (!withinBounds(covered, count)) {
+            rebuild(count, exact);
+            return true;
+        }
+        append(covered, count);
+        return false;
+    }
+
+    /**
+     * Dibuixa la corba sencera al nivell de detall adequat per a la mida de la imatge.
+     *
+     * @param image La imatge de destinació, de tipus INT_ARGB.
+     */
+    public void drawAll(BufferedImage image) {
+        drawnLevel = levelForExtent(new Transform(image.getWidth(), image.getHeight()).extent);
+        drawnIndex = 0;
+        drawNew(image);
+    }
+
+    /**
+     * Dibuixa només els segments afegits des de l'últim dibuix al mateix nivell de detall.
+     *
+     * @param image La imatge de destinació, de tipus INT_ARGB.
+     */
+    public void drawNew(BufferedImage image) {
+        if (drawnLevel < 0) {
+            drawAll(image);
+            return;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Vertices vertices = vertices(drawnLevel);
+        VertexSink sink = vertices.size() > RASTER_THRESHOLD ? new RasterSink(image) : new PathSink();
+        emit(vertices, Math.max(0, drawnIndex - 1), new Transform(width, height), sink, width, height);
+        drawnIndex = vertices.size();
+        sink.finish(image);
+    }
+
+    /**
+     * Retorna l'amplada de la corba a l'espai del món de les rajoles, on el costat més llarg
+     * dels límits mesura WORLD_SIZE unitats.
+     *
+     * @return L'amplada en unitats del món.
+     */
+    public double getWorldWidth() {
+        return (maxX - minX) / span * WORLD_SIZE;
+    }
+
+    /**
+     * Retorna l'alçada de la corba a l'espai del món de les rajoles.
+     *
+     * @return L'alçada en unitats del món.
+     */
+    public double getWorldHeight() {
+        return (maxY - minY) / span * WORLD_SIZE;
+    }
+
+    /**
+     * Retorna un dibuixant de rajoles per a l'estat actual de la corba. Captura els vèrtexs ja
+     * sincronitzats, de manera que es pot fer servir des d'altres fils mentre la corba creix.
+     *
+     * @return El dibuixant de rajoles.
+     */
+    public TileCache.TileRenderer tileRenderer() {
+        return tileRenderer(covered);
+    }
+
+    /**
+     * Retorna un dibuixant de rajoles que només dibuixa els primers punts de la corba, amb els
+     * mateixos límits que la corba sencera. Serveix per dibuixar qualsevol fotograma de
+     * l'animació a partir d'una sola piràmide.
+     *
+     * @param pointCount El nombre de punts a dibuixar, com a molt el nombre de punts sincronitzats.
+     * @return El dibuixant de rajoles.
+     */
+    public TileCache.TileRenderer tileRenderer(int pointCount) {
+        int count = Math.max(0, Math.min(pointCount, covered));
+        Vertices[] captured = new Vertices[MAX_LEVEL + 2];
+        for (int l = 0; l <= MAX_LEVEL + 1; l++) {
+            captured[l] = count == covered ? vertices(l) : prefixVertices(l, count);
+        }
+        double heightNorm = (maxY - minY) / span;
+        boolean flip = invertY;
+        return (tile, zoom, tx, ty) -> {
+            double extent = Math.scalb((double) WORLD_SIZE, zoom);
+            Vertices vertices = captured[levelForExtent(extent)];
+            double originX = (double) tx * tile.getWidth();
+            double originY = (double) ty * tile.getHeight();
+            Mapper mapper = new Mapper() {
+                @Override
+                public int x(double u) {
+                    return (int) Math.floor(u * extent - originX);
+                }
+
+                @Override
+                public int y(double v) {
+                    return (int) Math.floor((flip ? heightNorm - v : v) * extent - originY);
+                }
+            };
+            VertexSink sink = vertices.size() > RASTER_THRESHOLD ? new RasterSink(tile) : new PathSink();
+            emit(vertices, 0, mapper, sink, tile.getWidth(), tile.getHeight());
+            sink.finish(tile);
+        };
+    }
+
+    /**
+     * Retorna els vèrtexs sincronitzats d'un nivell, o tots els punts si el nivell és MAX_LEVEL + 1.
+     */
+    private Vertices vertices(int level) {
+        if (level > MAX_LEVEL) {
+            return new PointVertices(points, covered, minX, minY, span);
+        }
+        Level l = levels[level];
+        return new LevelVertices(l.u, l.v, l.size, l.hasTail, l.tailU, l.tailV);
+    }
+
+    /**
+     * Retorna els vèrtexs d'un nivell que provenen dels primers punts de la corba. L'últim punt,
+     * si no és un vèrtex del nivell, queda com a punt pendent, tal com estaria al nivell si la
+     * corba s'hagués aturat allà.
+     */
+    private Vertices prefixVertices(int level, int count) {
+        if (level > MAX_LEVEL) {
+            return new PointVertices(points, count, minX, minY, span);
+        }
+        Level l = levels[level];
+        int lo = 0, hi = l.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (l.source[mid] < count) lo = mid + 1; else hi = mid;
+        }
+        Point2D.Double last = count > 0 ? points.get(count - 1) : null;
+        boolean tail = last != null && (lo == 0 || l.source[lo - 1] != count - 1);
+        float tailU = tail ? (float) ((last.x - minX) / span) : 0;
+        float tailV = tail ? (float) ((last.y - minY) / span) : 0;
+        return new LevelVertices(l.u, l.v, lo, tail, tailU, tailV);
+    }
+
+    /**
+     * Envia a un receptor els segments dels vèrtexs [from, size) que toquen l'àrea de dibuix.
+     * Els segments que en queden fora aixequen el llapis, de manera que no es dibuixen.
+     */
+    private static void emit(Vertices vertices, int from, Mapper mapper, VertexSink sink, int width, int height) {
+        int count = vertices.size() + (vertices.hasTail() ? 1 : 0);
+        boolean havePrev = false;
+        boolean penDown = false;
+        int px = 0, py = 0;
+        for (int i = from; i < count; i++) {
+            if (vertices.isBreak(i)) {
+                havePrev = false;
+                penDown = false;
+                sink.penUp();
+                continue;
+            }
+            int x = mapper.x(vertices.u(i));
+            int y = mapper.y(vertices.v(i));
+            if (havePrev) {
+                boolean visible = Math.max(px, x) >= -2 && Math.min(px, x) <= width + 2
+                        && Math.max(py, y) >= -2 && Math.min(py, y) <= height + 2;
+                if (visible) {
+                    if (!penDown) {
+                        sink.penUp();
+                        sink.vertex(px, py);
+                        penDown = true;
+                    }
+                    sink.vertex(x, y);
+                } else if (penDown) {
+                    sink.penUp();
+                    penDown = false;
+                }
+            }
+            px = x;
+            py = y;
+            havePrev = true;
+        }
+    }
+
+    /**
+     * Retorna el nombre de segments que es dibuixarien a la mida especificada.
+     *
+     * @param width L'amplada de l'àrea de dibuix.
+     * @param height L'alçada de l'àrea de dibuix.
+     * @return El nombre de vèrtexs del nivell triat.
+     */
+    public int getVertexCount(int width, int height) {
+        int level = levelForExtent(new Transform(width, height).extent);
+        return level > MAX_LEVEL ? covered : levels[level].size;
+    }
+
+    /**
+     * Tria el nivell de la piràmide per a una corba que ocupa el nombre de píxels especificat:
+     * el més gran amb cel·les d'almenys un píxel, o MAX_LEVEL + 1 per dibuixar tots els punts si
+     * la corba ocupa més píxels que el nivell més fi.
+     */
+    private static int levelForExtent(double pixels) {
+        if (pixels > (1 << MAX_LEVEL)) {
+            return MAX_LEVEL + 1;
+        }
+        int level = 0;
+        while (level < MAX_LEVEL && (2 << level) <= pixels) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Recalcula els límits i torna a construir la piràmide amb els punts [0, count).
+     */
+    private void rebuild(int count, boolean exactBounds) {
+        double nMinX = Double.POSITIVE_INFINITY, nMaxX = Double.NEGATIVE_INFINITY;
+        double nMinY = Double.POSITIVE_INFINITY, nMaxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            Point2D.Double p = points.get(i);
+            if (p == null) continue;
+            if (p.x < nMinX) nMinX = p.x;
+            if (p.x > nMaxX) nMaxX = p.x;
+            if (p.y < nMinY) nMinY = p.y;
+            if (p.y > nMaxY) nMaxY = p.y;
+        }
+        if (!exactBounds && covered > 0 && span > 0) {
+            double slack = Math.max(1.0, Math.max(maxX - minX, maxY - minY));
+            if (nMinX < minX) nMinX -= slack;
+            if (nMaxX > maxX) nMaxX += slack;
+            if (nMinY < minY) nMinY -= slack;
+            if (nMaxY > maxY) nMaxY += slack;
+            nMinX = Math.min(nMinX, minX);
+            nMaxX = Math.max(nMaxX, maxX);
+            nMinY = Math.min(nMinY, minY);
+            nMaxY = Math.max(nMaxY, maxY);
+        }
+        minX = nMinX;
+        maxX = nMaxX;
+        minY = nMinY;
+        maxY = nMaxY;
+        double s = Math.max(maxX - minX, maxY - minY);
+        span = (s > 0 && !Double.isInfinite(s)) ? s : 1;
+
+        for (int l = 0; l <= MAX_LEVEL; l++) {
+            levels[l] = new Level(l, Math.min(count, 1 << Math.min(2 * l + 1, 20)) + 16);
+        }
+        covered = 0;
+        drawnLevel = -1;
+        append(0, count);
+    }
+
+    private boolean withinBounds(int from, int to) {
+        for (int i = from; i < to; i++) {
+            Point2D.Double p = points.get(i);
+            if (p == null) continue;
+            if (p.x < minX || p.x > maxX || p.y < minY || p.y > maxY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Afegeix els punts [from, to) a tots els nivells de la piràmide.
+     */
+    private void append(int from, int to) {
+        for (int i = from; i < to; i++) {
+            Point2D.Double p = points.get(i);
+            if (p == null) {
+                for (Level level : levels) level.addBreak(i);
+            } else {
+                float u = (float) ((p.x - minX) / span);
+                float v = (float) ((p.y - minY) / span);
+                for (Level level : levels) level.add(u, v, i);
+            }
+        }
+        covered = to;
+    }
+
+    /**
+     * Un nivell de la piràmide: els punts normalitzats on la corba entra i surt de cada cel·la
+     * de la seva graella. L'últim punt d'una cel·la queda pendent fins que la corba en surt.
+     * Cada vèrtex recorda l'índex del punt d'on prové.
+     */
+    private static class Level {
+        private final int resolution;
+        private float[] u;
+        private float[] v;
+        private int[] source;
+        private int size;
+        private int lastQx = Integer.MIN_VALUE;
+        private int lastQy = Integer.MIN_VALUE;
+        private boolean hasTail;
+        private float tailU, tailV;
+        private int tailSource;
+
+        Level(int level, int capacity) {
+            this.resolution = 1 << level;
+            this.u = new float[capacity];
+            this.v = new float[capacity];
+            this.source = new int[capacity];
+        }
+
+        void add(float pu, float pv, int index) {
+            int qx = (int) (pu * resolution);
+            int qy = (int) (pv * resolution);
+            if (qx == lastQx && qy == lastQy) {
+                hasTail = true;
+                tailU = pu;
+                tailV = pv;
+                tailSource = index;
+                return;
+            }
+            if (hasTail) {
+                push(tailU, tailV, tailSource);
+                hasTail = false;
+            }
+            lastQx = qx;
+            lastQy = qy;
+            push(pu, pv, index);
+        }
+
+        void addBreak(int index) {
+            if (hasTail) {
+                push(tailU, tailV, tailSource);
+                hasTail = false;
+            }
+            if (size > 0 && !Float.isNaN(u[size - 1])) {
+                push(BREAK, BREAK, index);
+            }
+            lastQx = Integer.MIN_VALUE;
+            lastQy = Integer.MIN_VALUE;
+        }
+
+        private void push(float pu, float pv, int index) {
+            if (size == u.length) {
+                u = Arrays.copyOf(u, size * 2);
+                v = Arrays.copyOf(v, size * 2);
+                source = Arrays.copyOf(source, size * 2);
+            }
+            u[size] = pu;
+            v[size] = pv;
+            source[size] = index;
+            size++;
+        }
+    }
+
+    /**
+     * Converteix coordenades normalitzades en píxels.
+     */
+    private interface Mapper {
+        int x(double u);
+
+        int y(double v);
+    }
+
+    /**
+     * Una seqüència de vèrtexs normalitzats, amb separadors entre trams.
+     */
+    private interface Vertices {
+        int size();
+
+        boolean hasTail();
+
+        boolean isBreak(int i);
+
+        double u(int i);
+
+        double v(int i);
+    }
+
+    /**
+     * Els vèrtexs d'un nivell de la piràmide. L'últim punt pendent, si n'hi ha, va just després.
+     */
+    private static class LevelVertices implements Vertices {
+        private final float[] u, v;
+        private final int size;
+        private final boolean tail;
+        private final float tailU, tailV;
+
+        LevelVertices(float[] u, float[] v, int size, boolean tail, float tailU, float tailV) {
+            this.u = u;
+            this.v = v;
+            this.size = size;
+            this.tail = tail;
+            this.tailU = tailU;
+            this.tailV = tailV;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean hasTail() {
+            return tail;
+        }
+
+        @Override
+        public boolean isBreak(int i) {
+            return i < size && Float.isNaN(u[i]);
+        }
+
+        @Override
+        public double u(int i) {
+            return i < size ? u[i] : tailU;
+        }
+
+        @Override
+        public double v(int i) {
+            return i < size ? v[i] : tailV;
+        }
+    }
+
+    /**
+     * Tots els punts originals, normalitzats en llegir-los.
+     */
+    private static class PointVertices implements Vertices {
+        private final List<Point2D.Double> points;
+        private final int size;
+        private final double minX, minY, span;
+
+        PointVertices(List<Point2D.Double> points, int size, double minX, double minY, double span) {
+            this.points = points;
+            this.size = size;
+            this.minX = minX;
+            this.minY = minY;
+            this.span = span;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean hasTail() {
+            return false;
+        }
+
+        @Override
+        public boolean isBreak(int i) {
+            return points.get(i) == null;
+        }
+
+        @Override
+        public double u(int i) {
+            return (points.get(i).x - minX) / span;
+        }
+
+        @Override
+        public double v(int i) {
+            return (points.get(i).y - minY) / span;
+        }
+    }
+
+    /**
+     * Rep els vèrtexs transformats de la corba.
+     */
+    private interface VertexSink {
+        void vertex(int x, int y);
+
+        void penUp();
+
+        void finish(BufferedImage image);
+    }
+
+    /**
+     * Agrupa tots els segments en un únic Path2D i el dibuixa amb antialiàsing.
+     */
+    private static class PathSink implements VertexSink {
+        private final Path2D.Float path = new Path2D.Float();
+        private boolean penDown;
+
+        @Override
+        public void vertex(int x, int y) {
+            if (penDown) {
+                path.lineTo(x, y);
+            } else {
+                path.moveTo(x, y);
+                penDown = true;
+            }
+        }
+
+        @Override
+        public void penUp() {
+            penDown = false;
+        }
+
+        @Override
+        public void finish(BufferedImage image) {
+            Graphics2D g2 = image.createGraphics();
+            try {
+                g2.setColor(Color.BLACK);
+                g2.setStroke(new BasicStroke(2.0f));
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2.draw(path);
+            } finally {
+                g2.dispose();
+            }
+        }
+    }
+
+    /**
+     * Escriu els segments directament sobre els píxels amb l'algorisme de Bresenham i un pinzell
+     * de 2x2 píxels, l'equivalent sense antialiàsing del traç de 2 píxels.
+     */
+    private static class RasterSink implements VertexSink {
+        private final int[] pixels;
+        private final int width, height;
+        private boolean penDown;
+        private int lastX, lastY;
+
+        RasterSink(BufferedImage image) {
+            this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+        }
+
+        @Override
+        public void vertex(int x, int y) {
+            if (penDown) {
+                line(lastX, lastY, x, y);
+            } else {
+                plot(x, y);
+                penDown = true;
+            }
+            lastX = x;
+            lastY = y;
+        }
+
+        @Override
+        public void penUp() {
+            penDown = false;
+        }
+
+        @Override
+        public void finish(BufferedImage image) {
+        }
+
+        private void line(int x0, int y0, int x1, int y1) {
+            int dx = Math.abs(x1 - x0), sx = x0 < x1 ? 1 : -1;
+            int dy = -Math.abs(y1 - y0), sy = y0 < y1 ? 1 : -1;
+            int err = dx + dy;
+            while (true) {
+                plot(x0, y0);
+                if (x0 == x1 && y0 == y1) break;
+                int e2 = 2 * err;
+                if (e2 >= dy) {
+                    err += dy;
+                    x0 += sx;
+                }
+                if (e2 <= dx) {
+                    err += dx;
+                    y0 += sy;
+                }
+            }
+        }
+
+        private void plot(int x, int y) {
+            for (int py = Math.max(0, y - 1); py <= Math.min(height - 1, y); py++) {
+                int row = py * width;
+                for (int px = Math.max(0, x - 1); px <= Math.min(width - 1, x); px++) {
+                    pixels[row + px] = INK;
+                }
+            }
+        }
+    }
+
+    /**
+     * Transformació de coordenades normalitzades a píxels, equivalent a la que feia BoardPanel:
+     * límits amb un 5% de marge, escala uniforme i corba centrada.
+     */
+    private class Transform implements Mapper {
+        private final double originX, originY, extent;
+        private final int height;
+
+        Transform(int width, int height) {
+            this.height = height;
+            double bx = maxX - minX, by = maxY - minY;
+            double padding = Math.max(bx, by) * 0.05;
+            double spanX = bx + 2 * padding, spanY = by + 2 * padding;
+            double scaleX = spanX > 0 ? (width - 20) / spanX : 1;
+            double scaleY = spanY > 0 ? (height - 20) / spanY : 1;
+            double scale = Math.min(scaleX, scaleY);
+            this.originX = (width - spanX * scale) / 2 + padding * scale;
+            this.originY = (height - spanY * scale) / 2 + padding * scale;
+            this.extent = span * scale;
+        }
+
+        @Override
+        public int x(double u) {
+            return (int) (originX + u * extent);
+        }
+
+        @Override
+        public int y(double v) {
+            int y = (int) (originY + v * extent);
+            return invertY ? height - y : y;
+        }
+    }
+}
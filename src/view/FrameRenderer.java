@@ -0,0 +1,199 @@
+package view;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fil de dibuix que compon fotogrames fora de l'EDT amb un límit de fotogrames per segon.
+ * <p>
+ * Les peticions de fotograma s'agrupen: encara que se'n demanin moltes, se'n compon com a molt
+ * un per interval. Cada fotograma es compon sobre una imatge fora de pantalla i es publica
+ * atòmicament amb un triple buffer, de manera que l'EDT només ha de copiar l'últim fotograma
+ * complet i mai no espera el dibuix ni veu un fotograma a mig fer.
+ */
+public class FrameRenderer {
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    /**
+     * Compon el contingut d'un fotograma.
+     */
+    public interface Composer {
+        /**
+         * Dibuixa un fotograma sencer. Es crida des del fil de dibuix.
+         *
+         * @param frame La imatge del fotograma, de la mida demanada i tipus INT_RGB.
+         */
+        void compose(BufferedImage frame);
+    }
+
+    private final Composer composer;
+    private final Runnable onFrameReady;
+    private final long frameIntervalNanos;
+    private final Thread thread;
+    private final BufferedImage[] buffers = new BufferedImage[3];
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int writerIndex = 0;
+    private int readerIndex = 2;
+
+    private boolean requested = false;
+    private boolean running = true;
+    private int requestedWidth;
+    private int requestedHeight;
+
+    private volatile long lastFrameNanos;
+    private volatile long averageFrameNanos;
+    private volatile long framesRendered;
+    private volatile long droppedFrames;
+
+    /**
+     * Crea i engega un fil de dibuix.
+     *
+     * @param name El nom del fil.
+     * @param maxFps El nombre màxim de fotogrames per segon.
+     * @param composer L'objecte que compon cada fotograma.
+     * @param onFrameReady S'executa, des del fil de dibuix, cada cop que es publica un fotograma.
+     */
+    public FrameRenderer(String name, int maxFps, Composer composer, Runnable onFrameReady) {
+        this.composer = composer;
+        this.onFrameReady = onFrameReady;
+        this.frameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, maxFps);
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Demana que es compongui un fotograma nou. Es pot cridar des de qualsevol fil; les
+     * peticions que arriben abans que comenci el fotograma s'agrupen en una de sola.
+     *
+     * @param width L'amplada del fotograma en píxels.
+     * @param height L'alçada del fotograma en píxels.
+     */
+    public synchronized void requestFrame(int width, int height) {
+        requestedWidth = Math.max(1, width);
+        requestedHeight = Math.max(1, height);
+        requested = true;
+        notifyAll();
+    }
+
+    /**
+     * Retorna l'últim fotograma publicat. Només l'ha de cridar un únic lector, l'EDT; la
+     * imatge retornada no es modifica fins a la següent crida.
+     *
+     * @return L'últim fotograma complet, o null si encara no se n'ha publicat cap.
+     */
+    public BufferedImage acquire() {
+        if ((middle.get() & FRESH) != 0) {
+            readerIndex = middle.getAndSet(readerIndex) & INDEX_MASK;
+        }
+        return buffers[readerIndex];
+    }
+
+    /**
+     * Atura el fil de dibuix.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        thread.interrupt();
+    }
+
+    /**
+     * Retorna el temps de composició de l'últim fotograma.
+     *
+     * @return El temps en nanosegons.
+     */
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    /**
+     * Retorna la mitjana mòbil exponencial del temps de composició dels fotogrames.
+     *
+     * @return El temps mitjà en nanosegons.
+     */
+    public long getAverageFrameNanos() {
+        return averageFrameNanos;
+    }
+
+    /**
+     * Retorna el nombre de fotogrames publicats.
+     *
+     * @return El nombre de fotogrames.
+     */
+    public long getFramesRendered() {
+        return framesRendered;
+    }
+
+    /**
+     * Retorna el nombre de fotogrames publicats que han estat substituïts per un de més nou
+     * abans que l'EDT els arribés a mostrar.
+     *
+     * @return El nombre de fotogrames perduts.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    private void run() {
+        long nextFrame = System.nanoTime();
+        while (true) {
+            int width, height;
+            try {
+                synchronized (this) {
+                    while (running && !requested) {
+                        wait();
+                    }
+                    if (!running) {
+                        return;
+                    }
+                }
+                long wait = nextFrame - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                synchronized (this) {
+                    requested = false;
+                    width = requestedWidth;
+                    height = requestedHeight;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            nextFrame = start + frameIntervalNanos;
+            BufferedImage frame = buffers[writerIndex];
+            if (frame == null || frame.getWidth() != width || frame.getHeight() != height) {
+                frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                buffers[writerIndex] = frame;
+            }
+            try {
+                composer.compose(frame);
+            } catch (RuntimeException e) {
+                System.err.println("Frame render failed: " + e.getMessage());
+                continue;
+            }
+            publish(System.nanoTime() - start);
+            onFrameReady.run();
+        }
+    }
+
+    /**
+     * Publica el fotograma acabat d'escriure i actualitza les estadístiques.
+     */
+    private void publish(long elapsed) {
+        int previous = middle.getAndSet(writerIndex | FRESH);
+        writerIndex = previous & INDEX_MASK;
+        if ((previous & FRESH) != 0) {
+            droppedFrames++;
+        }
+        lastFrameNanos = elapsed;
+        averageFrameNanos = framesRendered == 0 ? elapsed : (averageFrameNanos * 7 + elapsed) / 8;
+        framesRendered++;
+    }
+}
@@ -1,10 +1,14 @@
 package view;
 
 import controller.TilingController;
+import engine.AlgorithmRegistry;
+import model.BoardSnapshotPublisher;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.geom.Point2D;
+import java.io.IOException;
 
 @SuppressWarnings("serial")
 public class GUITiling extends JFrame {
@@ -13,13 +17,19 @@ public class GUITiling extends JFrame {
 
     private final JTextField depthField;
     private final JSlider slider;
+    private final JTextField sizeField;
     private final JComboBox<String> algorithmBox;
     private final JButton startButton;
     private final JButton stopButton;
     private final JButton stopCleanButton;
+    private final JButton saveBoardButton;
+    private final JButton openBoardButton;
+    private final JFileChooser boardChooser;
 
     private final JCheckBox animationCheck;
+    private final JCheckBox progressiveCheck;
     private final JCheckBox colorCheck;
+    private final JCheckBox mapColorCheck;
 
     private final JLabel missingRowLabel;
     private final JLabel missingColLabel;
@@ -31,6 +41,16 @@ public class GUITiling extends JFrame {
     private int selectedMissingCol = 0;
 
     private final JLabel timeEstimateLabel;
+    private final JLabel frameStatsLabel;
+
+    private final JButton replayButton;
+    private final JToggleButton playButton;
+    private final JSlider timelineSlider;
+    private final JComboBox<Integer> speedBox;
+    private final JLabel timelineLabel;
+    private final Timer playTimer;
+    private double playPosition;
+    private long lastPlayTick;
 
     /**
      * Crea una nova instància de GUITiling.
@@ -54,13 +74,15 @@ public class GUITiling extends JFrame {
         slider.setPaintTicks(true);
         slider.setPaintLabels(true);
         row1.add(slider);
+        row1.add(new JLabel("Size:"));
+        sizeField = new JTextField("", 6);
+        sizeField.setToolTipText("n or RxC (Tromino only); leave empty to use the slider");
+        row1.add(sizeField);
         row1.add(new JLabel("Max Depth:"));
         depthField = new JTextField("4", 5);
         row1.add(depthField);
         row1.add(new JLabel("Algorithm:"));
-        algorithmBox = new JComboBox<>(new String[]{
-                "Tromino", "Domino", "Hilbert", "Sierpinski", "Koch", "Square"
-        });
+        algorithmBox = new JComboBox<>(AlgorithmRegistry.getDefault().getNames().toArray(new String[0]));
         row1.add(algorithmBox);
 
 
@@ -81,20 +103,51 @@ public class GUITiling extends JFrame {
         animationCheck = new JCheckBox("Animate", true);
         colorCheck = new JCheckBox("Color", true);
         row3.add(animationCheck);
+        progressiveCheck = new JCheckBox("Progressive", true);
+        row3.add(progressiveCheck);
         row3.add(colorCheck);
+        mapColorCheck = new JCheckBox("Map colors", false);
+        row3.add(mapColorCheck);
         timeEstimateLabel = new JLabel("Estimated time: N/A");
         row3.add(timeEstimateLabel);
+        frameStatsLabel = new JLabel("Frame: N/A");
+        row3.add(frameStatsLabel);
         startButton = new JButton("Start");
         stopButton = new JButton("Stop");
         stopCleanButton = new JButton("Stop and Clean");
         row3.add(startButton);
         row3.add(stopButton);
         row3.add(stopCleanButton);
+        saveBoardButton = new JButton("Save Board...");
+        openBoardButton = new JButton("Open Board...");
+        row3.add(saveBoardButton);
+        row3.add(openBoardButton);
+        boardChooser = new JFileChooser();
+        boardChooser.setFileFilter(new FileNameExtensionFilter("Tiling boards (*.board)", "board"));
+
+
+        JPanel row4 = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        replayButton = new JButton("Replay");
+        playButton = new JToggleButton("Play");
+        timelineSlider = new JSlider(JSlider.HORIZONTAL, 0, 0, 0);
+        timelineSlider.setPreferredSize(new Dimension(300, timelineSlider.getPreferredSize().height));
+        speedBox = new JComboBox<>(new Integer[]{10, 100, 1000, 10000, 100000});
+        speedBox.setSelectedItem(100);
+        timelineLabel = new JLabel("Step: N/A");
+        row4.add(replayButton);
+        row4.add(playButton);
+        row4.add(timelineSlider);
+        row4.add(new JLabel("Steps/s:"));
+        row4.add(speedBox);
+        row4.add(timelineLabel);
+        playTimer = new Timer(30, e -> advancePlayback());
+        setTimelineEnabled(false);
 
 
         topPanel.add(row1);
         topPanel.add(row2);
         topPanel.add(row3);
+        topPanel.add(row4);
 
 
         add(topPanel, BorderLayout.NORTH);
@@ -108,10 +161,21 @@ public class GUITiling extends JFrame {
         stopButton.addActionListener(e -> controller.stopTiling());
         stopCleanButton.addActionListener(e -> controller.stopAndClean());
         selectTileButton.addActionListener(e -> toggleTileSelectionMode());
+        missingRowField.addActionListener(e -> onMissingFieldsChanged());
+        missingColField.addActionListener(e -> onMissingFieldsChanged());
+        saveBoardButton.addActionListener(e -> onSaveBoard());
+        openBoardButton.addActionListener(e -> onOpenBoard());
         animationCheck.addActionListener(e -> {
 
         });
+        replayButton.addActionListener(e -> controller.recordTimeline());
+        playButton.addActionListener(e -> togglePlayback());
+        timelineSlider.addChangeListener(e -> onTimelineMoved());
         colorCheck.addActionListener(e -> boardPanel.setColorMode(colorCheck.isSelected()));
+        mapColorCheck.addActionListener(e -> boardPanel.setMapColoring(mapColorCheck.isSelected()));
+
+
+        new Timer(500, e -> updateFrameStats()).start();
 
 
         slider.addChangeListener(e -> {
@@ -127,18 +191,120 @@ public class GUITiling extends JFrame {
         setVisible(true);
     }
 
+    /**
+     * Activa els controls de reproducció per a un resultat enregistrat i en mostra l'últim pas.
+     *
+     * @param stepCount El nombre de passos de l'enregistrament.
+     */
+    public void showTimeline(final int stepCount) {
+        SwingUtilities.invokeLater(() -> {
+            playTimer.stop();
+            playButton.setSelected(false);
+            timelineSlider.setMaximum(stepCount);
+            timelineSlider.setValue(stepCount);
+            setTimelineEnabled(true);
+            onTimelineMoved();
+        });
+    }
+
+    /**
+     * Desactiva els controls de reproducció perquè el resultat mostrat ha canviat.
+     */
+    public void resetTimeline() {
+        SwingUtilities.invokeLater(() -> {
+            playTimer.stop();
+            playButton.setSelected(false);
+            setTimelineEnabled(false);
+            timelineLabel.setText("Step: N/A");
+        });
+    }
+
+    private void setTimelineEnabled(boolean enabled) {
+        playButton.setEnabled(enabled);
+        timelineSlider.setEnabled(enabled);
+    }
+
+    /**
+     * Mostra el pas de l'enregistrament que indica el control lliscant.
+     */
+    private void onTimelineMoved() {
+        if (!timelineSlider.isEnabled()) return;
+        int step = timelineSlider.getValue();
+        if (!playTimer.isRunning()) {
+            playPosition = step;
+        }
+        timelineLabel.setText("Step: " + step + " / " + timelineSlider.getMaximum());
+        controller.seekTimeline(step);
+    }
+
+    /**
+     * Inicia o atura la reproducció. Si l'enregistrament és al final, torna a començar.
+     */
+    private void togglePlayback() {
+        if (!playButton.isSelected()) {
+            playTimer.stop();
+            return;
+        }
+        if (timelineSlider.getValue() >= timelineSlider.getMaximum()) {
+            timelineSlider.setValue(0);
+        }
+        playPosition = timelineSlider.getValue();
+        lastPlayTick = System.nanoTime();
+        playTimer.start();
+    }
+
+    /**
+     * Avança la reproducció segons el temps transcorregut i la velocitat triada.
+     */
+    private void advancePlayback() {
+        long now = System.nanoTime();
+        Integer speed = (Integer) speedBox.getSelectedItem();
+        if (timelineSlider.getValueIsAdjusting()) {
+            playPosition = timelineSlider.getValue();
+        } else {
+            playPosition += (speed != null ? speed : 100) * (now - lastPlayTick) / 1e9;
+        }
+        lastPlayTick = now;
+        int step = (int) Math.min(timelineSlider.getMaximum(), playPosition);
+        timelineSlider.setValue(step);
+        if (step >= timelineSlider.getMaximum()) {
+            playTimer.stop();
+            playButton.setSelected(false);
+        }
+    }
+
     /**
      * Activa o desactiva el mode de selecció de peça.
      * Quan s'activa, reinicialitza el tauler amb la mida actual.
      */
     private void toggleTileSelectionMode() {
+        int[] dims;
+        try {
+            dims = boardDimensions();
+        } catch (NumberFormatException e) {
+            selectTileButton.setSelected(false);
+            showError("Invalid input for size.");
+            return;
+        }
+        int size = dims[0];
+        if (selectTileButton.isSelected() && dims[0] == dims[1] && controller.canMoveMissingTile(size)) {
+            boardPanel.setSelectMode(true, new BoardPanel.MissingTileListener() {
+                @Override
+                public void onMissingTileSelected(int row, int col) {
+                    moveMissingTile(row, col);
+                    selectTileButton.setSelected(false);
+                }
 
-        int size = (int) Math.pow(2, slider.getValue());
-        if (selectTileButton.isSelected()) {
+                @Override
+                public void onMissingTileDragged(int row, int col) {
+                    moveMissingTile(row, col);
+                }
+            });
+        } else if (selectTileButton.isSelected()) {
 
             boardPanel.resetColorMapping();
             boardPanel.setCurvePoints(null, false);
-            boardPanel.setBoard(new int[size][size]);
+            boardPanel.setBoard(new int[dims[0]][dims[1]]);
 
 
             boardPanel.setSelectMode(true, (row, col) -> {
@@ -152,15 +318,108 @@ public class GUITiling extends JFrame {
         }
     }
 
+    /**
+     * Mou la cel·la absent del tauler de Tromino acabat sense tornar-lo a calcular i actualitza
+     * els camps de fila i columna.
+     *
+     * @param row La fila de la nova cel·la absent.
+     * @param col La columna de la nova cel·la absent.
+     */
+    private void moveMissingTile(int row, int col) {
+        selectedMissingRow = row;
+        selectedMissingCol = col;
+        missingRowField.setText(String.valueOf(row));
+        missingColField.setText(String.valueOf(col));
+        controller.moveMissingTile(row, col);
+    }
+
+    /**
+     * Aplica la cel·la absent dels camps de text al tauler de Tromino acabat, si n'hi ha.
+     */
+    private void onMissingFieldsChanged() {
+        int[] dims;
+        try {
+            dims = boardDimensions();
+        } catch (NumberFormatException e) {
+            return;
+        }
+        int size = dims[0];
+        if (dims[0] != dims[1] || !controller.canMoveMissingTile(size)) return;
+        try {
+            int row = Integer.parseInt(missingRowField.getText().trim());
+            int col = Integer.parseInt(missingColField.getText().trim());
+            if (row < 0 || row >= size || col < 0 || col >= size) {
+                showError("Missing tile coordinates are out of range!");
+                return;
+            }
+            moveMissingTile(row, col);
+        } catch (NumberFormatException e) {
+            showError("Invalid input for the missing tile.");
+        }
+    }
+
+    /**
+     * Desa el tauler actual en un fitxer que tria l'usuari.
+     */
+    private void onSaveBoard() {
+        if (boardChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        java.io.File file = boardChooser.getSelectedFile();
+        if (!file.getName().contains(".")) {
+            file = new java.io.File(file.getPath() + ".board");
+        }
+        try {
+            controller.saveBoard(file.toPath());
+        } catch (IOException e) {
+            showError("Could not save the board: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Obre un tauler desat i el mostra mentre es descodifica.
+     */
+    private void onOpenBoard() {
+        if (boardChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        selectTileButton.setSelected(false);
+        boardPanel.setSelectMode(false, null);
+        boardPanel.resetColorMapping();
+        try {
+            controller.loadBoard(boardChooser.getSelectedFile().toPath());
+        } catch (IOException e) {
+            showError("Could not open the board: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Mostra el temps de composició i els fotogrames perduts del fil de dibuix del tauler.
+     */
+    private void updateFrameStats() {
+        FrameRenderer frames = boardPanel.getFrameRenderer();
+        if (frames.getFramesRendered() > 0) {
+            frameStatsLabel.setText(String.format("Frame: %.1f ms, dropped %d",
+                    frames.getAverageFrameNanos() / 1e6, frames.getDroppedFrames()));
+        }
+    }
+
     /**
      * Reinicialitza el tauler amb la mida especificada.
      *
      * @param boardSize La mida del tauler.
      */
     public void resetBoard(int boardSize) {
+        resetBoard(boardSize, boardSize);
+    }
+
+    /**
+     * Reinicialitza el tauler amb les dimensions especificades.
+     *
+     * @param boardRows El nombre de files del tauler.
+     * @param boardCols El nombre de columnes del tauler.
+     */
+    public void resetBoard(int boardRows, int boardCols) {
+        resetTimeline();
         boardPanel.resetColorMapping();
         boardPanel.setCurvePoints(null, false);
-        boardPanel.setBoard(new int[boardSize][boardSize]);
+        boardPanel.setBoard(new int[boardRows][boardCols]);
 
         selectTileButton.setSelected(false);
         boardPanel.setSelectMode(false, (row, col) -> {
@@ -184,6 +443,19 @@ public class GUITiling extends JFrame {
         });
     }
 
+    /**
+     * Actualitza el tauler mostrat amb l'estat del publicador. No passa per l'EDT ni publica
+     * res: només demana un fotograma. El fil de dibuix del panell és qui publica els blocs bruts
+     * i n'adquireix la instantània més recent a cada fotograma, de manera que els fils de
+     * càlcul no copien el tauler i només es redibuixen els blocs que han canviat.
+     *
+     * @param snapshots El publicador d'instantànies del tauler.
+     * @param step El pas actual de l'execució.
+     */
+    public void updateBoard(final BoardSnapshotPublisher snapshots, final int step) {
+        boardPanel.showSnapshots(snapshots);
+    }
+
     /**
      * Mostra la corba generada a la interfície gràfica.
      *
@@ -196,6 +468,18 @@ public class GUITiling extends JFrame {
         });
     }
 
+    /**
+     * Mostra una corba que encara s'està generant, dibuixant només els segments nous.
+     *
+     * @param curvePoints La llista de punts de la corba, que només creix pel final.
+     * @param invertY Indica si s'ha d'invertir l'eix Y.
+     */
+    public void appendCurve(final java.util.List<Point2D.Double> curvePoints, final boolean invertY) {
+        SwingUtilities.invokeLater(() -> {
+            boardPanel.appendCurvePoints(curvePoints, invertY);
+        });
+    }
+
     /**
      * Mostra un missatge d'error a l'usuari.
      *
@@ -210,29 +494,66 @@ public class GUITiling extends JFrame {
      */
     private void onStartTiling() {
         try {
-            int size = (int) Math.pow(2, slider.getValue());
+            int[] dims = boardDimensions();
+            int rows = dims[0];
+            int cols = dims[1];
             int depth = Integer.parseInt(depthField.getText().trim());
             String algo = (String) algorithmBox.getSelectedItem();
+            if (!"Tromino".equals(algo) && rows != cols) {
+                showError("Only Tromino supports rectangular boards.");
+                return;
+            }
 
             controller.setAnimationEnabled(animationCheck.isSelected());
+            controller.setProgressiveEnabled(progressiveCheck.isSelected());
             boardPanel.setColorMode(colorCheck.isSelected());
 
-            String estimate = controller.estimateTime(size, depth, algo);
+            String estimate = controller.estimateTime(rows, cols, depth, algo);
             timeEstimateLabel.setText("Estimated time: " + estimate);
 
-            if ("Tromino".equals(algo)) {
+            if ("Tromino".equals(algo) && (long) rows * cols % 3 == 0) {
+                // Un tauler d'àrea múltiple de 3 es cobreix sencer, sense peça absent.
+                controller.startTiling(rows, cols, depth, algo, -1, -1);
+            } else if ("Tromino".equals(algo)) {
                 int missR = Integer.parseInt(missingRowField.getText().trim());
                 int missC = Integer.parseInt(missingColField.getText().trim());
-                if (missR < 0 || missR >= size || missC < 0 || missC >= size) {
+                if (missR < 0 || missR >= rows || missC < 0 || missC >= cols) {
                     showError("Missing tile coordinates are out of range!");
                     return;
                 }
-                controller.startTiling(size, depth, algo, missR, missC);
+                controller.startTiling(rows, cols, depth, algo, missR, missC);
             } else {
-                controller.startTiling(size, depth, algo);
+                controller.startTiling(rows, depth, algo);
             }
         } catch (NumberFormatException e) {
             showError("Invalid input for size or depth.");
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            showError(e.getMessage());
+        }
+    }
+
+    /**
+     * Retorna les dimensions del tauler: les del camp de mida, que accepta "n" o "RxC", o, si
+     * és buit, el quadrat de costat potència de dos del control lliscant.
+     *
+     * @return El nombre de files i de columnes.
+     * @throws NumberFormatException Si el camp de mida no té un format vàlid.
+     */
+    private int[] boardDimensions() {
+        String text = sizeField.getText().trim();
+        if (text.isEmpty()) {
+            int size = (int) Math.pow(2, slider.getValue());
+            return new int[]{size, size};
+        }
+        String[] parts = text.split("\\s*[xX×]\\s*");
+        if (parts.length > 2) {
+            throw new NumberFormatException(text);
+        }
+        int rows = Integer.parseInt(parts[0]);
+        int cols = parts.length == 2 ? Integer.parseInt(parts[1]) : rows;
+        if (rows < 1 || cols < 1) {
+            throw new NumberFormatException(text);
         }
+        return new int[]{rows, cols};
     }
 }
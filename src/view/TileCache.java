@@ -0,0 +1,230 @@
+package view;
+
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memòria cau de rajoles de 256x256 píxels, a l'estil dels mapes en línia.
+ * <p>
+ * Cada rajola s'identifica pel nivell de zoom i la seva posició a la graella de rajoles
+ * d'aquell nivell. Les rajoles que falten es dibuixen en fils de fons, i les menys usades
+ * s'eliminen quan se supera la capacitat. Una rajola invalidada es continua servint fins que
+ * la nova versió està a punt, per evitar parpelleigs.
+ */
+public class TileCache {
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * Dibuixa el contingut d'una rajola.
+     */
+    public interface TileRenderer {
+        /**
+         * Dibuixa la rajola especificada. Es crida des d'un fil de fons.
+         *
+         * @param tile La imatge de la rajola, de TILE_SIZE x TILE_SIZE píxels i tipus INT_ARGB.
+         * @param zoom El nivell de zoom: un unitat del món ocupa 2^zoom píxels.
+         * @param tx La columna de la rajola.
+         * @param ty La fila de la rajola.
+         */
+        void renderTile(BufferedImage tile, int zoom, int tx, int ty);
+    }
+
+    private final int capacity;
+    private final Runnable onTileReady;
+    private final Map<Long, Entry> tiles;
+    private final Set<Long> pending = new HashSet<>();
+    private final Set<Long> invalidatedWhilePending = new HashSet<>();
+    private final ExecutorService workers;
+    private TileRenderer renderer;
+    private long generation;
+    private int wantedZoom;
+
+    /**
+     * Crea una memòria cau de rajoles.
+     *
+     * @param capacity El nombre màxim de rajoles guardades.
+     * @param onTileReady S'executa cada cop que una rajola nova està a punt.
+     */
+    public TileCache(int capacity, Runnable onTileReady) {
+        this.capacity = capacity;
+        this.onTileReady = onTileReady;
+        this.tiles = new LinkedHashMap<Long, Entry>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > TileCache.this.capacity;
+            }
+        };
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "tile-renderer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Canvia el contingut que es dibuixa a les rajoles. Totes les rajoles queden invalidades.
+     *
+     * @param renderer El nou dibuixant de rajoles.
+     */
+    public synchronized void setRenderer(TileRenderer renderer) {
+        this.renderer = renderer;
+        generation++;
+    }
+
+    /**
+     * Retorna una rajola. Si no hi és o està invalidada, se'n programa el dibuix i es retorna la
+     * versió anterior, si n'hi ha.
+     *
+     * @param zoom El nivell de zoom.
+     * @param tx La columna de la rajola.
+     * @param ty La fila de la rajola.
+     * @return La imatge de la rajola, o null si encara no s'ha dibuixat mai.
+     */
+    public synchronized BufferedImage get(int zoom, int tx, int ty) {
+        wantedZoom = zoom;
+        long key = key(zoom, tx, ty);
+        Entry entry = tiles.get(key);
+        if ((entry == null || entry.stale || entry.generation != generation) && renderer != null
+                && pending.add(key)) {
+            TileRenderer current = renderer;
+            long gen = generation;
+            workers.execute(() -> render(current, gen, key, zoom, tx, ty));
+        }
+        return entry == null ? null : entry.image;
+    }
+
+    /**
+     * Retorna una rajola si ja és a la memòria cau, sense programar-ne el dibuix.
+     *
+     * @param zoom El nivell de zoom.
+     * @param tx La columna de la rajola.
+     * @param ty La fila de la rajola.
+     * @return La imatge de la rajola, o null si no hi és.
+     */
+    public synchronized BufferedImage peek(int zoom, int tx, int ty) {
+        Entry entry = tiles.get(key(zoom, tx, ty));
+        return entry == null ? null : entry.image;
+    }
+
+    /**
+     * Invalida totes les rajoles.
+     */
+    public synchronized void invalidate() {
+        generation++;
+    }
+
+    /**
+     * Invalida les rajoles de qualsevol zoom que se solapen amb un rectangle del món.
+     *
+     * @param x0 L'esquerra del rectangle, en unitats del món.
+     * @param y0 La part superior del rectangle, en unitats del món.
+     * @param x1 La dreta del rectangle, en unitats del món.
+     * @param y1 La part inferior del rectangle, en unitats del món.
+     */
+    public synchronized void invalidate(double x0, double y0, double x1, double y1) {
+        for (Map.Entry<Long, Entry> e : tiles.entrySet()) {
+            if (intersects(e.getKey(), x0, y0, x1, y1)) {
+                e.getValue().stale = true;
+            }
+        }
+        for (long key : pending) {
+            if (intersects(key, x0, y0, x1, y1)) {
+                invalidatedWhilePending.add(key);
+            }
+        }
+    }
+
+    /**
+     * Indica si una rajola se solapa amb un rectangle del món.
+     */
+    private static boolean intersects(long key, double x0, double y0, double x1, double y1) {
+        int zoom = (int) (key >> 56);
+        double size = TILE_SIZE / Math.scalb(1.0, zoom);
+        double tx = ((key >>> 28) & 0xFFFFFFFL) * size;
+        double ty = (key & 0xFFFFFFFL) * size;
+        return tx < x1 && tx + size > x0 && ty < y1 && ty + size > y0;
+    }
+
+    /**
+     * Buida la memòria cau.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        invalidatedWhilePending.addAll(pending);
+        generation++;
+    }
+
+    /**
+     * Atura els fils de dibuix.
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void render(TileRenderer current, long gen, long key, int zoom, int tx, int ty) {
+        try {
+            synchronized (this) {
+                if (zoom != wantedZoom || gen != generation) {
+                    return;
+                }
+            }
+            BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+            current.renderTile(image, zoom, tx, ty);
+            synchronized (this) {
+                Entry old = tiles.get(key);
+                if (old == null || gen >= old.generation) {
+                    Entry entry = new Entry(image, gen);
+                    entry.stale = invalidatedWhilePending.contains(key);
+                    tiles.put(key, entry);
+                }
+            }
+            onTileReady.run();
+        } catch (RuntimeException e) {
+            System.err.println("Tile render failed: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                pending.remove(key);
+                invalidatedWhilePending.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Empaqueta el zoom i la posició d'una rajola en una clau.
+     */
+    private static long key(int zoom, int tx, int ty) {
+        return ((long) zoom << 56) | ((tx & 0xFFFFFFFL) << 28) | (ty & 0xFFFFFFFL);
+    }
+
+    /**
+     * Retorna el nombre de rajoles guardades.
+     *
+     * @return El nombre de rajoles.
+     */
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    private static class Entry {
+        private final BufferedImage image;
+        private final long generation;
+        private boolean stale;
+
+        Entry(BufferedImage image, long generation) {
+            this.image = image;
+            this.generation = generation;
+        }
+    }
+}
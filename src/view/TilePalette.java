@@ -0,0 +1,252 @@
+package view;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Paleta de colors de les peces basada en una taula d'enters ARGB.
+ * <p>
+ * Cada identificador de peça s'assigna a una entrada de la taula amb una funció de dispersió
+ * entera, de manera que els colors són deterministes i no cal guardar cap mapa per peça.
+ * Opcionalment, {@link #mapColoring(int[][])} calcula una coloració de mapa en paral·lel perquè
+ * les peces veïnes no comparteixin mai color.
+ */
+public class TilePalette {
+    public static final int SIZE = 256;
+    public static final byte NO_COLOR = -1;
+    private static final double GOLDEN_RATIO = 0.618033988749895;
+    private static final int MAX_MAP_COLORS = 128;
+
+    private final int[] argb = new int[SIZE];
+    private int seed;
+
+    /**
+     * Crea una paleta amb la llavor per defecte.
+     */
+    public TilePalette() {
+        this(0);
+    }
+
+    /**
+     * Crea una paleta amb la llavor especificada.
+     *
+     * @param seed La llavor que determina els colors.
+     */
+    public TilePalette(int seed) {
+        reseed(seed);
+    }
+
+    /**
+     * Regenera la taula de colors a partir d'una llavor. Els tons consecutius se separen per la
+     * raó àuria, de manera que els primers índexs són ben diferents entre ells.
+     *
+     * @param seed La llavor que determina els colors.
+     */
+    public void reseed(int seed) {
+        this.seed = seed;
+        double hue = (hash(seed) >>> 8) / (double) (1 << 24);
+        for (int i = 0; i < SIZE; i++) {
+            int h = hash(seed * 31 + i);
+            float saturation = 0.6f + (h & 0xFF) / 255f * 0.4f;
+            float brightness = 0.8f + ((h >>> 8) & 0xFF) / 255f * 0.2f;
+            argb[i] = Color.HSBtoRGB((float) hue, saturation, brightness);
+            hue = (hue + GOLDEN_RATIO) % 1.0;
+        }
+    }
+
+    /**
+     * Retorna la llavor actual de la paleta.
+     *
+     * @return La llavor.
+     */
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * Retorna el color ARGB d'una peça a partir del seu identificador.
+     *
+     * @param id L'identificador de la peça.
+     * @return El color ARGB.
+     */
+    public int argbForTile(int id) {
+        return argb[hash(id ^ seed) & (SIZE - 1)];
+    }
+
+    /**
+     * Retorna el color ARGB d'un índex de la paleta, com els que produeix la coloració de mapa.
+     *
+     * @param index L'índex de la paleta.
+     * @return El color ARGB.
+     */
+    public int argbForIndex(int index) {
+        return argb[index & (SIZE - 1)];
+    }
+
+    /**
+     * Dispersa un enter (finalitzador de MurmurHash3).
+     *
+     * @param x El valor a dispersar.
+     * @return El valor dispersat.
+     */
+    static int hash(int x) {
+        x ^= x >>> 16;
+        x *= 0x85ebca6b;
+        x ^= x >>> 13;
+        x *= 0xc2b2ae35;
+        x ^= x >>> 16;
+        return x;
+    }
+
+    /**
+     * Calcula una coloració de mapa del tauler: peces que comparteixen una vora reben índexs
+     * diferents. Fa servir l'algorisme de Jones-Plassmann: a cada ronda, les peces sense color
+     * que tenen la prioritat més alta entre els seus veïns sense color es pinten en paral·lel
+     * amb el menor índex lliure.
+     *
+     * @param board El tauler amb els identificadors de peça.
+     * @return L'índex de paleta de cada cel·la en ordre de fila, o {@link #NO_COLOR} si la
+     *         cel·la no pertany a cap peça.
+     * @throws IllegalStateException Si alguna peça té massa veïns per representar-la en un byte.
+     */
+    public static byte[] mapColoring(int[][] board) {
+        int rows = board.length;
+        int cols = rows == 0 ? 0 : board[0].length;
+        int maxId = IntStream.range(0, rows).parallel()
+                .map(i -> Arrays.stream(board[i]).max().orElse(0)).max().orElse(0);
+        if (maxId <= 0) {
+            byte[] empty = new byte[rows * cols];
+            Arrays.fill(empty, NO_COLOR);
+            return empty;
+        }
+
+        long[] edges = IntStream.range(0, rows).parallel().mapToObj(i -> rowEdges(board, i))
+                .flatMapToLong(Arrays::stream).toArray();
+        Arrays.parallelSort(edges);
+
+        int[] degree = new int[maxId + 2];
+        int unique = 0;
+        for (int e = 0; e < edges.length; e++) {
+            if (e > 0 && edges[e] == edges[e - 1]) continue;
+            edges[unique++] = edges[e];
+            degree[(int) (edges[e] >>> 32) + 1]++;
+            degree[(int) edges[e] + 1]++;
+        }
+        int[] offsets = new int[maxId + 2];
+        for (int v = 1; v <= maxId + 1; v++) {
+            offsets[v] = offsets[v - 1] + degree[v];
+        }
+        int[] adjacency = new int[offsets[maxId + 1]];
+        int[] fill = Arrays.copyOf(offsets, maxId + 1);
+        for (int e = 0; e < unique; e++) {
+            int a = (int) (edges[e] >>> 32);
+            int b = (int) edges[e];
+            adjacency[fill[a]++] = b;
+            adjacency[fill[b]++] = a;
+        }
+
+        boolean[] present = new boolean[maxId + 1];
+        IntStream.range(0, rows).parallel().forEach(i -> {
+            for (int val : board[i]) {
+                if (val > 0) present[val] = true;
+            }
+        });
+
+        byte[] tileColor = new byte[maxId + 1];
+        Arrays.fill(tileColor, NO_COLOR);
+        int[] pending = IntStream.rangeClosed(1, maxId).filter(v -> present[v]).toArray();
+        while (pending.length > 0) {
+            int[] winners = Arrays.stream(pending).parallel()
+                    .filter(v -> isLocalMax(v, offsets, adjacency, tileColor)).toArray();
+            Arrays.stream(winners).parallel()
+                    .forEach(v -> tileColor[v] = smallestFreeColor(v, offsets, adjacency, tileColor));
+            pending = Arrays.stream(pending).parallel().filter(v -> tileColor[v] == NO_COLOR).toArray();
+        }
+
+        byte[] cells = new byte[rows * cols];
+        IntStream.range(0, rows).parallel().forEach(i -> {
+            int base = i * cols;
+            for (int j = 0; j < cols; j++) {
+                int val = board[i][j];
+                cells[base + j] = val > 0 ? tileColor[val] : NO_COLOR;
+            }
+        });
+        return cells;
+    }
+
+    /**
+     * Retorna les vores entre peces diferents que surten de les cel·les d'una fila cap a la
+     * dreta i cap avall, codificades com (menor &lt;&lt; 32) | major.
+     *
+     * @param board El tauler.
+     * @param i La fila.
+     * @return Les vores de la fila, possiblement repetides.
+     */
+    private static long[] rowEdges(int[][] board, int i) {
+        int[] row = board[i];
+        int[] below = i + 1 < board.length ? board[i + 1] : null;
+        long[] edges = new long[2 * row.length];
+        int n = 0;
+        for (int j = 0; j < row.length; j++) {
+            int a = row[j];
+            if (a <= 0) continue;
+            if (j + 1 < row.length && row[j + 1] > 0 && row[j + 1] != a) {
+                edges[n++] = edge(a, row[j + 1]);
+            }
+            if (below != null && below[j] > 0 && below[j] != a) {
+                edges[n++] = edge(a, below[j]);
+            }
+        }
+        return Arrays.copyOf(edges, n);
+    }
+
+    private static long edge(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    /**
+     * Indica si una peça té més prioritat que tots els seus veïns encara sense color.
+     *
+     * @param v La peça.
+     * @param offsets Els desplaçaments de la llista d'adjacència.
+     * @param adjacency La llista d'adjacència.
+     * @param tileColor El color actual de cada peça.
+     * @return Cert si la peça es pot pintar en aquesta ronda.
+     */
+    private static boolean isLocalMax(int v, int[] offsets, int[] adjacency, byte[] tileColor) {
+        int pv = hash(v);
+        for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+            int u = adjacency[k];
+            if (tileColor[u] != NO_COLOR) continue;
+            int pu = hash(u);
+            if (pu > pv || (pu == pv && u > v)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retorna el menor índex de color que no fa servir cap veí de la peça.
+     *
+     * @param v La peça.
+     * @param offsets Els desplaçaments de la llista d'adjacència.
+     * @param adjacency La llista d'adjacència.
+     * @param tileColor El color actual de cada peça.
+     * @return L'índex de color.
+     */
+    private static byte smallestFreeColor(int v, int[] offsets, int[] adjacency, byte[] tileColor) {
+        long low = 0, high = 0;
+        for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+            int c = tileColor[adjacency[k]];
+            if (c < 0) continue;
+            if (c < 64) low |= 1L << c; else high |= 1L << (c - 64);
+        }
+        int free = low != -1L ? Long.numberOfTrailingZeros(~low) : 64 + Long.numberOfTrailingZeros(~high);
+        if (free >= MAX_MAP_COLORS) {
+            throw new IllegalStateException("Tile " + v + " has too many neighbours for map colouring");
+        }
+        return (byte) free;
+    }
+}